@@ -0,0 +1,97 @@
+package me.remontada.readify.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.remontada.readify.service.PdfMetadataService.InitialChunkLayout;
+import me.remontada.readify.service.PdfMetadataServiceImpl;
+import me.remontada.readify.service.PdfSegmentCache;
+import me.remontada.readify.service.PdfStructureIndexService;
+import me.remontada.readify.service.InMemoryStreamingSessionStore;
+import me.remontada.readify.service.StreamingSessionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the header + footer initial chunk served to PDF.js before the first range request,
+ * read through the mapped segment cache and straight from the file.
+ *
+ * createInitialChunk is private, so it is invoked through a method handle; extractMetadata
+ * would also open a streaming session per call and grow the session table during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfMetadataServiceBenchmark {
+
+    @Param({"1", "16", "70"})
+    public int sizeMb;
+
+    @Param({"true", "false"})
+    public boolean segmentCache;
+
+    private PdfMetadataServiceImpl metadataService;
+    private PdfSegmentCache pdfSegmentCache;
+    private PdfStructureIndexService structureIndexService;
+    private MethodHandle createInitialChunk;
+    private Resource resource;
+    private InitialChunkLayout layout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path pdf = SyntheticPdf.create(sizeMb);
+        resource = new FileSystemResource(pdf);
+
+        pdfSegmentCache = new PdfSegmentCache(segmentCache, 4194304, 268435456, new SimpleMeterRegistry());
+        structureIndexService = new PdfStructureIndexService(new ObjectMapper(), 1);
+        metadataService = new PdfMetadataServiceImpl(
+                new StreamingSessionService(7200, "benchmark-watermark-secret", "", 10000,
+                new InMemoryStreamingSessionStore(), new SimpleMeterRegistry()),
+                structureIndexService,
+                pdfSegmentCache);
+        layout = metadataService.describeInitialChunk(Files.size(pdf));
+
+        createInitialChunk = MethodHandles.privateLookupIn(PdfMetadataServiceImpl.class, MethodHandles.lookup())
+                .findVirtual(PdfMetadataServiceImpl.class, "createInitialChunk",
+                        MethodType.methodType(byte[].class, Resource.class, InitialChunkLayout.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pdfSegmentCache.clear();
+        structureIndexService.shutdown();
+    }
+
+    @Benchmark
+    public byte[] initialChunk() throws Throwable {
+        return (byte[]) createInitialChunk.invoke(metadataService, pdfSegmentCache.asResource(resource), layout);
+    }
+
+    @Benchmark
+    public InitialChunkLayout describeInitialChunk() throws IOException {
+        return metadataService.describeInitialChunk(resource.contentLength());
+    }
+}
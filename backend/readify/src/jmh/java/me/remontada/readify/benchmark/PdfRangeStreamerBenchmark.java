@@ -0,0 +1,137 @@
+package me.remontada.readify.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.remontada.readify.service.PdfRangeStreamer;
+import me.remontada.readify.service.PdfSegmentCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying one reader chunk into the response stream:
+ * - legacyCopyLoop: the original controller loop (open stream, skip, 8 KB buffer)
+ * - sharedChannel:  positional transferTo on the shared FileChannel
+ * - mappedSegments: copy out of the memory-mapped segment cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfRangeStreamerBenchmark {
+
+    @Param({"1", "16", "70"})
+    public int sizeMb;
+
+    @Param({"65536", "262144", "2097152"})
+    public int chunkBytes;
+
+    private Resource resource;
+    private long fileSize;
+    private PdfRangeStreamer channelStreamer;
+    private PdfRangeStreamer mappedStreamer;
+    private long start;
+    private long end;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        Path pdf = SyntheticPdf.create(sizeMb);
+        resource = new FileSystemResource(pdf);
+        fileSize = Files.size(pdf);
+
+        PdfSegmentCache disabled = new PdfSegmentCache(false, 4194304, 268435456, new SimpleMeterRegistry());
+        PdfSegmentCache enabled = new PdfSegmentCache(true, 4194304, 268435456, new SimpleMeterRegistry());
+        channelStreamer = new PdfRangeStreamer(false, false, 60000, disabled, Optional.empty());
+        mappedStreamer = new PdfRangeStreamer(false, false, 60000, enabled, Optional.empty());
+    }
+
+    @Setup(Level.Iteration)
+    public void pickRange() {
+        start = ThreadLocalRandom.current().nextLong(Math.max(1, fileSize - chunkBytes));
+        end = Math.min(start + chunkBytes - 1, fileSize - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        channelStreamer.closeAll();
+        mappedStreamer.closeAll();
+    }
+
+    @Benchmark
+    public long legacyCopyLoop(Blackhole blackhole) throws IOException {
+        OutputStream out = new BlackholeOutputStream(blackhole);
+        long contentLength = end - start + 1;
+
+        try (InputStream inputStream = resource.getInputStream()) {
+            inputStream.skip(start);
+            byte[] buffer = new byte[8192];
+            long bytesRemaining = contentLength;
+            while (bytesRemaining > 0) {
+                int bytesToRead = (int) Math.min(buffer.length, bytesRemaining);
+                int bytesRead = inputStream.read(buffer, 0, bytesToRead);
+                if (bytesRead == -1) {
+                    break;
+                }
+                out.write(buffer, 0, bytesRead);
+                bytesRemaining -= bytesRead;
+            }
+        }
+        return contentLength;
+    }
+
+    @Benchmark
+    public long sharedChannel(Blackhole blackhole) throws IOException {
+        return channelStreamer.copy(resource, start, end, new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public long mappedSegments(Blackhole blackhole) throws IOException {
+        return mappedStreamer.copy(resource, start, end, new BlackholeOutputStream(blackhole));
+    }
+
+    /**
+     * Response body stand-in that hands every write to the blackhole so the copy is not eliminated.
+     */
+    static final class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package me.remontada.readify.benchmark;
+
+import me.remontada.readify.service.PdfStreamingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range header parsing and region resolution, single range and multi-range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfStreamingServiceBenchmark {
+
+    @Param({"1", "16", "70"})
+    public int sizeMb;
+
+    private PdfStreamingService streamingService;
+    private Resource resource;
+    private long fileSize;
+    private HttpHeaders singleRange;
+    private HttpHeaders multiRange;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        Path pdf = SyntheticPdf.create(sizeMb);
+        resource = new FileSystemResource(pdf);
+        fileSize = Files.size(pdf);
+        streamingService = new PdfStreamingService(262144, 8, 4194304);
+    }
+
+    @Setup(Level.Iteration)
+    public void pickRanges() {
+        long start = ThreadLocalRandom.current().nextLong(fileSize - 262144);
+
+        singleRange = new HttpHeaders();
+        singleRange.set(HttpHeaders.RANGE, "bytes=" + start + "-" + (start + 262143));
+
+        // xref lookup pattern of PDF.js: scattered small ranges, two of them adjacent
+        multiRange = new HttpHeaders();
+        multiRange.set(HttpHeaders.RANGE, "bytes=" + start + "-" + (start + 4095)
+                + "," + (start + 4096) + "-" + (start + 8191)
+                + ",0-1023"
+                + "," + (fileSize - 65536) + "-" + (fileSize - 1));
+    }
+
+    @Benchmark
+    public ResourceRegion singleRange() throws IOException {
+        return streamingService.getResourceRegion(resource, singleRange);
+    }
+
+    @Benchmark
+    public List<ResourceRegion> multiRange() throws IOException {
+        return streamingService.getResourceRegions(resource, multiRange);
+    }
+}
@@ -0,0 +1,78 @@
+package me.remontada.readify.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.remontada.readify.service.InMemoryRateLimitStore;
+import me.remontada.readify.service.RateLimitingService;
+import me.remontada.readify.service.RateLimitingService.RateLimitResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-request rate limit check with a single hot user and with many concurrent readers.
+ * Limits are set high and each user reads sequentially, so the full allowed path (both buckets and
+ * the access pattern window) is measured rather than the denial shortcut.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitingServiceBenchmark {
+
+    private static final long CHUNK = 262144;
+    // Large enough that sequential readers never wrap or reach the coverage limit
+    private static final long CONTENT_LENGTH = 1L << 50;
+
+    @Param({"1", "10000"})
+    public int users;
+
+    private RateLimitingService rateLimitingService;
+    private String[] sessionTokens;
+    private AtomicLongArray positions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimitingService = new RateLimitingService(new InMemoryRateLimitStore(100_000), true,
+                Integer.MAX_VALUE / 4, Integer.MAX_VALUE / 4, Integer.MAX_VALUE, 30, 100_000,
+                60, 1e12, Long.MAX_VALUE / 2, 1.0, 0, CHUNK, 600, 0.75, new SimpleMeterRegistry());
+        sessionTokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            sessionTokens[i] = "session-" + i;
+        }
+        positions = new AtomicLongArray(users);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RateLimitResult checkRateLimit() {
+        return check();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public RateLimitResult checkRateLimitContended() {
+        return check();
+    }
+
+    private RateLimitResult check() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        long start = positions.getAndAdd(user, CHUNK);
+        return rateLimitingService.checkRateLimit((long) user, sessionTokens[user], 7L, start, start + CHUNK - 1, CONTENT_LENGTH);
+    }
+}
@@ -0,0 +1,108 @@
+package me.remontada.readify.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.remontada.readify.model.Book;
+import me.remontada.readify.model.User;
+import me.remontada.readify.service.InMemoryStreamingSessionStore;
+import me.remontada.readify.service.StreamingSessionService;
+import me.remontada.readify.service.StreamingSessionService.StreamingSession;
+import me.remontada.readify.service.StreamingSessionService.StreamingSessionDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session checks done on every chunk request.
+ * - validateLiveSession: token found in memory, signature compared
+ * - verifySignature:     token not in memory, HMAC recomputed (restart / other node path);
+ *                        user is null so the session is not re-inserted and every call signs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingSessionServiceBenchmark {
+
+    private static final int SESSIONS = 10_000;
+
+    private StreamingSessionService sessionService;
+    private StreamingSessionDescriptor live;
+    private String unknownToken;
+    private String unknownSignature;
+    private Instant unknownIssuedAt;
+    private User user;
+    private Book book;
+
+    @Setup(Level.Trial)
+    public void openSessions() {
+        sessionService = newService();
+
+        user = new User();
+        user.setId(42L);
+        user.setFirstName("Bench");
+        user.setLastName("Reader");
+        user.setEmail("bench.reader@example.com");
+
+        book = new Book();
+        book.setId(7L);
+        book.setTitle("Benchmark Book");
+
+        // Populate the session map so lookups run against a realistic table size
+        for (int i = 0; i < SESSIONS; i++) {
+            live = sessionService.openSession(user, book);
+        }
+
+        // A session issued by "another node": valid signature, unknown to this service
+        StreamingSessionService otherNode = newService();
+        StreamingSessionDescriptor foreign = otherNode.openSession(user, book);
+        unknownToken = foreign.token();
+        unknownSignature = foreign.watermarkSignature();
+        unknownIssuedAt = foreign.issuedAt();
+    }
+
+    private static StreamingSessionService newService() {
+        return new StreamingSessionService(7200, "benchmark-watermark-secret", "", 10000,
+                new InMemoryStreamingSessionStore(), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<StreamingSession> validateLiveSession() {
+        return sessionService.validateSession(live.token(), user.getId(), book.getId(), live.watermarkSignature());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<StreamingSession> validateLiveSessionContended() {
+        return sessionService.validateSession(live.token(), user.getId(), book.getId(), live.watermarkSignature());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<StreamingSession> verifySignature() {
+        return sessionService.validateSession(unknownToken, user.getId(), book.getId(), unknownSignature,
+                unknownIssuedAt, null, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<StreamingSession> verifySignatureContended() {
+        return sessionService.validateSession(unknownToken, user.getId(), book.getId(), unknownSignature,
+                unknownIssuedAt, null, null);
+    }
+}
@@ -0,0 +1,66 @@
+package me.remontada.readify.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes structurally plausible PDF files of a given size for benchmarks.
+ *
+ * The file has a %PDF- header, one page object roughly every 64 KB separated by
+ * incompressible stream data, and a classic xref section, trailer and startxref
+ * footer, so header/footer extraction and range math see realistic offsets.
+ */
+final class SyntheticPdf {
+
+    static final int PAGE_SPACING = 65536;
+
+    private SyntheticPdf() {
+    }
+
+    static Path create(int sizeMb) throws IOException {
+        Path file = Files.createTempFile("readify-bench-" + sizeMb + "mb-", ".pdf");
+        file.toFile().deleteOnExit();
+
+        long targetSize = sizeMb * 1024L * 1024L;
+        Random random = new Random(sizeMb);
+        byte[] filler = new byte[PAGE_SPACING];
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            long written = write(out, "%PDF-1.7\n%âãÏÓ\n");
+            int objectNumber = 1;
+
+            // Leave ~200 KB for the footer so the xref section is inside the initial chunk
+            while (written < targetSize - 204800) {
+                written += write(out, objectNumber + " 0 obj\n<< /Type /Page /Parent 2 0 R /Contents "
+                        + (objectNumber + 1) + " 0 R >>\nendobj\n");
+                written += write(out, (objectNumber + 1) + " 0 obj\n<< /Length " + filler.length + " >>\nstream\n");
+                random.nextBytes(filler);
+                out.write(filler);
+                written += filler.length;
+                written += write(out, "\nendstream\nendobj\n");
+                objectNumber += 2;
+            }
+
+            long xrefOffset = written;
+            StringBuilder xref = new StringBuilder("xref\n0 1\n0000000000 65535 f \n");
+            while (written + xref.length() < targetSize - 128) {
+                xref.append("% padding to reach the requested size\n");
+            }
+            xref.append("trailer\n<< /Size ").append(objectNumber).append(" /Root 2 0 R >>\n")
+                    .append("startxref\n").append(xrefOffset).append("\n%%EOF\n");
+            write(out, xref.toString());
+        }
+        return file;
+    }
+
+    private static long write(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes);
+        return bytes.length;
+    }
+}
@@ -0,0 +1,144 @@
+package me.remontada.readify.benchmark;
+
+import me.remontada.readify.service.TokenBucket;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket shared by 1, 4 and all available threads: the packed-long {@link TokenBucket}
+ * against the previous AtomicLong + volatile Instant bucket with a single CAS attempt.
+ *
+ * The bucket never runs dry during an iteration, so every denial counted in the "denied" aux
+ * counter is a request lost to CAS contention (the old bucket) rather than to the limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBucketBenchmark {
+
+    private final long clockOrigin = System.nanoTime();
+
+    private TokenBucket bucket;
+    private LegacyTokenBucket legacyBucket;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        bucket = new TokenBucket(Integer.MAX_VALUE, Integer.MAX_VALUE, TokenBucket.clockMillis(clockOrigin));
+        legacyBucket = new LegacyTokenBucket(Integer.MAX_VALUE, Integer.MAX_VALUE / 1000);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long granted;
+        public long denied;
+
+        void record(boolean allowed) {
+            if (allowed) {
+                granted++;
+            } else {
+                denied++;
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void packed1(Outcomes outcomes) {
+        outcomes.record(bucket.tryConsume(TokenBucket.clockMillis(clockOrigin)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void packed4(Outcomes outcomes) {
+        outcomes.record(bucket.tryConsume(TokenBucket.clockMillis(clockOrigin)));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void packedMax(Outcomes outcomes) {
+        outcomes.record(bucket.tryConsume(TokenBucket.clockMillis(clockOrigin)));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void legacy1(Outcomes outcomes) {
+        outcomes.record(legacyBucket.tryConsume());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void legacy4(Outcomes outcomes) {
+        outcomes.record(legacyBucket.tryConsume());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void legacyMax(Outcomes outcomes) {
+        outcomes.record(legacyBucket.tryConsume());
+    }
+
+    /**
+     * The bucket RateLimitingService used before, kept for comparison.
+     */
+    private static final class LegacyTokenBucket {
+        private final int capacity;
+        private final double refillRate;
+        private final AtomicLong tokens;
+        private volatile Instant lastRefill;
+
+        LegacyTokenBucket(int requestsPerMinute, int capacity) {
+            this.capacity = capacity;
+            this.refillRate = requestsPerMinute / 60.0;
+            this.tokens = new AtomicLong(capacity * 1000L);
+            this.lastRefill = Instant.now();
+        }
+
+        boolean tryConsume() {
+            refill();
+            long currentTokens = tokens.get();
+            if (currentTokens >= 1000) {
+                return tokens.compareAndSet(currentTokens, currentTokens - 1000);
+            }
+            return false;
+        }
+
+        private void refill() {
+            Instant now = Instant.now();
+            Instant last = lastRefill;
+
+            if (ChronoUnit.MILLIS.between(last, now) > 100) {
+                double elapsed = ChronoUnit.MILLIS.between(last, now) / 1000.0;
+                long tokensToAdd = (long) (elapsed * refillRate * 1000);
+
+                if (tokensToAdd > 0) {
+                    long currentTokens = tokens.get();
+                    long newTokens = Math.min(capacity * 1000L, currentTokens + tokensToAdd);
+
+                    if (tokens.compareAndSet(currentTokens, newTokens)) {
+                        lastRefill = now;
+                    }
+                }
+            }
+        }
+    }
+}
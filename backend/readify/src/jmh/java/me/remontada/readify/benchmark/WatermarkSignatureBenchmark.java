@@ -0,0 +1,93 @@
+package me.remontada.readify.benchmark;
+
+import me.remontada.readify.service.WatermarkSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watermark signature computation, the per-call Mac.getInstance + init + String.format path the
+ * session service used before against the pooled {@link WatermarkSigner}. Run with the gc
+ * profiler (the jmh profile does) and compare gc.alloc.rate.norm.
+ *
+ * The signing methods run on 8 threads so the pool is contended the way it is under load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatermarkSignatureBenchmark {
+
+    private static final byte[] SECRET = "benchmark-watermark-secret".getBytes(StandardCharsets.UTF_8);
+
+    private WatermarkSigner signer;
+    private String token;
+    private Instant issuedAt;
+    private String signature;
+    private String tamperedSignature;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        signer = new WatermarkSigner(SECRET, Runtime.getRuntime().availableProcessors() * 2);
+        token = UUID.randomUUID().toString();
+        issuedAt = Instant.now();
+        signature = signer.sign(42L, 7L, token, issuedAt);
+        tamperedSignature = signature.substring(0, signature.length() - 1) + "A";
+
+        if (!signature.equals(legacySign(42L, 7L, token, issuedAt))) {
+            throw new IllegalStateException("Pooled signer does not match the legacy signature format");
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacy() {
+        return legacySign(42L, 7L, token, issuedAt);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String pooled() {
+        return signer.sign(42L, 7L, token, issuedAt);
+    }
+
+    @Benchmark
+    public boolean constantTimeCompare() {
+        return WatermarkSigner.matches(signature, tamperedSignature);
+    }
+
+    private static String legacySign(Long userId, Long bookId, String token, Instant issuedAt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+            String payload = String.format("uid:%s|book:%s|token:%s|issued:%s",
+                    userId,
+                    bookId,
+                    token,
+                    issuedAt.toString());
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to compute streaming watermark signature", e);
+        }
+    }
+}
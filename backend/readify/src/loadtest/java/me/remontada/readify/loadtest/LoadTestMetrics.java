@@ -0,0 +1,117 @@
+package me.remontada.readify.loadtest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side measurements of a load test run: latency histogram and status codes per step,
+ * bytes received and completed reading sessions.
+ */
+class LoadTestMetrics {
+
+    private static final String LATENCY = "loadtest.request.latency";
+    private static final String RESPONSES = "loadtest.responses";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder completedSessions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    void record(String step, int status, long nanos, long bytes) {
+        Timer.builder(LATENCY)
+                .tag("step", step)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder(RESPONSES)
+                .tag("step", step)
+                .tag("status", Integer.toString(status))
+                .register(registry)
+                .increment();
+        bytesReceived.add(bytes);
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordCompletedSession() {
+        completedSessions.increment();
+    }
+
+    long responses(String step, int status) {
+        Counter counter = registry.find(RESPONSES).tag("step", step).tag("status", Integer.toString(status)).counter();
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    Map<String, Object> report(Duration elapsed, int readers) {
+        double seconds = Math.max(1, elapsed.toMillis()) / 1000.0;
+        long totalRequests = 0;
+        long rateLimited = 0;
+
+        Map<String, Object> steps = new TreeMap<>();
+        for (Timer timer : registry.find(LATENCY).timers()) {
+            String step = timer.getId().getTag("step");
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("meanMs", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                latency.put("p" + formatPercentile(percentile.percentile()) + "Ms",
+                        round(percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            latency.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+
+            Map<String, Long> statuses = new TreeMap<>();
+            registry.find(RESPONSES).tag("step", step).counters().forEach(counter ->
+                    statuses.put(counter.getId().getTag("status"), (long) counter.count()));
+
+            long count = snapshot.count();
+            long limited = statuses.getOrDefault("429", 0L);
+            totalRequests += count;
+            rateLimited += limited;
+
+            Map<String, Object> stepReport = new LinkedHashMap<>();
+            stepReport.put("requests", count);
+            stepReport.put("requestsPerSecond", round(count / seconds));
+            stepReport.put("latency", latency);
+            stepReport.put("statuses", statuses);
+            stepReport.put("rateLimitedRatio", count > 0 ? round((double) limited / count) : 0.0);
+            steps.put(step, stepReport);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("readers", readers);
+        report.put("elapsedSeconds", round(seconds));
+        report.put("requests", totalRequests);
+        report.put("requestsPerSecond", round(totalRequests / seconds));
+        report.put("megabytesPerSecond", round(bytesReceived.sum() / 1048576.0 / seconds));
+        report.put("completedSessions", completedSessions.sum());
+        report.put("transportFailures", failures.sum());
+        report.put("rateLimitedRatio", totalRequests > 0 ? round((double) rateLimited / totalRequests) : 0.0);
+        report.put("steps", steps);
+        return report;
+    }
+
+    private static String formatPercentile(double percentile) {
+        String value = Double.toString(percentile * 100);
+        return value.endsWith(".0") ? value.substring(0, value.length() - 2) : value.replace('.', '_');
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
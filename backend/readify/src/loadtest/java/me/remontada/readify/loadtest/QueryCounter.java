@@ -0,0 +1,93 @@
+package me.remontada.readify.loadtest;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts SQL statements per simulated reader and per endpoint.
+ *
+ * Hibernate calls the inspector for every statement it prepares; the request thread is tagged by
+ * {@link ReaderTaggingFilter} from the X-Loadtest-Reader / X-Loadtest-Step headers sent by
+ * {@link SimulatedReader}, so statements issued by the security filter are attributed as well.
+ */
+public class QueryCounter implements StatementInspector {
+
+    static final String READER_HEADER = "X-Loadtest-Reader";
+    static final String STEP_HEADER = "X-Loadtest-Step";
+
+    private static final ThreadLocal<String[]> CURRENT = new ThreadLocal<>();
+    private static final ConcurrentMap<String, LongAdder> BY_READER = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> BY_STEP = new ConcurrentHashMap<>();
+    private static final LongAdder UNTAGGED = new LongAdder();
+
+    @Override
+    public String inspect(String sql) {
+        String[] tag = CURRENT.get();
+        if (tag == null) {
+            UNTAGGED.increment();
+        } else {
+            BY_READER.computeIfAbsent(tag[0], k -> new LongAdder()).increment();
+            BY_STEP.computeIfAbsent(tag[1], k -> new LongAdder()).increment();
+        }
+        return sql;
+    }
+
+    static void reset() {
+        BY_READER.clear();
+        BY_STEP.clear();
+        UNTAGGED.reset();
+    }
+
+    static Map<String, Long> byReader() {
+        return snapshot(BY_READER);
+    }
+
+    static Map<String, Long> byStep() {
+        return snapshot(BY_STEP);
+    }
+
+    static long untagged() {
+        return UNTAGGED.sum();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, counter) -> result.put(key, counter.sum()));
+        return result;
+    }
+
+    /**
+     * Tags the request thread with the reader and step headers; registered ahead of Spring Security.
+     */
+    static class ReaderTaggingFilter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            String reader = request.getHeader(READER_HEADER);
+            if (reader == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            String step = request.getHeader(STEP_HEADER);
+            CURRENT.set(new String[]{reader, step != null ? step : "unknown"});
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                CURRENT.remove();
+            }
+        }
+    }
+}
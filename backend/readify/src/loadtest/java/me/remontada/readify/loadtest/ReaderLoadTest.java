@@ -0,0 +1,285 @@
+package me.remontada.readify.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.model.Book;
+import me.remontada.readify.model.Category;
+import me.remontada.readify.model.Permission;
+import me.remontada.readify.model.Publisher;
+import me.remontada.readify.model.User;
+import me.remontada.readify.repository.BookRepository;
+import me.remontada.readify.repository.CategoryRepository;
+import me.remontada.readify.repository.PublisherRepository;
+import me.remontada.readify.repository.UserRepository;
+import me.remontada.readify.service.FileStorageService;
+import me.remontada.readify.util.JwtUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end capacity test of the reader endpoints.
+ *
+ * Boots the full application on a random port against Postgres (Testcontainers, or an existing
+ * database via -Dloadtest.db-url), seeds one premium book and one subscribed user per simulated
+ * reader, then runs {@link SimulatedReader}s concurrently for the configured duration.
+ *
+ * Reports per step: throughput, latency percentiles, status codes and the 429 ratio from
+ * RateLimitingService, plus SQL statements per reader and per step ({@link QueryCounter}).
+ * The report is logged and written to target/loadtest-report.json.
+ *
+ * Only runs with the loadtest Maven profile: mvn -P loadtest test
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class ReaderLoadTest {
+
+    private static PostgreSQLContainer<?> postgres;
+    private static Path storageDir;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @DynamicPropertySource
+    static void loadTestProperties(DynamicPropertyRegistry registry) {
+        String dbUrl = System.getProperty("loadtest.db-url");
+        if (dbUrl != null && !dbUrl.isBlank()) {
+            registry.add("spring.datasource.url", () -> dbUrl);
+            registry.add("spring.datasource.username", () -> System.getProperty("loadtest.db-username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("loadtest.db-password", ""));
+        } else {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+            registry.add("spring.datasource.url", postgres::getJdbcUrl);
+            registry.add("spring.datasource.username", postgres::getUsername);
+            registry.add("spring.datasource.password", postgres::getPassword);
+        }
+
+        // Pool sized for the readers, so the test measures the application rather than pool waits
+        registry.add("spring.datasource.hikari.maximum-pool-size",
+                () -> System.getProperty("loadtest.db-pool-size", "50"));
+
+        try {
+            storageDir = Files.createTempDirectory("readify-loadtest-storage");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("app.storage.local.base-path", storageDir::toString);
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void readersStreamBookUnderLoad() throws Exception {
+        SimulatedReader.Settings settings = SimulatedReader.Settings.fromSystemProperties();
+        log.info("Load test settings: {}", settings);
+
+        List<User> readers = seedReaders(settings.readers());
+        Book book = seedBook(readers.get(0));
+        List<String> tokens = readers.stream().map(this::issueToken).toList();
+
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        URI baseUri = URI.create("http://localhost:" + port);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        QueryCounter.reset();
+        long started = System.nanoTime();
+        long deadline = started + settings.rampUp().toNanos() + settings.duration().toNanos();
+        long rampStepNanos = settings.rampUp().toNanos() / Math.max(1, readers.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(readers.size());
+        try {
+            for (int i = 0; i < readers.size(); i++) {
+                SimulatedReader reader = new SimulatedReader(i, baseUri, tokens.get(i), book.getId(), settings,
+                        metrics, client, deadline);
+                long delayNanos = rampStepNanos * i;
+                executor.submit(() -> {
+                    TimeUnit.NANOSECONDS.sleep(delayNanos);
+                    reader.run();
+                    return null;
+                });
+            }
+            executor.shutdown();
+            long waitNanos = deadline - System.nanoTime() + settings.requestTimeout().toNanos();
+            if (!executor.awaitTermination(Math.max(0, waitNanos), TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> report = metrics.report(Duration.ofNanos(System.nanoTime() - started), readers.size());
+        report.put("databaseQueries", databaseQueryReport(readers.size()));
+        writeReport(report);
+
+        assertTrue(metrics.responses(SimulatedReader.STEP_CONTENT, 206) > 0,
+                "No range request was served - check the application log for setup problems");
+    }
+
+    private Map<String, Object> databaseQueryReport(int readerCount) {
+        Map<String, Long> byReader = QueryCounter.byReader();
+        LongSummaryStatistics perReader = byReader.values().stream().mapToLong(Long::longValue).summaryStatistics();
+
+        return Map.of(
+                "perReaderMean", readerCount > 0 ? (double) perReader.getSum() / readerCount : 0.0,
+                "perReaderMin", perReader.getCount() > 0 ? perReader.getMin() : 0,
+                "perReaderMax", perReader.getCount() > 0 ? perReader.getMax() : 0,
+                "byStep", QueryCounter.byStep(),
+                "untagged", QueryCounter.untagged()
+        );
+    }
+
+    private void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String json = mapper.writeValueAsString(report);
+        Path target = Path.of(System.getProperty("loadtest.report", "target/loadtest-report.json"));
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.writeString(target, json, StandardCharsets.UTF_8);
+        log.info("Load test report ({}):\n{}", target.toAbsolutePath(), json);
+    }
+
+    private List<User> seedReaders(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setFirstName("Load");
+            user.setLastName("Reader " + i);
+            user.setEmail("reader" + i + "@loadtest.local");
+            user.setPassword("{noop}loadtest");
+            user.setPhoneNumber(String.format("+3816%08d", i));
+            user.setEmailVerified(true);
+            user.setPhoneVerified(true);
+            user.setActive(true);
+            user.setPermissions(EnumSet.of(Permission.CAN_READ_BOOKS, Permission.CAN_READ_PREMIUM_BOOKS,
+                    Permission.CAN_VIEW_SUBSCRIPTION));
+            users.add(user);
+        }
+        return userRepository.saveAll(users);
+    }
+
+    private String issueToken(User user) {
+        // The JWT filter only accepts the token whose session id is the user's current session
+        String token = jwtUtil.generateToken(user.getEmail(), user.getId());
+        user.setCurrentSessionToken(jwtUtil.extractSessionId(token));
+        userRepository.save(user);
+        return token;
+    }
+
+    private Book seedBook(User addedBy) throws IOException {
+        Category category = categoryRepository.save(Category.builder().name("Load test").build());
+        Publisher publisher = publisherRepository.save(Publisher.builder().name("Load test").build());
+
+        Book book = bookRepository.save(Book.builder()
+                .title("Load test book")
+                .author("Readify")
+                .isbn("9780000000001")
+                .category(category)
+                .publisher(publisher)
+                .pages(300)
+                .language("sr")
+                .price(BigDecimal.ZERO)
+                .isPremium(true)
+                .isAvailable(true)
+                .addedBy(addedBy)
+                .build());
+
+        byte[] pdf = loadPdf();
+        fileStorageService.saveBookPdf(
+                new MockMultipartFile("file", "book.pdf", "application/pdf", pdf), book.getId());
+        book.setContentFilePath(fileStorageService.getBookPdfPath(book.getId()));
+        return bookRepository.save(book);
+    }
+
+    /**
+     * The PDF from -Dloadtest.pdf, otherwise a synthetic file of -Dloadtest.pdf-size-mb.
+     */
+    private byte[] loadPdf() throws IOException {
+        String configured = System.getProperty("loadtest.pdf");
+        if (configured != null && !configured.isBlank()) {
+            return Files.readAllBytes(Path.of(configured));
+        }
+
+        int sizeMb = Integer.getInteger("loadtest.pdf-size-mb", 20);
+        byte[] pdf = new byte[sizeMb * 1024 * 1024];
+        new Random(sizeMb).nextBytes(pdf);
+
+        byte[] header = "%PDF-1.7\n%âãÏÓ\n".getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(header, 0, pdf, 0, header.length);
+        String footerText = "\ntrailer\n<< /Size 1 >>\nstartxref\n" + (pdf.length / 2) + "\n%%EOF\n";
+        byte[] footer = footerText.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(footer, 0, pdf, pdf.length - footer.length, footer.length);
+        return pdf;
+    }
+
+    @TestConfiguration
+    static class QueryCountingConfiguration {
+
+        @Bean
+        FilterRegistrationBean<QueryCounter.ReaderTaggingFilter> readerTaggingFilter() {
+            FilterRegistrationBean<QueryCounter.ReaderTaggingFilter> registration =
+                    new FilterRegistrationBean<>(new QueryCounter.ReaderTaggingFilter());
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+            return registration;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package me.remontada.readify.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * One reader following the request sequence of the web reader with PDF.js:
+ * <ol>
+ *     <li>{@code GET /api/v1/books/{id}/read} - access check and chunk size</li>
+ *     <li>{@code GET /api/reader/{id}/metadata} - streaming session and watermark</li>
+ *     <li>{@code GET /api/reader/{id}/initial-chunk} - header + footer for PDF.js bootstrap</li>
+ *     <li>{@code GET /api/reader/{id}/content} with {@code Range} - mostly the next chunk (page turns),
+ *         sometimes a random chunk (jumps from the outline or search)</li>
+ * </ol>
+ * Sessions repeat until the deadline. A 429 is backed off like the frontend retry does.
+ */
+@Slf4j
+class SimulatedReader implements Runnable {
+
+    static final String STEP_OPEN = "open";
+    static final String STEP_METADATA = "metadata";
+    static final String STEP_INITIAL_CHUNK = "initial-chunk";
+    static final String STEP_CONTENT = "content";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int readerId;
+    private final URI baseUri;
+    private final String jwt;
+    private final long bookId;
+    private final Settings settings;
+    private final LoadTestMetrics metrics;
+    private final HttpClient client;
+    private final long deadlineNanos;
+    private final Random random;
+
+    SimulatedReader(int readerId, URI baseUri, String jwt, long bookId, Settings settings,
+                    LoadTestMetrics metrics, HttpClient client, long deadlineNanos) {
+        this.readerId = readerId;
+        this.baseUri = baseUri;
+        this.jwt = jwt;
+        this.bookId = bookId;
+        this.settings = settings;
+        this.metrics = metrics;
+        this.client = client;
+        this.deadlineNanos = deadlineNanos;
+        this.random = new Random(settings.seed() + readerId);
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted() && System.nanoTime() < deadlineNanos) {
+            try {
+                if (readSession()) {
+                    metrics.recordCompletedSession();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                metrics.recordFailure();
+                log.debug("Reader {} failed: {}", readerId, e.getMessage());
+            }
+        }
+    }
+
+    private boolean readSession() throws IOException, InterruptedException {
+        HttpResponse<byte[]> open = send(STEP_OPEN, request("/api/v1/books/" + bookId + "/read"));
+        if (open.statusCode() != 200) {
+            return pause();
+        }
+        long chunkSize = json(open).path("stream").path("chunkSize").asLong(65536);
+
+        HttpResponse<byte[]> metadataResponse = send(STEP_METADATA, request("/api/reader/" + bookId + "/metadata"));
+        if (metadataResponse.statusCode() != 200) {
+            return pause();
+        }
+        JsonNode metadata = json(metadataResponse);
+        String sessionToken = metadata.path("sessionToken").asText();
+        String watermark = metadata.path("watermarkSignature").asText();
+        String issuedAt = metadata.path("issuedAt").asText();
+        long totalSize = metadata.path("totalSize").asLong();
+
+        send(STEP_INITIAL_CHUNK, sessionRequest("/api/reader/" + bookId + "/initial-chunk",
+                sessionToken, watermark, issuedAt).build());
+
+        long position = 0;
+        for (int i = 0; i < settings.rangesPerSession() && System.nanoTime() < deadlineNanos; i++) {
+            if (random.nextDouble() < settings.randomRatio()) {
+                position = (long) (random.nextDouble() * (totalSize / chunkSize)) * chunkSize;
+            }
+            long end = Math.min(position + chunkSize, totalSize) - 1;
+
+            HttpRequest rangeRequest = sessionRequest("/api/reader/" + bookId + "/content",
+                    sessionToken, watermark, issuedAt)
+                    .header("Range", "bytes=" + position + "-" + end)
+                    .build();
+            HttpResponse<byte[]> content = send(STEP_CONTENT, rangeRequest);
+
+            if (content.statusCode() == 429) {
+                Thread.sleep(settings.rateLimitBackoff().toMillis());
+                continue;
+            }
+            if (content.statusCode() != 206 && content.statusCode() != 200) {
+                return false;
+            }
+
+            position = end + 1 >= totalSize ? 0 : end + 1;
+            think();
+        }
+        return true;
+    }
+
+    private HttpResponse<byte[]> send(String step, HttpRequest request) throws IOException, InterruptedException {
+        HttpRequest tagged = HttpRequest.newBuilder(request, (name, value) -> true)
+                .header(QueryCounter.READER_HEADER, Integer.toString(readerId))
+                .header(QueryCounter.STEP_HEADER, step)
+                .build();
+
+        long started = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(tagged, HttpResponse.BodyHandlers.ofByteArray());
+        metrics.record(step, response.statusCode(), System.nanoTime() - started, response.body().length);
+        return response;
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", "Bearer " + jwt)
+                .timeout(settings.requestTimeout())
+                .GET()
+                .build();
+    }
+
+    private HttpRequest.Builder sessionRequest(String path, String sessionToken, String watermark, String issuedAt) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", "Bearer " + jwt)
+                .header("X-Readify-Session", sessionToken)
+                .header("X-Readify-Watermark", watermark)
+                .header("X-Readify-Issued-At", issuedAt)
+                .timeout(settings.requestTimeout())
+                .GET();
+    }
+
+    private JsonNode json(HttpResponse<byte[]> response) throws IOException {
+        return MAPPER.readTree(response.body());
+    }
+
+    private boolean pause() throws InterruptedException {
+        Thread.sleep(settings.rateLimitBackoff().toMillis());
+        return false;
+    }
+
+    private void think() throws InterruptedException {
+        long maxMillis = settings.thinkTime().toMillis();
+        if (maxMillis > 0) {
+            Thread.sleep(random.nextLong(maxMillis + 1));
+        }
+    }
+
+    /**
+     * Reader behaviour and run shape, configured through -Dloadtest.* system properties.
+     */
+    record Settings(int readers,
+                    Duration duration,
+                    Duration rampUp,
+                    int rangesPerSession,
+                    double randomRatio,
+                    Duration thinkTime,
+                    Duration rateLimitBackoff,
+                    Duration requestTimeout,
+                    long seed) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("loadtest.readers", 50),
+                    Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60L)),
+                    Duration.ofSeconds(Long.getLong("loadtest.ramp-up-seconds", 10L)),
+                    Integer.getInteger("loadtest.ranges-per-session", 40),
+                    Double.parseDouble(System.getProperty("loadtest.random-ratio", "0.2")),
+                    Duration.ofMillis(Long.getLong("loadtest.think-ms", 250L)),
+                    Duration.ofMillis(Long.getLong("loadtest.backoff-ms", 1000L)),
+                    Duration.ofSeconds(Long.getLong("loadtest.timeout-seconds", 30L)),
+                    Long.getLong("loadtest.seed", 42L)
+            );
+        }
+    }
+}
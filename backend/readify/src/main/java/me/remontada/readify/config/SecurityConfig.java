@@ -111,6 +111,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.HEAD, "/api/reader/*/content").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/reader/1/content").permitAll()
                         .requestMatchers(HttpMethod.HEAD, "/api/reader/1/content").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/reader/*/initial-chunk").permitAll()
 
 
                         // Book management
@@ -132,6 +133,10 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/v1/analytics/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/v1/admin/analytics/**").authenticated()
 
+                        // Actuator: health for probes, metrics carry per-book and per-user data
+                        .requestMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("CAN_DELETE_USERS")
+
                         // Everything else requires authentication
                         .anyRequest().authenticated()
                 )
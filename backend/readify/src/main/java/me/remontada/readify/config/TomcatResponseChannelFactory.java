@@ -0,0 +1,46 @@
+package me.remontada.readify.config;
+
+import me.remontada.readify.service.ResponseChannelFactory;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes PDF ranges into Tomcat's response stream as {@link ByteBuffer}s, which the connector copies
+ * into its output buffer directly instead of through a heap array. Other streams use
+ * {@link ResponseChannelFactory#DEFAULT}.
+ */
+@Component
+@ConditionalOnClass(CoyoteOutputStream.class)
+public class TomcatResponseChannelFactory implements ResponseChannelFactory {
+
+    @Override
+    public WritableByteChannel open(OutputStream out) {
+        return out instanceof CoyoteOutputStream coyote ? new CoyoteChannel(coyote) : DEFAULT.open(out);
+    }
+
+    private record CoyoteChannel(CoyoteOutputStream out) implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int remaining = source.remaining();
+            out.write(source);
+            return remaining - source.remaining();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // the response owns the stream
+        }
+    }
+}
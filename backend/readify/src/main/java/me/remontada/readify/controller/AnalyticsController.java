@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -35,11 +36,12 @@ import java.util.Map;
  * - GET /api/v1/analytics/my/stats - Get user's reading statistics
  *
  * Admin endpoints:
- * - GET /api/v1/admin/analytics/dashboard - Admin dashboard statistics
+ * - GET /api/v1/admin/analytics/dashboard - Admin dashboard statistics (?refresh=true recomputes them)
  * - GET /api/v1/admin/analytics/books/popular - Most popular books
  * - GET /api/v1/admin/analytics/books/most-read - Most read books
  * - GET /api/v1/admin/analytics/books/{bookId} - Specific book analytics
  * - GET /api/v1/admin/analytics/readers/top - Top readers
+ * - POST /api/v1/admin/analytics/rollup - Recompute daily analytics for a date range
  */
 @RestController
 @RequestMapping("/api/v1")
@@ -270,11 +272,13 @@ public class AnalyticsController {
 
     @GetMapping("/admin/analytics/dashboard")
     @PreAuthorize("hasAuthority('CAN_VIEW_ANALYTICS')")
-    public ResponseEntity<Map<String, Object>> getDashboardAnalytics(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getDashboardAnalytics(
+            @RequestParam(defaultValue = "false") boolean refresh,
+            Authentication authentication) {
         try {
             User currentUser = getCurrentUser(authentication);
 
-            Map<String, Object> analytics = analyticsService.getDashboardAnalytics();
+            Map<String, Object> analytics = analyticsService.getDashboardAnalytics(refresh);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
@@ -291,6 +295,46 @@ public class AnalyticsController {
     }
 
 
+    @PostMapping("/admin/analytics/rollup")
+    @PreAuthorize("hasAuthority('CAN_DELETE_USERS')")
+    public ResponseEntity<Map<String, Object>> rollupDailyAnalytics(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            Authentication authentication) {
+        try {
+            if (startDate.isBefore(endDate.minusDays(366))) {
+                throw new IllegalArgumentException("Rollup range is limited to one year");
+            }
+
+            Map<String, Object> period = Map.of(
+                    "startDate", startDate,
+                    "endDate", endDate
+            );
+            if (!analyticsService.startRollup(startDate, endDate)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                        "success", false,
+                        "message", "Another rollup is still running",
+                        "period", period
+                ));
+            }
+            logger.info("Analytics rollup {} - {} requested by {}", startDate, endDate, authentication.getName());
+
+            return ResponseEntity.accepted().body(Map.of(
+                    "success", true,
+                    "message", "Rollup started",
+                    "period", period
+            ));
+
+        } catch (Exception e) {
+            logger.error("Failed to roll up analytics", e);
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+
     @GetMapping("/admin/analytics/books/popular")
     @PreAuthorize("hasAuthority('CAN_VIEW_ANALYTICS')")
     public ResponseEntity<Map<String, Object>> getMostPopularBooks(
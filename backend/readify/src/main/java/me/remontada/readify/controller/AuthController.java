@@ -9,6 +9,7 @@ import me.remontada.readify.dto.request.ResetPasswordRequestDTO;
 import me.remontada.readify.dto.response.UserResponseDTO;
 import me.remontada.readify.mapper.UserMapper;
 import me.remontada.readify.model.User;
+import me.remontada.readify.security.PrincipalCache;
 import me.remontada.readify.service.UserService;
 import me.remontada.readify.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,12 +31,15 @@ public class AuthController {
     private final UserService userService;
     private final JwtUtil jwtUtil;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
 
     @Autowired
-    public AuthController(UserService userService, JwtUtil jwtUtil, PasswordEncoder passwordEncoder) {
+    public AuthController(UserService userService, JwtUtil jwtUtil, PasswordEncoder passwordEncoder,
+                          PrincipalCache principalCache) {
         this.userService = userService;
         this.jwtUtil = jwtUtil;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
     }
 
 
@@ -77,7 +81,7 @@ public class AuthController {
                 ));
             }
 
-            String token = jwtUtil.generateToken(email);
+            String token = jwtUtil.generateToken(email, user.getId());
             String refreshToken = jwtUtil.generateRefreshToken(email);
 
             // Extract session ID from token and store it to invalidate other sessions
@@ -85,6 +89,7 @@ public class AuthController {
             user.setCurrentSessionToken(sessionId);
             user.updateLastLogin();
             userService.save(user);
+            principalCache.invalidate(user);
 
             log.info("User {} logged in. New session created: {}", email, sessionId);
 
@@ -160,6 +165,7 @@ public class AuthController {
                     User user = userOpt.get();
                     user.setCurrentSessionToken(null);
                     userService.save(user);
+                    principalCache.invalidate(user);
                     log.info("User {} logged out. Session cleared.", email);
                 }
             }
@@ -278,7 +284,7 @@ public class AuthController {
                 ));
             }
 
-            String newToken = jwtUtil.generateToken(email);
+            String newToken = jwtUtil.generateToken(email, user.getId());
             String newRefreshToken = jwtUtil.generateRefreshToken(email);
 
             log.info("Token refreshed for user: {}", email);
@@ -34,6 +34,7 @@ public class BookController {
     private final CategoryService categoryService;
     private final PublisherService publisherService;
     private final PromoChapterRateLimitService promoRateLimitService;
+    private final PdfRangeStreamer pdfRangeStreamer;
 
     @Autowired
     public BookController(BookService bookService,
@@ -43,7 +44,8 @@ public class BookController {
                           StreamingSessionService streamingSessionService,
                           CategoryService categoryService,
                           PublisherService publisherService,
-                          PromoChapterRateLimitService promoRateLimitService) {
+                          PromoChapterRateLimitService promoRateLimitService,
+                          PdfRangeStreamer pdfRangeStreamer) {
         this.bookService = bookService;
         this.userService = userService;
         this.fileStorageService = fileStorageService;
@@ -52,6 +54,7 @@ public class BookController {
         this.categoryService = categoryService;
         this.publisherService = publisherService;
         this.promoRateLimitService = promoRateLimitService;
+        this.pdfRangeStreamer = pdfRangeStreamer;
     }
 
 
@@ -295,24 +298,9 @@ public class BookController {
             // Cache headers for public content
             response.setHeader("Cache-Control", "public, max-age=3600");
 
-            // Stream the content
-            try (java.io.InputStream inputStream = promoResource.getInputStream()) {
-                inputStream.skip(start);
-                long bytesToCopy = end - start + 1;
-                byte[] buffer = new byte[8192];
-                long totalCopied = 0;
-
-                while (totalCopied < bytesToCopy) {
-                    int bytesToRead = (int) Math.min(buffer.length, bytesToCopy - totalCopied);
-                    int bytesRead = inputStream.read(buffer, 0, bytesToRead);
-                    if (bytesRead == -1) break;
-                    response.getOutputStream().write(buffer, 0, bytesRead);
-                    totalCopied += bytesRead;
-                }
-
-                response.getOutputStream().flush();
-                log.info("Streamed promo chapter for book {} ({} bytes)", id, totalCopied);
-            }
+            // Stream the content from the shared mapped segments
+            long totalCopied = pdfRangeStreamer.stream(promoResource, start, end, request, response);
+            log.info("Streamed promo chapter for book {} ({} bytes)", id, totalCopied);
 
         } catch (Exception e) {
             log.error("Error streaming promo chapter for book {}", id, e);
@@ -6,6 +6,8 @@ import me.remontada.readify.model.Book;
 import me.remontada.readify.model.User;
 import me.remontada.readify.service.BookService;
 import me.remontada.readify.service.FileStorageService;
+import me.remontada.readify.service.PdfRangeStreamer;
+import me.remontada.readify.service.PdfSegmentCache;
 import me.remontada.readify.service.PdfStreamingService;
 import me.remontada.readify.service.StreamingSessionService;
 import me.remontada.readify.service.StreamingSessionService.StreamingSession;
@@ -24,10 +26,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -55,18 +59,24 @@ public class FileController {
     private final UserService userService;
     private final PdfStreamingService pdfStreamingService;
     private final StreamingSessionService streamingSessionService;
+    private final PdfSegmentCache pdfSegmentCache;
+    private final PdfRangeStreamer pdfRangeStreamer;
 
     @Autowired
     public FileController(FileStorageService fileStorageService,
                           BookService bookService,
                           UserService userService,
                           PdfStreamingService pdfStreamingService,
-                          StreamingSessionService streamingSessionService) {
+                          StreamingSessionService streamingSessionService,
+                          PdfSegmentCache pdfSegmentCache,
+                          PdfRangeStreamer pdfRangeStreamer) {
         this.fileStorageService = fileStorageService;
         this.bookService = bookService;
         this.userService = userService;
         this.pdfStreamingService = pdfStreamingService;
         this.streamingSessionService = streamingSessionService;
+        this.pdfSegmentCache = pdfSegmentCache;
+        this.pdfRangeStreamer = pdfRangeStreamer;
     }
 
     /**
@@ -103,6 +113,7 @@ public class FileController {
     public ResponseEntity<?> streamBookContent(@PathVariable Long bookId,
                                                Authentication authentication,
                                                HttpServletRequest request,
+                                               HttpServletResponse response,
                                                @RequestHeader HttpHeaders headers) {
         try {
             // Dohvatanje trenutnog korisnika
@@ -175,9 +186,35 @@ public class FileController {
 
             StreamingSession session = sessionOpt.get();
 
-            // Dohvatanje PDF resursa
-            Resource bookResource = fileStorageService.getBookPdf(bookId);
-            ResourceRegion region = pdfStreamingService.getResourceRegion(bookResource, headers);
+            // Dohvatanje PDF resursa (servira se iz deljenih mapiranih segmenata)
+            Resource bookResource = pdfSegmentCache.asResource(fileStorageService.getBookPdf(bookId));
+            List<ResourceRegion> regions = pdfStreamingService.getResourceRegions(bookResource, headers);
+
+            if (regions.size() > 1) {
+                // Više opsega u jednom zahtevu - multipart/byteranges odgovor se piše direktno
+                if (streamingSessionService.markReadCountRegistered(session.getToken())) {
+                    bookService.incrementReadCount(bookId);
+                }
+
+                log.info("User {} streaming book: {} ({}) from IP {} in {} ranges",
+                        userEmail, book.getTitle(), bookId, request.getRemoteAddr(), regions.size());
+
+                response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+                response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                        "inline; filename=\"" + sanitizeFilename(book.getTitle()) + ".pdf\"");
+                response.setHeader("X-Content-Type-Options", "nosniff");
+                response.setHeader("X-Frame-Options", "DENY");
+                response.setHeader("Referrer-Policy", "no-referrer");
+                response.setHeader("Pragma", "no-cache");
+                response.setHeader("Expires", "0");
+                response.setHeader("X-Readify-Watermark", session.getWatermarkSignature());
+
+                pdfRangeStreamer.streamMultipart(regions, MediaType.APPLICATION_PDF_VALUE, response);
+                return null; // odgovor je već upisan
+            }
+
+            ResourceRegion region = regions.get(0);
 
             long contentLength = bookResource.contentLength();
             long rangeStart = region.getPosition();
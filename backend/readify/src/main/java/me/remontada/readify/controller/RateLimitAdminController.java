@@ -0,0 +1,57 @@
+package me.remontada.readify.controller;
+
+import me.remontada.readify.dto.response.ReadingCoverageDTO;
+import me.remontada.readify.service.RateLimitingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inspection of the reading coverage the rate limiter tracks. Coverage is kept per node, so the
+ * answer describes the node that served the request.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/rate-limit")
+public class RateLimitAdminController {
+
+    private static final int MAX_TOP_LIMIT = 500;
+
+    private final RateLimitingService rateLimitingService;
+
+    @Autowired
+    public RateLimitAdminController(RateLimitingService rateLimitingService) {
+        this.rateLimitingService = rateLimitingService;
+    }
+
+    @GetMapping("/coverage/users/{userId}")
+    @PreAuthorize("hasAuthority('CAN_MODERATE_CONTENT')")
+    public ResponseEntity<Map<String, Object>> getUserCoverage(@PathVariable Long userId,
+                                                               @RequestParam(required = false) Long bookId) {
+        List<ReadingCoverageDTO> coverage = rateLimitingService.getCoverage(userId).stream()
+                .filter(c -> bookId == null || bookId.equals(c.getBookId()))
+                .toList();
+
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "userId", userId,
+                "coverage", coverage
+        ));
+    }
+
+    @GetMapping("/coverage/top")
+    @PreAuthorize("hasAuthority('CAN_MODERATE_CONTENT')")
+    public ResponseEntity<Map<String, Object>> getTopCoverage(@RequestParam(defaultValue = "20") int limit) {
+        int boundedLimit = Math.min(Math.max(1, limit), MAX_TOP_LIMIT);
+        List<ReadingCoverageDTO> coverage = rateLimitingService.getTopCoverage(boundedLimit);
+
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "limit", boundedLimit,
+                "coverage", coverage
+        ));
+    }
+}
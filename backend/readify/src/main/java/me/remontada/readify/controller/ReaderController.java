@@ -1,6 +1,8 @@
 package me.remontada.readify.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.dto.PageRangePlanDto;
 import me.remontada.readify.dto.PdfMetadataDto;
 import me.remontada.readify.model.Book;
 import me.remontada.readify.model.User;
@@ -8,19 +10,24 @@ import me.remontada.readify.security.MyUserDetails;
 import me.remontada.readify.service.BookService;
 import me.remontada.readify.service.FileStorageService;
 import me.remontada.readify.service.PdfMetadataService;
+import me.remontada.readify.service.PdfPagePrefetchPlanner;
+import me.remontada.readify.service.PdfRangeStreamer;
 import me.remontada.readify.service.PdfStreamingService;
 import me.remontada.readify.service.RateLimitingService;
 import me.remontada.readify.service.StreamingSessionService;
+import me.remontada.readify.service.StreamingSessionService.AuthorizationSnapshot;
+import me.remontada.readify.service.StreamingSessionService.AuthorizedSession;
 import me.remontada.readify.service.StreamingSessionService.StreamingSession;
 import me.remontada.readify.service.UserService;
 import me.remontada.readify.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.core.io.InputStreamResource;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -36,8 +43,10 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.Cookie;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -61,6 +70,9 @@ public class ReaderController {
     private final RateLimitingService rateLimitingService;
     private final JwtUtil jwtUtil;
     private final PdfMetadataService pdfMetadataService;
+    private final PdfRangeStreamer pdfRangeStreamer;
+    private final PdfPagePrefetchPlanner pdfPagePrefetchPlanner;
+    private final ObjectMapper objectMapper;
 
     private static final String AUTH_COOKIE_NAME = "readbookhub_auth_token";
 
@@ -72,7 +84,10 @@ public class ReaderController {
                            StreamingSessionService streamingSessionService,
                            RateLimitingService rateLimitingService,
                            JwtUtil jwtUtil,
-                           PdfMetadataService pdfMetadataService) {
+                           PdfMetadataService pdfMetadataService,
+                           PdfRangeStreamer pdfRangeStreamer,
+                           PdfPagePrefetchPlanner pdfPagePrefetchPlanner,
+                           ObjectMapper objectMapper) {
         this.fileStorageService = fileStorageService;
         this.bookService = bookService;
         this.userService = userService;
@@ -81,6 +96,9 @@ public class ReaderController {
         this.rateLimitingService = rateLimitingService;
         this.jwtUtil = jwtUtil;
         this.pdfMetadataService = pdfMetadataService;
+        this.pdfRangeStreamer = pdfRangeStreamer;
+        this.pdfPagePrefetchPlanner = pdfPagePrefetchPlanner;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -112,9 +130,12 @@ public class ReaderController {
      *
      * This endpoint provides:
      * 1. Streaming session credentials
-     * 2. Initial PDF structure (header + XRef table)
+     * 2. Initial PDF structure (header + XRef table) descriptor
      * 3. File size and recommended chunk size
      *
+     * The initial chunk bytes are served by /{bookId}/initial-chunk; pass
+     * inlineChunk=true to get them embedded as Base64 (legacy clients)
+     *
      * Frontend should call this BEFORE initializing PDF.js
      */
     @GetMapping("/{bookId}/metadata")
@@ -122,7 +143,8 @@ public class ReaderController {
                                              Authentication authentication,
                                              HttpServletRequest request,
                                              @RequestHeader HttpHeaders headers,
-                                             @RequestParam(value = "authToken", required = false) String authToken) {
+                                             @RequestParam(value = "authToken", required = false) String authToken,
+                                             @RequestParam(value = "inlineChunk", defaultValue = "false") boolean inlineChunk) {
         log.info("=== Metadata request for book {} ===", bookId);
 
         try {
@@ -164,7 +186,7 @@ public class ReaderController {
             Resource bookResource = fileStorageService.getBookPdf(bookId);
 
             // Extract metadata using dedicated service
-            PdfMetadataDto metadata = pdfMetadataService.extractMetadata(bookResource, book, currentUser);
+            PdfMetadataDto metadata = pdfMetadataService.extractMetadata(bookResource, book, currentUser, inlineChunk);
 
             log.info("Successfully generated metadata for book {} (size: {} bytes, initial chunk: {} bytes)",
                      bookId, metadata.getTotalSize(), metadata.getInitialChunkSize());
@@ -178,6 +200,172 @@ public class ReaderController {
         }
     }
 
+    /**
+     * Raw initial chunk (PDF header followed by the footer) for PDF.js bootstrapping
+     *
+     * Replaces the Base64 initialChunk in the metadata response: bytes are
+     * streamed straight from the segment cache and the response can be cached
+     * by the browser, since it only changes when the PDF file changes.
+     *
+     * Requires the streaming session returned by /{bookId}/metadata.
+     */
+    @GetMapping("/{bookId}/initial-chunk")
+    public void getInitialChunk(@PathVariable Long bookId,
+                                Authentication authentication,
+                                HttpServletRequest request,
+                                HttpServletResponse response,
+                                @RequestHeader HttpHeaders headers,
+                                @RequestParam(value = "authToken", required = false) String authToken) throws IOException {
+        try {
+            Optional<User> resolvedUser = resolveCurrentUser(authentication, request, headers, authToken);
+            if (resolvedUser.isEmpty()) {
+                log.warn("No authentication found for book {} initial chunk request", bookId);
+                writeJsonError(response, HttpServletResponse.SC_UNAUTHORIZED, "Authentication required");
+                return;
+            }
+            User currentUser = resolvedUser.get();
+
+            Book book = bookService.findById(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found"));
+
+            if (!book.isAccessibleToUser(currentUser)) {
+                log.warn("Access denied for user {} to book {} initial chunk", currentUser.getEmail(), bookId);
+                writeJsonError(response, HttpServletResponse.SC_FORBIDDEN, "Subscription required to access this book");
+                return;
+            }
+
+            Instant issuedAt = null;
+            String issuedAtHeader = headers.getFirst("X-Readify-Issued-At");
+            if (issuedAtHeader != null && !issuedAtHeader.isBlank()) {
+                try {
+                    issuedAt = Instant.parse(issuedAtHeader);
+                } catch (DateTimeParseException e) {
+                    log.debug("Failed to parse issuedAt header for book {}: {}", bookId, issuedAtHeader);
+                }
+            }
+
+            Optional<StreamingSession> sessionOpt = streamingSessionService.validateSession(
+                    headers.getFirst("X-Readify-Session"),
+                    currentUser.getId(),
+                    bookId,
+                    headers.getFirst("X-Readify-Watermark"),
+                    issuedAt,
+                    currentUser,
+                    book
+            );
+
+            if (sessionOpt.isEmpty()) {
+                writeJsonError(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired streaming session");
+                return;
+            }
+
+            Resource bookResource = fileStorageService.getBookPdf(bookId);
+            PdfMetadataService.InitialChunkLayout layout =
+                    pdfMetadataService.describeInitialChunk(bookResource.contentLength());
+
+            // Sadržaj zavisi samo od verzije fajla, ne od sesije
+            String etag = "\"init-" + layout.totalSize() + "-" + bookResource.lastModified() + "\"";
+
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", CacheControl.maxAge(Duration.ofHours(1)).cachePrivate().getHeaderValue());
+            response.setHeader("Vary", "Authorization, X-Readify-Session");
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            response.setHeader("X-Readify-Header-Length", String.valueOf(layout.headerLength()));
+            response.setHeader("X-Readify-Footer-Offset", String.valueOf(layout.footerOffset()));
+            response.setHeader("X-Readify-Total-Size", String.valueOf(layout.totalSize()));
+
+            if (etag.equals(headers.getFirst(HttpHeaders.IF_NONE_MATCH))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(layout.size());
+
+            OutputStream out = response.getOutputStream();
+            long written = pdfRangeStreamer.copy(bookResource, 0, layout.headerLength() - 1, out);
+            written += pdfRangeStreamer.copy(bookResource, layout.footerOffset(),
+                    layout.footerOffset() + layout.footerLength() - 1, out);
+
+            log.debug("Served initial chunk for book {} to user {}: {} bytes", bookId, currentUser.getEmail(), written);
+
+        } catch (Exception e) {
+            log.error("Error serving initial chunk for book {}", bookId, e);
+            if (!response.isCommitted()) {
+                writeJsonError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error accessing book");
+            }
+        }
+    }
+
+    /**
+     * Byte span plan for pages {fromPage}-{toPage}
+     *
+     * Uses the book's page offset table so the reader can fetch exactly the bytes
+     * for the pages it is about to render with a single Range request on /content.
+     * The plan for the following pages is advertised through Link preload hints.
+     * Books without an exact page offset table (not linearized) get 204 No Content
+     * and no hints; the reader then fetches ranges on demand.
+     */
+    @GetMapping("/{bookId}/pages/{fromPage:\\d+}-{toPage:\\d+}")
+    public ResponseEntity<?> getPageRangePlan(@PathVariable Long bookId,
+                                              @PathVariable int fromPage,
+                                              @PathVariable int toPage,
+                                              Authentication authentication,
+                                              HttpServletRequest request,
+                                              @RequestHeader HttpHeaders headers,
+                                              @RequestParam(value = "authToken", required = false) String authToken) {
+        try {
+            Optional<User> resolvedUser = resolveCurrentUser(authentication, request, headers, authToken);
+            if (resolvedUser.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("success", false, "message", "Authentication required"));
+            }
+            User currentUser = resolvedUser.get();
+
+            Book book = bookService.findById(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found"));
+
+            if (!book.isAccessibleToUser(currentUser)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("success", false, "message", "Subscription required to access this book"));
+            }
+
+            Resource bookResource = fileStorageService.getBookPdf(bookId);
+            Optional<PageRangePlanDto> exactPlan = pdfPagePrefetchPlanner.plan(
+                    bookId, bookResource.getFile().toPath(), fromPage, toPage);
+            if (exactPlan.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            PageRangePlanDto plan = exactPlan.get();
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePrivate());
+
+            if (!plan.getPrefetch().isEmpty()) {
+                PageRangePlanDto.PageSpan first = plan.getPrefetch().get(0);
+                PageRangePlanDto.PageSpan last = plan.getPrefetch().get(plan.getPrefetch().size() - 1);
+                builder.header(HttpHeaders.LINK, "</api/reader/" + bookId + "/pages/" + first.getPage() + "-"
+                        + last.getPage() + ">; rel=preload; as=fetch; crossorigin=use-credentials");
+                builder.header("X-Readify-Prefetch-Range", "bytes=" + first.getStart() + "-" + last.getEnd());
+            }
+
+            return builder.body(plan);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error planning pages {}-{} for book {}", fromPage, toPage, bookId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Error accessing book: " + e.getMessage()));
+        }
+    }
+
     /**
      * Legacy endpoint for streaming book content
      * Accepts JWT token via authToken query parameter and creates streaming session internally
@@ -194,6 +382,19 @@ public class ReaderController {
             bookId, authentication != null ? authentication.getName() : "null",
             authToken != null ? "present" : "null");
         try {
+            // Fast path: the session was already authorized for this book, no user or book lookups
+            Optional<AuthorizedSession> authorizedSession =
+                    findAuthorizedSession(bookId, authentication, request, headers, authToken);
+            if (authorizedSession.isPresent()) {
+                AuthorizationSnapshot snapshot = authorizedSession.get().snapshot();
+                serveContent(bookId, snapshot.userId(), snapshot.userEmail(), snapshot.bookTitle(),
+                        authorizedSession.get().session(), new FileSystemResource(snapshot.pdfPath()),
+                        snapshot.fileSize(), request, response, headers);
+                return;
+            }
+
+            long authorizationEpoch = streamingSessionService.currentAuthorizationEpoch();
+
             Authentication effectiveAuth = authentication;
             Optional<User> resolvedUser = Optional.empty();
 
@@ -203,9 +404,7 @@ public class ReaderController {
                 if (resolvedUser.isEmpty()) {
                     log.warn("No authentication found for book {} access. AuthToken param: {}",
                             bookId, authToken != null ? "present" : "null");
-                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    response.setContentType("application/json");
-                    response.getWriter().write("{\"success\": false, \"message\": \"Authentication required\"}");
+                    writeJsonError(response, HttpServletResponse.SC_UNAUTHORIZED, "Authentication required");
                     return;
                 }
 
@@ -228,9 +427,7 @@ public class ReaderController {
             // Check if user has access to the book
             if (!book.isAccessibleToUser(currentUser)) {
                 log.warn("Access denied for user {} to book {}", userEmail, bookId);
-                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"success\": false, \"message\": \"Subscription required to access this book\"}");
+                writeJsonError(response, HttpServletResponse.SC_FORBIDDEN, "Subscription required to access this book");
                 return;
             }
 
@@ -298,9 +495,7 @@ public class ReaderController {
 
             if (sessionOpt.isEmpty()) {
                 log.warn("Failed to create or validate streaming session for book {} by user {}", bookId, userEmail);
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"success\": false, \"message\": \"Invalid or expired streaming session\"}");
+                writeJsonError(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired streaming session");
                 return;
             }
 
@@ -310,141 +505,252 @@ public class ReaderController {
             Resource bookResource = fileStorageService.getBookPdf(bookId);
             long contentLength = bookResource.contentLength();
 
-            String clientIp = request.getRemoteAddr();
+            // Following chunk requests of this session are authorized from memory
+            streamingSessionService.recordAuthorization(session, currentUser, book,
+                    bookResource.getFile().toPath(), contentLength, authorizationEpoch);
+
+            serveContent(bookId, currentUser.getId(), userEmail, book.getTitle(), session,
+                    bookResource, contentLength, request, response, headers);
 
-            // Mark read count if this is the first access in this session
-            if (streamingSessionService.markReadCountRegistered(session.getToken())) {
-                bookService.incrementReadCount(bookId);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid range requested for book {}: {}", bookId, e.getMessage());
+            try {
+                if (!response.isCommitted()) {
+                    writeJsonError(response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+                            "Requested range not satisfiable");
+                }
+            } catch (IOException ioException) {
+                log.error("Failed to write error response", ioException);
+            }
+        } catch (Exception e) {
+            log.error("Error streaming book content for ID: {} via legacy endpoint", bookId, e);
+            try {
+                if (!response.isCommitted()) {
+                    writeJsonError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error accessing book");
+                }
+            } catch (IOException ioException) {
+                log.error("Failed to write error response", ioException);
             }
+        }
+    }
 
-            // Handle Range header for partial content requests
-            String rangeHeader = headers.getFirst(HttpHeaders.RANGE);
+    /**
+     * Serve the requested range(s) for an authorized streaming session
+     */
+    private void serveContent(Long bookId,
+                              Long userId,
+                              String userEmail,
+                              String bookTitle,
+                              StreamingSession session,
+                              Resource bookResource,
+                              long contentLength,
+                              HttpServletRequest request,
+                              HttpServletResponse response,
+                              HttpHeaders headers) throws IOException {
+        String clientIp = request.getRemoteAddr();
+
+        // Mark read count if this is the first access in this session
+        if (streamingSessionService.markReadCountRegistered(session.getToken())) {
+            bookService.incrementReadCount(bookId);
+        }
 
-            long start, end;
+        // Handle Range header for partial content requests
+        String rangeHeader = headers.getFirst(HttpHeaders.RANGE);
 
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                // Normal range request - handle as requested
-                try {
-                    String range = rangeHeader.substring(6);
-                    String[] ranges = range.split("-");
-                    start = Long.parseLong(ranges[0]);
-                    if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                        end = Long.parseLong(ranges[1]);
-                    } else {
-                        final long DEFAULT_CHUNK_SIZE = 5242880; // 5MB
-                        end = Math.min(start + DEFAULT_CHUNK_SIZE - 1, contentLength - 1);
-                    }
+        List<ResourceRegion> regions = rangeHeader != null && rangeHeader.startsWith("bytes=") && rangeHeader.indexOf(',') > 0
+                ? pdfStreamingService.getResourceRegions(bookResource, headers)
+                : List.of();
 
-                    // Validate range
-                    if (start >= contentLength || end >= contentLength || start > end) {
-                        throw new IllegalArgumentException("Invalid range");
-                    }
-                } catch (Exception e) {
-                    throw new IllegalArgumentException("Invalid range header: " + rangeHeader);
-                }
-            } else {
-                // No range header - send LAST part of file first (metadata-first strategy)
-                // PDF.js needs xref table and metadata which are usually at the end
-                final long METADATA_CHUNK_SIZE = 1048576; // 1MB from end should contain xref
-                start = Math.max(0, contentLength - METADATA_CHUNK_SIZE);
-                end = contentLength - 1;
-
-                log.info("Metadata-first strategy: sending bytes {}-{} ({} bytes) for PDF.js compatibility",
-                         start, end, end - start + 1);
+        if (regions.size() > 1) {
+            // Several ranges in one request - answered as multipart/byteranges
+            long[] ranges = new long[regions.size() * 2];
+            for (int i = 0; i < regions.size(); i++) {
+                ResourceRegion region = regions.get(i);
+                ranges[2 * i] = region.getPosition();
+                ranges[2 * i + 1] = region.getPosition() + region.getCount() - 1;
             }
 
-            // Check rate limiting before streaming
             RateLimitingService.RateLimitResult rateLimitResult = rateLimitingService.checkRateLimit(
-                    currentUser.getId(), session.getToken(), bookId, start, end);
+                    userId, session.getToken(), bookId, ranges, contentLength);
 
             if (!rateLimitResult.isAllowed()) {
                 log.warn("Rate limit exceeded for user {} on book {}: {}",
-                        currentUser.getEmail(), bookId, rateLimitResult.getReason());
-                response.setStatus(429); // Too Many Requests
-                response.setContentType("application/json");
-                response.getWriter().write("{\"success\": false, \"message\": \"" + rateLimitResult.getReason() + "\"}");
+                        userEmail, bookId, rateLimitResult.getReason());
+                writeJsonError(response, 429, rateLimitResult.getReason());
                 return;
             }
 
-            if (rateLimitResult.hasWarning()) {
-                log.warn("Suspicious activity warning for user {} on book {}: {}",
-                        currentUser.getEmail(), bookId, rateLimitResult.getReason());
-                // Continue but log the warning
-            }
-
-            // Log access
-            log.info("User {} streaming book: {} ({}) from IP {} range {}-{} ({} bytes) via legacy /api/reader endpoint",
-                    userEmail, book.getTitle(), bookId, clientIp, start, end, end - start + 1);
-
-            // Set 206 Partial Content status and headers manually
-            response.setStatus(206); // HttpServletResponse.SC_PARTIAL_CONTENT
-            response.setContentType("application/pdf");
-            response.setHeader("Accept-Ranges", "bytes");
-            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + contentLength);
-            response.setHeader("Content-Length", String.valueOf(end - start + 1));
-            response.setHeader("Content-Disposition", "inline; filename=\"" + sanitizeFilename(book.getTitle()) + ".pdf\"");
-
-            // Enhanced cache prevention headers
-            response.setHeader("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
-            response.setHeader("Pragma", "no-cache");
-            response.setHeader("Expires", "0");
-            response.setHeader("Vary", "Accept-Encoding, User-Agent");
-            response.setHeader("ETag", "\"session-" + session.getToken() + "-" + System.currentTimeMillis() + "\"");
-
-            // Security headers to prevent caching and downloading
-            response.setHeader("X-Content-Type-Options", "nosniff");
-            response.setHeader("X-Frame-Options", "SAMEORIGIN");
-            response.setHeader("Referrer-Policy", "strict-origin-when-cross-origin");
-
-            // Session and watermark headers
-            response.setHeader("X-Readify-Watermark", session.getWatermarkSignature());
-            response.setHeader("X-Readify-Session", session.getToken());
-            response.setHeader("X-Readify-Issued-At", session.getIssuedAt().toString());
-
-            // Manually stream the partial content
-            try (InputStream inputStream = bookResource.getInputStream()) {
-                long skipped = inputStream.skip(start);
-                if (skipped != start) {
-                    log.warn("Could not skip to position {} in file for book {}, skipped {}", start, bookId, skipped);
-                }
+            logRateLimitWarning(rateLimitResult, userEmail, bookId);
 
-                long bytesToCopy = end - start + 1;
-                byte[] buffer = new byte[8192]; // 8KB buffer
-                long totalCopied = 0;
+            log.info("User {} streaming book: {} ({}) from IP {} {} ranges via legacy /api/reader endpoint",
+                    userEmail, bookTitle, bookId, clientIp, regions.size());
 
-                while (totalCopied < bytesToCopy) {
-                    int bytesToRead = (int) Math.min(buffer.length, bytesToCopy - totalCopied);
-                    int bytesRead = inputStream.read(buffer, 0, bytesToRead);
+            applyStreamingHeaders(response, bookTitle, session);
+            long streamed = pdfRangeStreamer.streamMultipart(regions, "application/pdf", response);
+            log.debug("Streamed {} bytes in {} parts for book {} to user {}",
+                    streamed, regions.size(), bookId, userEmail);
+            return;
+        }
 
-                    if (bytesRead == -1) break; // End of stream
+        long start, end;
 
-                    response.getOutputStream().write(buffer, 0, bytesRead);
-                    totalCopied += bytesRead;
+        if (regions.size() == 1) {
+            // Several ranges merged into one region - answered as a single range
+            ResourceRegion region = regions.get(0);
+            start = region.getPosition();
+            end = region.getPosition() + region.getCount() - 1;
+        } else if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
+            // Normal range request - handle as requested
+            try {
+                String range = rangeHeader.substring(6);
+                String[] ranges = range.split("-");
+                start = Long.parseLong(ranges[0]);
+                if (ranges.length > 1 && !ranges[1].isEmpty()) {
+                    end = Long.parseLong(ranges[1]);
+                } else {
+                    final long DEFAULT_CHUNK_SIZE = 5242880; // 5MB
+                    end = Math.min(start + DEFAULT_CHUNK_SIZE - 1, contentLength - 1);
                 }
 
-                response.getOutputStream().flush();
-                log.debug("Successfully streamed {} bytes for book {} to user {}", totalCopied, bookId, userEmail);
+                // Validate range
+                if (start >= contentLength || end >= contentLength || start > end) {
+                    throw new IllegalArgumentException("Invalid range");
+                }
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Invalid range header: " + rangeHeader);
             }
+        } else {
+            // No range header - send LAST part of file first (metadata-first strategy)
+            // PDF.js needs xref table and metadata which are usually at the end
+            final long METADATA_CHUNK_SIZE = 1048576; // 1MB from end should contain xref
+            start = Math.max(0, contentLength - METADATA_CHUNK_SIZE);
+            end = contentLength - 1;
+
+            log.info("Metadata-first strategy: sending bytes {}-{} ({} bytes) for PDF.js compatibility",
+                     start, end, end - start + 1);
+        }
 
-        } catch (IllegalArgumentException e) {
-            log.warn("Invalid range requested for book {}: {}", bookId, e.getMessage());
-            try {
-                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"success\": false, \"message\": \"Requested range not satisfiable\"}");
-            } catch (IOException ioException) {
-                log.error("Failed to write error response", ioException);
-            }
-        } catch (Exception e) {
-            log.error("Error streaming book content for ID: {} via legacy endpoint", bookId, e);
-            try {
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"success\": false, \"message\": \"Error accessing book: " + e.getMessage() + "\"}");
-            } catch (IOException ioException) {
-                log.error("Failed to write error response", ioException);
+        // Check rate limiting before streaming
+        RateLimitingService.RateLimitResult rateLimitResult = rateLimitingService.checkRateLimit(
+                userId, session.getToken(), bookId, start, end, contentLength);
+
+        if (!rateLimitResult.isAllowed()) {
+            log.warn("Rate limit exceeded for user {} on book {}: {}",
+                    userEmail, bookId, rateLimitResult.getReason());
+            writeJsonError(response, 429, rateLimitResult.getReason());
+            return;
+        }
+
+        logRateLimitWarning(rateLimitResult, userEmail, bookId);
+
+        // Log access
+        log.info("User {} streaming book: {} ({}) from IP {} range {}-{} ({} bytes) via legacy /api/reader endpoint",
+                userEmail, bookTitle, bookId, clientIp, start, end, end - start + 1);
+
+        // Set 206 Partial Content status and headers manually
+        response.setStatus(206); // HttpServletResponse.SC_PARTIAL_CONTENT
+        response.setContentType("application/pdf");
+        response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + contentLength);
+        response.setHeader("Content-Length", String.valueOf(end - start + 1));
+        applyStreamingHeaders(response, bookTitle, session);
+
+        // Served from the shared segment cache, or zero-copy through sendfile or the shared FileChannel
+        long streamed = pdfRangeStreamer.stream(bookResource, start, end, request, response);
+        log.debug("Streamed {} bytes for book {} to user {}", streamed, bookId, userEmail);
+    }
+
+    /**
+     * Session-scoped authorization for chunk requests: the caller is identified from the
+     * security context or by verifying the JWT signature only, and the session must carry a
+     * snapshot recorded by an earlier fully checked request
+     */
+    private Optional<AuthorizedSession> findAuthorizedSession(Long bookId,
+                                                              Authentication authentication,
+                                                              HttpServletRequest request,
+                                                              HttpHeaders headers,
+                                                              String authToken) {
+        String sessionToken = headers.getFirst("X-Readify-Session");
+        if (sessionToken == null || sessionToken.isBlank()) {
+            sessionToken = request.getParameter("sessionToken");
+        }
+
+        String providedSignature = headers.getFirst("X-Readify-Watermark");
+        if (providedSignature == null || providedSignature.isBlank()) {
+            providedSignature = request.getParameter("watermark");
+        }
+
+        if (sessionToken == null || sessionToken.isBlank() || providedSignature == null) {
+            return Optional.empty();
+        }
+
+        String principalEmail = null;
+        if (authentication != null && authentication.getName() != null) {
+            principalEmail = authentication.getName();
+        } else {
+            String token = extractToken(headers, request, authToken);
+            if (token != null) {
+                try {
+                    principalEmail = jwtUtil.verify(token).email();
+                } catch (Exception e) {
+                    log.debug("Token rejected on streaming fast path: {}", e.getMessage());
+                }
             }
         }
+
+        return streamingSessionService.findAuthorizedSession(sessionToken, bookId, providedSignature, principalEmail);
+    }
+
+    /**
+     * Headers shared by single-range and multipart content responses
+     */
+    private void applyStreamingHeaders(HttpServletResponse response, String bookTitle, StreamingSession session) {
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Content-Disposition", "inline; filename=\"" + sanitizeFilename(bookTitle) + ".pdf\"");
+
+        // Enhanced cache prevention headers
+        response.setHeader("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
+        response.setHeader("Pragma", "no-cache");
+        response.setHeader("Expires", "0");
+        response.setHeader("Vary", "Accept-Encoding, User-Agent");
+        response.setHeader("ETag", "\"session-" + session.getToken() + "-" + System.currentTimeMillis() + "\"");
+
+        // Security headers to prevent caching and downloading
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("X-Frame-Options", "SAMEORIGIN");
+        response.setHeader("Referrer-Policy", "strict-origin-when-cross-origin");
+
+        // Session and watermark headers
+        response.setHeader("X-Readify-Watermark", session.getWatermarkSignature());
+        response.setHeader("X-Readify-Session", session.getToken());
+        response.setHeader("X-Readify-Issued-At", session.getIssuedAt().toString());
+    }
+
+    /**
+     * Resolve the current user from the security context, falling back to the
+     * JWT token in headers, query parameter or cookie
+     */
+    private Optional<User> resolveCurrentUser(Authentication authentication,
+                                              HttpServletRequest request,
+                                              HttpHeaders headers,
+                                              String authToken) {
+        if (authentication != null && authentication.getName() != null) {
+            return userService.findByEmail(authentication.getName());
+        }
+        return resolveUserFromToken(request, headers, authToken);
+    }
+
+    private void logRateLimitWarning(RateLimitingService.RateLimitResult rateLimitResult, String userEmail, Long bookId) {
+        if (rateLimitResult.hasWarning()) {
+            // Continue but log the warning
+            log.warn("Suspicious activity warning for user {} on book {}: {}",
+                    userEmail, bookId, rateLimitResult.getReason());
+        }
+    }
+
+    private void writeJsonError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        objectMapper.writeValue(response.getWriter(), Map.of("success", false, "message", message != null ? message : ""));
     }
 
     /**
@@ -474,18 +780,14 @@ public class ReaderController {
         }
 
         try {
-            String email = jwtUtil.extractEmail(token);
+            // Throws when the signature or expiration is invalid
+            String email = jwtUtil.verify(token).email();
 
             if (email == null || email.isBlank()) {
                 log.warn("Failed to extract email from token for legacy reader request");
                 return Optional.empty();
             }
 
-            if (!jwtUtil.validateToken(token, email)) {
-                log.warn("Token validation failed for email {} on legacy reader endpoint", email);
-                return Optional.empty();
-            }
-
             Optional<User> userOpt = userService.findByEmail(email);
 
             if (userOpt.isEmpty()) {
@@ -0,0 +1,64 @@
+package me.remontada.readify.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * PageRangePlanDto - Byte spans backing a range of PDF pages
+ *
+ * Lets the reader fetch exactly the bytes for the pages it is about to show
+ * (one Range request for the whole span) and prefetch the following pages.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageRangePlanDto {
+
+    private Long bookId;
+
+    /**
+     * First and last planned page (1-based, inclusive)
+     * toPage can be lower than requested when the span hits the size cap
+     */
+    private Integer fromPage;
+    private Integer toPage;
+
+    private Integer pageCount;
+    private Long totalSize;
+
+    /**
+     * Inclusive byte span covering all planned pages
+     */
+    private Long start;
+    private Long end;
+    private Long length;
+
+    /**
+     * Ready-to-use Range header value, e.g. "bytes=1024-524287"
+     */
+    private String range;
+
+    /**
+     * Per-page spans for the planned pages
+     */
+    private List<PageSpan> pages;
+
+    /**
+     * Spans of the pages that follow, to be prefetched by the reader
+     */
+    private List<PageSpan> prefetch;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageSpan {
+        private Integer page;
+        private Long start;
+        private Long end;
+    }
+}
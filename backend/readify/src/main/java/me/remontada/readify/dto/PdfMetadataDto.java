@@ -31,6 +31,9 @@ public class PdfMetadataDto {
      * - Root reference and XRef table (last ~100KB)
      *
      * This allows PDF.js to parse document structure without additional requests
+     *
+     * Only filled when requested with inlineChunk=true; otherwise the raw bytes
+     * are served by initialChunkUrl
      */
     private String initialChunk;
 
@@ -39,6 +42,22 @@ public class PdfMetadataDto {
      */
     private Long initialChunkSize;
 
+    /**
+     * Binary endpoint serving the initial chunk (application/octet-stream)
+     * Requires the same X-Readify-Session / Watermark / Issued-At headers as range requests
+     */
+    private String initialChunkUrl;
+
+    /**
+     * Number of header bytes at the start of the initial chunk
+     */
+    private Long headerLength;
+
+    /**
+     * File offset where the footer bytes (the rest of the initial chunk) begin
+     */
+    private Long footerOffset;
+
     /**
      * Streaming session token for authenticated chunk requests
      */
@@ -68,4 +87,15 @@ public class PdfMetadataDto {
      * PDF version (e.g., "1.7")
      */
     private String pdfVersion;
-}
\ No newline at end of file
+
+    /**
+     * True when the PDF is linearized ("fast web view"), so the first page
+     * can be rendered from the start of the file alone
+     */
+    private Boolean linearized;
+
+    /**
+     * Page count from the precomputed structure index
+     */
+    private Integer pageCount;
+}
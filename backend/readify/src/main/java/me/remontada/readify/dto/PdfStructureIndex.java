@@ -0,0 +1,87 @@
+package me.remontada.readify.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * PdfStructureIndex - Precomputed layout of a PDF file
+ *
+ * Built once when the PDF is uploaded and stored beside it, so metadata and
+ * streaming requests can answer structural questions without reading the file:
+ * - Header version and linearization dictionary (first KB of the file)
+ * - startxref offset and trailer location (last KB of the file)
+ * - Byte offsets of every uncompressed page object
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfStructureIndex {
+
+    /**
+     * Format version of the stored index, bumped when fields change meaning
+     */
+    private Integer indexVersion;
+
+    /**
+     * Size of the indexed file in bytes
+     */
+    private Long fileSize;
+
+    /**
+     * Modification time of the indexed file (epoch millis)
+     */
+    private Long lastModified;
+
+    /**
+     * PDF version from the %PDF- header (e.g., "1.7")
+     */
+    private String pdfVersion;
+
+    /**
+     * Offset of the last cross-reference section, as recorded after startxref (-1 if missing)
+     */
+    private Long xrefOffset;
+
+    /**
+     * Offset of the last "trailer" keyword, or the xref offset for cross-reference streams
+     */
+    private Long trailerOffset;
+
+    /**
+     * True when the file starts with a linearization dictionary
+     */
+    private Boolean linearized;
+
+    /**
+     * Raw linearization dictionary (e.g., "<< /Linearized 1 /L 123 /O 5 /E 4567 /N 10 /T 890 /H [ 1 2 ] >>")
+     */
+    private String linearizationDictionary;
+
+    /**
+     * Offset of the end of the first page (/E), -1 when the file is not linearized
+     */
+    private Long firstPageEndOffset;
+
+    /**
+     * Page count declared by the linearization dictionary (/N), otherwise the number of page objects found
+     */
+    private Integer pageCount;
+
+    /**
+     * Page objects in file order. Pages stored inside compressed object streams are not listed.
+     */
+    private List<PageObject> pages;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageObject {
+        private Integer objectNumber;
+        private Long offset;
+    }
+}
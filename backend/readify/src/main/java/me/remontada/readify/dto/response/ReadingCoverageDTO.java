@@ -0,0 +1,27 @@
+package me.remontada.readify.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadingCoverageDTO {
+
+    private Long userId;
+    private Long bookId;
+
+    private Long contentLength;
+    private Long blockSize;
+    private Integer totalBlocks;
+    private Integer servedBlocks;
+    private Double coverage;
+    private Long coverageWindowSeconds;
+
+    private LocalDateTime lastActivity;
+}
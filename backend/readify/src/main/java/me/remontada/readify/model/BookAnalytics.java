@@ -12,6 +12,7 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
+// (book_id, analytics_date) is unique, see SchemaMigrationRunner
 @Table(name = "book_analytics")
 public class BookAnalytics {
 
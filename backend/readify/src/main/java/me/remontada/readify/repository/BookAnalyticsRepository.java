@@ -40,37 +40,4 @@ public interface BookAnalyticsRepository extends JpaRepository<BookAnalytics, Lo
 
     @Query("SELECT COALESCE(SUM(ba.dailyClicks), 0) FROM BookAnalytics ba WHERE ba.analyticsDate BETWEEN :startDate AND :endDate")
     Long getTotalClicksBetweenDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-
-    // Publisher-based analytics
-    @Query("SELECT ba.book.publisher.id, ba.book.publisher.name, COALESCE(SUM(ba.dailyClicks), 0) " +
-           "FROM BookAnalytics ba " +
-           "WHERE ba.analyticsDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY ba.book.publisher.id, ba.book.publisher.name " +
-           "ORDER BY SUM(ba.dailyClicks) DESC")
-    List<Object[]> getClicksByPublisher(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-
-    @Query("SELECT ba.book.publisher.id, ba.book.publisher.name, COALESCE(SUM(ba.dailyReadingMinutes), 0) " +
-           "FROM BookAnalytics ba " +
-           "WHERE ba.analyticsDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY ba.book.publisher.id, ba.book.publisher.name " +
-           "ORDER BY SUM(ba.dailyReadingMinutes) DESC")
-    List<Object[]> getReadingMinutesByPublisher(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-
-    @Query("SELECT ba.book.publisher.id, ba.book.publisher.name, COUNT(DISTINCT ba.book.id) " +
-           "FROM BookAnalytics ba " +
-           "WHERE ba.analyticsDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY ba.book.publisher.id, ba.book.publisher.name " +
-           "ORDER BY COUNT(DISTINCT ba.book.id) DESC")
-    List<Object[]> getActiveBooksCountByPublisher(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-
-    // Last 30 days analytics
-    @Query("SELECT ba FROM BookAnalytics ba WHERE ba.analyticsDate >= :startDate ORDER BY ba.analyticsDate DESC")
-    List<BookAnalytics> findLast30Days(@Param("startDate") LocalDate startDate);
-
-    @Query("SELECT ba.book.id, ba.book.title, ba.book.author, COALESCE(SUM(ba.dailyClicks), 0) " +
-           "FROM BookAnalytics ba " +
-           "WHERE ba.analyticsDate >= :startDate " +
-           "GROUP BY ba.book.id, ba.book.title, ba.book.author " +
-           "ORDER BY SUM(ba.dailyClicks) DESC")
-    List<Object[]> getMostClickedBooksLast30Days(@Param("startDate") LocalDate startDate);
-}
\ No newline at end of file
+}
@@ -43,10 +43,6 @@ public interface ReadingSessionRepository extends JpaRepository<ReadingSession,
     @Query("SELECT rs FROM ReadingSession rs WHERE rs.sessionActive = true AND rs.sessionStart < :timeout")
     List<ReadingSession> findStaleActiveSessions(@Param("timeout") LocalDateTime timeout);
 
-    @Query("SELECT rs.user.id, COALESCE(SUM(rs.durationMinutes), 0) FROM ReadingSession rs " +
-            "WHERE rs.sessionStart >= :startDate GROUP BY rs.user.id ORDER BY SUM(rs.durationMinutes) DESC")
-    List<Object[]> getTopReadersByTime(@Param("startDate") LocalDateTime startDate);
-
     @Query("SELECT COALESCE(AVG(rs.durationMinutes), 0) FROM ReadingSession rs WHERE rs.book = :book AND rs.sessionEnd IS NOT NULL")
     Double getAverageReadingTimeByBook(@Param("book") Book book);
 
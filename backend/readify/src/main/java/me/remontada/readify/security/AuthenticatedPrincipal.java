@@ -0,0 +1,46 @@
+package me.remontada.readify.security;
+
+import me.remontada.readify.model.Permission;
+import me.remontada.readify.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The part of a {@link User} needed to authenticate a request: who it is, which session is
+ * current and what it may do. Immutable, so one instance can serve many requests.
+ */
+public record AuthenticatedPrincipal(Long userId,
+                                     String email,
+                                     String currentSessionToken,
+                                     Set<Permission> permissions,
+                                     Set<GrantedAuthority> authorities,
+                                     boolean active,
+                                     boolean emailVerified) {
+
+    public static AuthenticatedPrincipal of(User user) {
+        Set<Permission> permissions = user.getPermissions() == null || user.getPermissions().isEmpty()
+                ? Set.of()
+                : Set.copyOf(user.getPermissions());
+
+        Set<GrantedAuthority> authorities = permissions.stream()
+                .map(permission -> new SimpleGrantedAuthority(permission.name()))
+                .collect(Collectors.toUnmodifiableSet());
+
+        return new AuthenticatedPrincipal(
+                user.getId(),
+                user.getEmail(),
+                user.getCurrentSessionToken(),
+                permissions,
+                authorities,
+                Boolean.TRUE.equals(user.getActive()),
+                Boolean.TRUE.equals(user.getEmailVerified())
+        );
+    }
+
+    public boolean isCurrentSession(String sessionId) {
+        return sessionId != null && sessionId.equals(currentSessionToken);
+    }
+}
@@ -26,11 +26,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final PrincipalCache principalCache;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserService userService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserService userService, PrincipalCache principalCache) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -49,42 +51,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             logger.debug("Extracted token for request to {}: {}", request.getRequestURI(),
                 token.substring(0, Math.min(token.length(), 20)) + "...");
 
-            String email = jwtUtil.extractEmail(token);
+            // Signature and expiration are verified once; repeated requests with the same token hit the cache
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+            String email = verified.email();
             logger.debug("Extracted email from token: {}", email);
 
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                Optional<User> optionalUser = userService.findByEmail(email);
-
-                if (optionalUser.isPresent()) {
-                    User user = optionalUser.get();
-                    boolean isValid = jwtUtil.validateToken(token, email);
-                    logger.debug("Token validation result for {}: {}", email, isValid);
-
-                    if (isValid) {
-                        // Validate session - check if this token's session ID matches the user's current session
-                        String tokenSessionId = jwtUtil.extractSessionId(token);
-                        String currentSessionId = user.getCurrentSessionToken();
-
-                        if (tokenSessionId == null || !tokenSessionId.equals(currentSessionId)) {
-                            logger.warn("Session invalidated for user: {}. Token session: {}, Current session: {}",
-                                email, tokenSessionId, currentSessionId);
-                            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                            response.setContentType("application/json");
-                            response.getWriter().write("{\"success\":false,\"message\":\"Session expired. You have been logged in from another device.\"}");
-                            return;
-                        }
-
-                        MyUserDetails userDetails = new MyUserDetails(user);
-
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                        logger.debug("Authentication set for user: {}", email);
-                    } else {
-                        logger.warn("Token validation failed for user: {}", email);
+                String tokenSessionId = verified.sessionId();
+                MyUserDetails userDetails = resolveUserDetails(email, verified.userId(), tokenSessionId);
+
+                if (userDetails != null) {
+                    AuthenticatedPrincipal principal = userDetails.getPrincipal();
+
+                    // Validate session - check if this token's session ID matches the user's current session
+                    if (!principal.isCurrentSession(tokenSessionId)) {
+                        logger.warn("Session invalidated for user: {}. Token session: {}, Current session: {}",
+                            email, tokenSessionId, principal.currentSessionToken());
+                        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                        response.setContentType("application/json");
+                        response.getWriter().write("{\"success\":false,\"message\":\"Session expired. You have been logged in from another device.\"}");
+                        return;
                     }
+
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                    logger.debug("Authentication set for user: {}", email);
                 } else {
                     logger.warn("User not found for email: {}", email);
                 }
@@ -98,6 +92,30 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * User details from the principal cache, or from the database on a miss. A cached principal
+     * loads the full user entity only if a controller asks for it. Tokens issued without a user
+     * id always go to the database.
+     */
+    private MyUserDetails resolveUserDetails(String email, Long userId, String tokenSessionId) {
+        // A session unknown to the cache may come from a login handled by another node, so reload before rejecting
+        Optional<AuthenticatedPrincipal> cached = principalCache.find(userId, tokenSessionId);
+        if (cached.isPresent() && email.equals(cached.get().email())) {
+            AuthenticatedPrincipal principal = cached.get();
+            return new MyUserDetails(principal, () -> userService.findById(principal.userId())
+                    .orElseThrow(() -> new IllegalStateException("User not found: " + principal.email())));
+        }
+
+        Optional<User> optionalUser = userService.findByEmail(email);
+        if (optionalUser.isEmpty()) {
+            return null;
+        }
+
+        MyUserDetails userDetails = new MyUserDetails(optionalUser.get());
+        principalCache.put(userDetails.getPrincipal());
+        return userDetails;
+    }
+
     private String extractToken(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
         String token = extractFromHeader(authHeader);
@@ -1,44 +1,46 @@
 package me.remontada.readify.security;
 
-import me.remontada.readify.model.Permission;
 import me.remontada.readify.model.User;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.security.Principal;
 import java.util.Collection;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 public class MyUserDetails implements UserDetails, Principal {
 
-    private final User user;
+    private final AuthenticatedPrincipal principal;
+    private final Supplier<User> userLoader;
+    private volatile User user;
 
     public MyUserDetails(User user) {
+        this.principal = AuthenticatedPrincipal.of(user);
+        this.userLoader = () -> user;
         this.user = user;
     }
 
+    /**
+     * Details built from a cached principal; the user entity is loaded only if a caller asks for it.
+     */
+    public MyUserDetails(AuthenticatedPrincipal principal, Supplier<User> userLoader) {
+        this.principal = principal;
+        this.userLoader = userLoader;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        Set<Permission> permissions = user.getPermissions();
-        if (permissions == null) {
-            return Set.of();
-        }
-
-        return permissions.stream()
-                .map(permission -> new SimpleGrantedAuthority(permission.name()))
-                .collect(Collectors.toSet());
+        return principal.authorities();
     }
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return getUser().getPassword();
     }
 
     @Override
     public String getUsername() {
-        return user.getEmail();
+        return principal.email();
     }
 
     @Override
@@ -48,12 +50,12 @@ public class MyUserDetails implements UserDetails, Principal {
 
     @Override
     public boolean isAccountNonExpired() {
-        return user.getActive();
+        return principal.active();
     }
 
     @Override
     public boolean isAccountNonLocked() {
-        return user.getActive();
+        return principal.active();
     }
 
     @Override
@@ -63,10 +65,19 @@ public class MyUserDetails implements UserDetails, Principal {
 
     @Override
     public boolean isEnabled() {
-        return user.getActive() && user.getEmailVerified();
+        return principal.active() && principal.emailVerified();
+    }
+
+    public AuthenticatedPrincipal getPrincipal() {
+        return principal;
     }
 
     public User getUser() {
-        return user;
+        User loaded = user;
+        if (loaded == null) {
+            loaded = userLoader.get();
+            user = loaded;
+        }
+        return loaded;
     }
-}
\ No newline at end of file
+}
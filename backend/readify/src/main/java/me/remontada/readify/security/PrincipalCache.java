@@ -0,0 +1,117 @@
+package me.remontada.readify.security;
+
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.model.User;
+import me.remontada.readify.util.KeyEvictor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Authenticated principals by user id and session id (both carried by the access token), so
+ * authenticated requests do not load the user and its permissions from the database every time.
+ *
+ * <p>An entry is stored under the user's current session only, so a token of any other session
+ * misses and is checked against the database. Entries are reloaded after {@code ttl-seconds} and
+ * dropped explicitly when the session, active flag or permissions change. The cache is per node:
+ * a logout, deactivation or revocation handled on another node is picked up once the entry
+ * expires, which is why the TTL is kept to a few seconds.</p>
+ */
+@Slf4j
+@Component
+public class PrincipalCache {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+
+    private final ConcurrentMap<PrincipalKey, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    private final KeyEvictor<PrincipalKey, CachedPrincipal> evictor;
+
+    @Autowired
+    public PrincipalCache(@Value("${readify.security.principal-cache.enabled:true}") boolean enabled,
+                          @Value("${readify.security.principal-cache.max-entries:10000}") int maxEntries,
+                          @Value("${readify.security.principal-cache.ttl-seconds:5}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.ttlNanos = Duration.ofSeconds(Math.max(1, ttlSeconds)).toNanos();
+        this.evictor = new KeyEvictor<>(principals, maxEntries);
+    }
+
+    /**
+     * Principal of the user, if {@code sessionId} was its current session when it was loaded.
+     */
+    public Optional<AuthenticatedPrincipal> find(Long userId, String sessionId) {
+        if (!enabled || userId == null || sessionId == null) {
+            return Optional.empty();
+        }
+
+        PrincipalKey key = new PrincipalKey(userId, sessionId);
+        CachedPrincipal cached = principals.get(key);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        if (System.nanoTime() - cached.loadedAt() >= ttlNanos) {
+            principals.remove(key, cached);
+            return Optional.empty();
+        }
+        return Optional.of(cached.principal());
+    }
+
+    /**
+     * Cache the principal under its current session; a user without a session is not cached.
+     */
+    public void put(AuthenticatedPrincipal principal) {
+        if (!enabled || principal.userId() == null || principal.currentSessionToken() == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        principals.put(new PrincipalKey(principal.userId(), principal.currentSessionToken()),
+                new CachedPrincipal(principal, now));
+        // Over the cap, the oldest loads go first, expired ones included
+        evictor.onInsert(cached -> now - cached.loadedAt());
+    }
+
+    /**
+     * Drop every cached principal of the user, e.g. after login or logout changed its session.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+
+        // A request that reloads the user before the commit still sees the old row and would cache it again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop the cached principal of the user after its active flag or permissions changed.
+     */
+    public void invalidate(User user) {
+        invalidate(user.getId());
+    }
+
+    private void evict(Long userId) {
+        principals.keySet().removeIf(key -> userId.equals(key.userId()));
+        log.debug("Invalidated cached principals of user {}", userId);
+    }
+
+    private record PrincipalKey(Long userId, String sessionId) {
+    }
+
+    private record CachedPrincipal(AuthenticatedPrincipal principal, long loadedAt) {
+    }
+}
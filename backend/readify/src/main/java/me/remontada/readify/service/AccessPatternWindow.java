@@ -0,0 +1,234 @@
+package me.remontada.readify.service;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window view of how one user reads one book.
+ *
+ * <p>The window is a ring of {@link #SLOTS} time slots. Each slot counts requests, bytes and
+ * requests that continued where the previous one ended. A slot is reset when the ring comes
+ * round to it, so every signal describes the last window only and recovers once the behaviour
+ * stops. Which parts of the book were served is kept in a {@link CoverageBitmap} over the longer
+ * coverage window.</p>
+ *
+ * <p>Each signal is divided by its limit, so 1.0 means "at the limit":</p>
+ * <ul>
+ *   <li>requests per minute, and requests within the window</li>
+ *   <li>bytes per minute</li>
+ *   <li>share of the book's blocks served within the coverage window; books smaller than
+ *       {@link Limits#minCoverageBytes()} are not tracked, since PDF.js loads those whole</li>
+ * </ul>
+ *
+ * <p>The strongest signal is weighted by the sequential ratio, from 0.8 for pure page jumping
+ * to 1.2 for a straight sweep. Rates are taken over at least half a window, so the first few
+ * requests of a fresh open do not read as a burst.</p>
+ */
+public final class AccessPatternWindow {
+
+    public static final int SLOTS = 12;
+
+    private final long windowMillis;
+    private final long slotMillis;
+    private final long firstSeen;
+
+    private final long[] slotIds = new long[SLOTS];
+    private final int[] requests = new int[SLOTS];
+    private final int[] sequential = new int[SLOTS];
+    private final long[] bytes = new long[SLOTS];
+    // Created on the first request of a book large enough to be scored
+    private CoverageBitmap coverage;
+
+    private long lastRangeEnd = -1;
+    private Verdict lastReported = Verdict.CLEAN;
+    private long lastReportedSlot = -1;
+    private volatile long lastActivity;
+
+    /**
+     * @param now milliseconds on the caller's monotonic clock; all later calls must use the same clock
+     */
+    public AccessPatternWindow(long windowMillis, long now) {
+        this.slotMillis = Math.max(1, windowMillis / SLOTS);
+        this.windowMillis = slotMillis * SLOTS;
+        this.firstSeen = now;
+        this.lastActivity = now;
+        Arrays.fill(slotIds, Long.MIN_VALUE);
+    }
+
+    /**
+     * Record a served range and score the window.
+     *
+     * @param contentLength size of the book in bytes, or 0 when unknown (no coverage is kept)
+     * @return {@link Assessment#CLEAN} below the warning score
+     */
+    public Assessment record(long now, long rangeStart, long rangeEnd, long contentLength, Limits limits) {
+        return record(now, new long[]{rangeStart, rangeEnd}, contentLength, limits);
+    }
+
+    /**
+     * Record one request that served several ranges, e.g. a multipart/byteranges response, and
+     * score the window. It counts as one request; bytes and coverage are those of the ranges
+     * themselves, not of the span between them.
+     *
+     * @param ranges inclusive start and end offsets, in pairs, in the order they were served
+     * @param contentLength size of the book in bytes, or 0 when unknown (no coverage is kept)
+     * @return {@link Assessment#CLEAN} below the warning score
+     */
+    public synchronized Assessment record(long now, long[] ranges, long contentLength, Limits limits) {
+        if (ranges.length == 0 || ranges.length % 2 != 0) {
+            throw new IllegalArgumentException("Ranges must be start/end pairs");
+        }
+        lastActivity = now;
+        long slot = now / slotMillis;
+        int pos = (int) Math.floorMod(slot, (long) SLOTS);
+        if (slotIds[pos] != slot) {
+            slotIds[pos] = slot;
+            requests[pos] = 0;
+            sequential[pos] = 0;
+            bytes[pos] = 0;
+        }
+
+        requests[pos]++;
+        for (int i = 0; i < ranges.length; i += 2) {
+            bytes[pos] += Math.max(0, ranges[i + 1] - ranges[i] + 1);
+        }
+        if (lastRangeEnd >= 0 && ranges[0] == lastRangeEnd + 1) {
+            sequential[pos]++;
+        }
+        lastRangeEnd = ranges[ranges.length - 1];
+
+        double servedShare = 0.0;
+        if (contentLength >= limits.minCoverageBytes() && contentLength > 0) {
+            if (coverage == null || coverage.getContentLength() != contentLength) {
+                // Half-window generations: the bitmap remembers between half and one coverage window
+                coverage = new CoverageBitmap(contentLength, limits.coverageBlockSize(),
+                        limits.coverageWindowMillis() / 2, now);
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                coverage.mark(now, ranges[i], ranges[i + 1]);
+            }
+            servedShare = coverage.coverage(now);
+        }
+
+        // Sum the slots still inside the window
+        int windowRequests = 0;
+        int windowSequential = 0;
+        long windowBytes = 0;
+        long oldestSlot = slot - SLOTS + 1;
+        for (int s = 0; s < SLOTS; s++) {
+            if (slotIds[s] >= oldestSlot) {
+                windowRequests += requests[s];
+                windowSequential += sequential[s];
+                windowBytes += bytes[s];
+            }
+        }
+
+        double span = Math.max(windowMillis / 2.0, Math.min(windowMillis, now - firstSeen));
+        double requestsPerMinute = windowRequests * 60_000.0 / span;
+        double bytesPerMinute = windowBytes * 60_000.0 / span;
+        double sequentialRatio = windowRequests > 1
+                ? Math.min(1.0, (double) windowSequential / (windowRequests - 1))
+                : 0.5;
+
+        Signal signal = Signal.RATE;
+        double strongest = Math.max(requestsPerMinute / limits.requestsPerMinute(),
+                (double) windowRequests / limits.requestsPerWindow());
+        double byteScore = bytesPerMinute / limits.bytesPerMinute();
+        if (byteScore > strongest) {
+            signal = Signal.BYTES;
+            strongest = byteScore;
+        }
+        double coverageScore = servedShare / limits.coverage();
+        if (coverageScore > strongest) {
+            signal = Signal.COVERAGE;
+            strongest = coverageScore;
+        }
+
+        double score = strongest * (0.8 + 0.4 * sequentialRatio);
+        Verdict verdict = score >= 1.0 ? Verdict.BLOCK : score >= limits.warnScore() ? Verdict.WARN : Verdict.CLEAN;
+        if (verdict == Verdict.CLEAN) {
+            lastReported = Verdict.CLEAN;
+            return Assessment.CLEAN;
+        }
+
+        // Report once per slot while it lasts, and again straight away if it escalates
+        boolean report = verdict.compareTo(lastReported) > 0 || slot != lastReportedSlot;
+        if (report) {
+            lastReported = verdict;
+            lastReportedSlot = slot;
+        }
+
+        String reason = switch (signal) {
+            case RATE -> String.format("High request rate: %.0f req/min, %d requests in %d s",
+                    requestsPerMinute, windowRequests, windowMillis / 1000);
+            case BYTES -> String.format("High transfer rate: %.1f MB/min", bytesPerMinute / (1024 * 1024));
+            case COVERAGE -> String.format("Served %.0f%% of the book in %d s",
+                    servedShare * 100, limits.coverageWindowMillis() / 1000);
+        };
+        return new Assessment(verdict, score, signal, sequentialRatio, reason, report);
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Current coverage of the book, or null when the book is not tracked (too small or not yet read).
+     */
+    public synchronized Coverage coverage(long now) {
+        if (coverage == null) {
+            return null;
+        }
+        return new Coverage(coverage.getContentLength(), coverage.getBlockSize(), coverage.getBlocks(),
+                coverage.servedBlocks(now), lastActivity);
+    }
+
+    public enum Verdict { CLEAN, WARN, BLOCK }
+
+    public enum Signal { RATE, BYTES, COVERAGE }
+
+    /**
+     * Detector thresholds; create once and share between windows.
+     */
+    public record Limits(double requestsPerMinute, int requestsPerWindow, long bytesPerMinute,
+                         double coverage, long minCoverageBytes, long coverageBlockSize,
+                         long coverageWindowMillis, double warnScore) {
+
+        public Limits {
+            requestsPerMinute = Math.max(1.0, requestsPerMinute);
+            requestsPerWindow = Math.max(1, requestsPerWindow);
+            bytesPerMinute = Math.max(1, bytesPerMinute);
+            coverage = Math.min(1.0, Math.max(0.01, coverage));
+            coverageBlockSize = Math.max(4096, coverageBlockSize);
+            coverageWindowMillis = Math.max(2000, coverageWindowMillis);
+            warnScore = Math.min(1.0, Math.max(0.1, warnScore));
+        }
+    }
+
+    /**
+     * Blocks of the book served within the coverage window.
+     */
+    public record Coverage(long contentLength, long blockSize, int blocks, int servedBlocks, long lastActivity) {
+
+        public double fraction() {
+            return (double) servedBlocks / blocks;
+        }
+    }
+
+    /**
+     * Outcome of one {@link #record}. {@code report} is set on the first request of a slot that is
+     * still suspicious, so metrics and audit see one event per slot rather than one per request.
+     */
+    public record Assessment(Verdict verdict, double score, Signal signal, double sequentialRatio,
+                             String reason, boolean report) {
+
+        public static final Assessment CLEAN = new Assessment(Verdict.CLEAN, 0.0, null, 0.0, null, false);
+
+        public boolean isSuspicious() {
+            return verdict != Verdict.CLEAN;
+        }
+
+        public boolean shouldBlock() {
+            return verdict == Verdict.BLOCK;
+        }
+    }
+}
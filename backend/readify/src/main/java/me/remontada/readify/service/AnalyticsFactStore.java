@@ -0,0 +1,404 @@
+package me.remontada.readify.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Monthly-partitioned fact tables behind the admin range reports.
+ *
+ * <p>{@code analytics_book_day} holds one row per book and day with the book's publisher and
+ * category copied in, so publisher reports need no join through {@code books}.
+ * {@code analytics_reader_day} holds one row per reader and day. Both are range partitioned by
+ * month: a report touches only the partitions of its range, and dropping an expired month is a
+ * {@code DROP TABLE}.</p>
+ *
+ * <p>Facts are written by {@link BookAnalyticsRollup} for closed days. {@code complete_through}
+ * records the last day up to which they are complete and {@code retained_from} the first day still
+ * kept. Reports read facts inside that span and the live tables outside it, so they are exact
+ * whether or not the nightly rollup has run yet.</p>
+ *
+ * <p>The tables are created by {@link SchemaMigrationRunner}. History before the first rollup is
+ * backfilled in the background one month at a time, under the same advisory lock as the rollup, so
+ * startup does no data work and no transaction spans more than a month.</p>
+ */
+@Slf4j
+@Component
+public class AnalyticsFactStore {
+
+    private static final String BOOK_FACTS = "analytics_book_day";
+    private static final String READER_FACTS = "analytics_reader_day";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(hashtext('analytics_fact_store'))";
+
+    private static final String CREATE_PARTITION =
+            "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')";
+
+    private static final String LIST_PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ?""";
+
+    private static final String FIRST_DAY = """
+            SELECT LEAST((SELECT MIN(analytics_date) FROM book_analytics),
+                         (SELECT MIN(session_start)::date FROM reading_sessions))""";
+
+    private static final String DELETE_BOOK_FACTS = "DELETE FROM analytics_book_day WHERE day BETWEEN ? AND ?";
+
+    private static final String INSERT_BOOK_FACTS = """
+            INSERT INTO analytics_book_day (day, book_id, publisher_id, category_id, clicks, reading_minutes,
+                                            sessions, unique_readers)
+            SELECT ba.analytics_date, ba.book_id, b.publisher_id, b.category_id, ba.daily_clicks,
+                   ba.daily_reading_minutes, ba.daily_sessions, ba.daily_unique_readers
+            FROM book_analytics ba
+            JOIN books b ON b.id = ba.book_id
+            WHERE ba.analytics_date BETWEEN ? AND ?""";
+
+    private static final String DELETE_READER_FACTS = "DELETE FROM analytics_reader_day WHERE day BETWEEN ? AND ?";
+
+    private static final String INSERT_READER_FACTS = """
+            INSERT INTO analytics_reader_day (day, user_id, reading_minutes, sessions)
+            SELECT rs.session_start::date, rs.user_id, COALESCE(SUM(rs.duration_minutes), 0), COUNT(*)
+            FROM reading_sessions rs
+            WHERE rs.session_start >= ?::date AND rs.session_start < ?::date + 1
+            GROUP BY rs.session_start::date, rs.user_id""";
+
+    private static final String SELECT_STATE =
+            "SELECT complete_through, retained_from FROM analytics_fact_state WHERE id = 1";
+
+    private static final String INSERT_STATE =
+            "INSERT INTO analytics_fact_state (id, complete_through, retained_from) VALUES (1, ?, ?)";
+
+    // Only extends the span when the refreshed days touch it, so a gap is never papered over
+    private static final String EXTEND_COMPLETE_THROUGH = """
+            UPDATE analytics_fact_state SET complete_through = ?
+            WHERE id = 1 AND complete_through >= ?::date - 1 AND complete_through < ?""";
+
+    private static final String RAISE_RETAINED_FROM =
+            "UPDATE analytics_fact_state SET retained_from = GREATEST(retained_from, ?) WHERE id = 1";
+
+    /*
+     * Day rows of the report range. Facts cover [?, ?]; the live tables cover the days before the
+     * retained span and after the complete one.
+     */
+    private static final String BOOK_DAYS = """
+            WITH book_days AS (
+                SELECT f.book_id, f.publisher_id, f.clicks, f.reading_minutes
+                FROM analytics_book_day f
+                WHERE f.day BETWEEN ? AND ?
+                UNION ALL
+                SELECT ba.book_id, b.publisher_id, ba.daily_clicks, ba.daily_reading_minutes
+                FROM book_analytics ba
+                JOIN books b ON b.id = ba.book_id
+                WHERE ba.analytics_date BETWEEN ? AND ? OR ba.analytics_date BETWEEN ? AND ?
+            )
+            """;
+
+    private static final String PUBLISHER_TOTALS = BOOK_DAYS + """
+            SELECT p.id, p.name, %s::bigint AS total
+            FROM book_days d
+            JOIN publishers p ON p.id = d.publisher_id
+            GROUP BY p.id, p.name
+            ORDER BY total DESC""";
+
+    private static final String PUBLISHER_SUMMARY = BOOK_DAYS + """
+            SELECT COALESCE(SUM(d.clicks), 0)::bigint, COALESCE(SUM(d.reading_minutes), 0)::bigint,
+                   COUNT(DISTINCT d.book_id)
+            FROM book_days d
+            WHERE d.publisher_id = ?""";
+
+    private static final String MOST_CLICKED_BOOKS = BOOK_DAYS + """
+            SELECT b.id, b.title, b.author, t.clicks
+            FROM (SELECT d.book_id, SUM(d.clicks)::bigint AS clicks FROM book_days d GROUP BY d.book_id) t
+            JOIN books b ON b.id = t.book_id
+            ORDER BY t.clicks DESC""";
+
+    private static final String TOP_READERS = """
+            WITH reader_days AS (
+                SELECT f.user_id, f.reading_minutes
+                FROM analytics_reader_day f
+                WHERE f.day BETWEEN ? AND ?
+                UNION ALL
+                SELECT rs.user_id, COALESCE(rs.duration_minutes, 0)
+                FROM reading_sessions rs
+                WHERE (rs.session_start >= ?::date AND rs.session_start < ?::date + 1)
+                   OR (rs.session_start >= ?::date AND rs.session_start < ?::date + 1)
+            )
+            SELECT d.user_id, SUM(d.reading_minutes)::bigint AS total
+            FROM reader_days d
+            GROUP BY d.user_id
+            ORDER BY total DESC""";
+
+    private static final RowMapper<Object[]> PUBLISHER_ROW = (rs, rowNum) ->
+            new Object[]{rs.getLong(1), rs.getString(2), rs.getLong(3)};
+    private static final RowMapper<Object[]> BOOK_ROW = (rs, rowNum) ->
+            new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4)};
+    private static final RowMapper<Object[]> READER_ROW = (rs, rowNum) ->
+            new Object[]{rs.getLong(1), rs.getLong(2)};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionMonths;
+    private final int partitionsAhead;
+    private volatile boolean backfilled;
+
+    /**
+     * @param migrations creates the fact tables; injected so it runs first
+     */
+    @Autowired
+    public AnalyticsFactStore(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              SchemaMigrationRunner migrations,
+                              @Value("${app.analytics.facts.retention-months:0}") int retentionMonths,
+                              @Value("${app.analytics.facts.partitions-ahead:2}") int partitionsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionMonths = Math.max(0, retentionMonths);
+        this.partitionsAhead = Math.max(1, partitionsAhead);
+    }
+
+    /**
+     * Backfill history one month per run, oldest first, until the facts reach yesterday. Each
+     * month is written in its own transaction through {@link #refresh}, which extends
+     * {@code complete_through} only while the months stay contiguous; until then reports read the
+     * days not yet backfilled from the live tables.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.facts.backfill-interval-ms:10000}",
+               initialDelayString = "${app.analytics.facts.backfill-interval-ms:10000}")
+    public void backfillNextMonth() {
+        if (backfilled) {
+            return;
+        }
+
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK);
+            FactState state = state();
+            if (state == null) {
+                state = startBackfill(yesterday);
+            }
+            if (!state.completeThrough().isBefore(yesterday)) {
+                return null;
+            }
+
+            LocalDate from = state.completeThrough().plusDays(1);
+            LocalDate to = min(YearMonth.from(from).atEndOfMonth(), yesterday);
+            int written = refresh(from, to);
+            log.info("Backfilled {} analytics fact rows for {} - {}", written, from, to);
+            return written;
+        });
+
+        if (rows == null) {
+            backfilled = true;
+            log.info("Analytics facts are backfilled through {}", yesterday);
+        }
+    }
+
+    /**
+     * @return false while history is still being backfilled
+     */
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    private FactState startBackfill(LocalDate yesterday) {
+        LocalDate today = yesterday.plusDays(1);
+        Date firstDay = jdbcTemplate.queryForObject(FIRST_DAY, Date.class);
+        LocalDate first = firstDay != null && firstDay.toLocalDate().isBefore(today) ? firstDay.toLocalDate() : today;
+        if (retentionMonths > 0) {
+            first = max(first, YearMonth.now().minusMonths(retentionMonths).atDay(1));
+        }
+
+        // Nothing is complete yet; the facts start at the first month with data
+        FactState state = new FactState(first.minusDays(1), first.withDayOfMonth(1));
+        jdbcTemplate.update(INSERT_STATE, Date.valueOf(state.completeThrough()), Date.valueOf(state.retainedFrom()));
+        log.info("Starting analytics fact backfill for {} - {}", first, yesterday);
+        return state;
+    }
+
+    /**
+     * Rewrite the facts of {@code from..to} from {@code book_analytics} and {@code reading_sessions}.
+     * Must run inside the caller's transaction, after {@code book_analytics} was rolled up.
+     *
+     * @return number of fact rows written
+     */
+    public int refresh(LocalDate from, LocalDate to) {
+        jdbcTemplate.execute(LOCK);
+        createPartitions(YearMonth.from(from), YearMonth.from(to));
+        int rows = writeFacts(from, to);
+        jdbcTemplate.update(EXTEND_COMPLETE_THROUGH, Date.valueOf(to), Date.valueOf(from), Date.valueOf(to));
+        return rows;
+    }
+
+    /**
+     * Last day the facts are complete for; days after it are read from the live tables.
+     */
+    public LocalDate getCompleteThrough() {
+        FactState state = state();
+        return state != null ? state.completeThrough() : LocalDate.now().minusDays(1);
+    }
+
+    /**
+     * Create partitions ahead of time and drop those older than the retention.
+     */
+    @Scheduled(cron = "${app.analytics.facts.maintenance-cron:0 15 1 * * ?}")
+    public void maintainPartitions() {
+        YearMonth current = YearMonth.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK);
+            createPartitions(current, current.plusMonths(partitionsAhead));
+
+            if (retentionMonths == 0) {
+                return;
+            }
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            // Reports switch to the live tables for these months before their facts go
+            jdbcTemplate.update(RAISE_RETAINED_FROM, Date.valueOf(oldestKept.atDay(1)));
+            int dropped = dropPartitionsBefore(BOOK_FACTS, oldestKept) + dropPartitionsBefore(READER_FACTS, oldestKept);
+            if (dropped > 0) {
+                log.info("Dropped {} analytics fact partitions before {}", dropped, oldestKept);
+            }
+        });
+    }
+
+    public List<Object[]> getClicksByPublisher(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(String.format(PUBLISHER_TOTALS, "COALESCE(SUM(d.clicks), 0)"),
+                PUBLISHER_ROW, plan(startDate, endDate).arguments());
+    }
+
+    public List<Object[]> getReadingMinutesByPublisher(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(String.format(PUBLISHER_TOTALS, "COALESCE(SUM(d.reading_minutes), 0)"),
+                PUBLISHER_ROW, plan(startDate, endDate).arguments());
+    }
+
+    public List<Object[]> getActiveBooksCountByPublisher(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(String.format(PUBLISHER_TOTALS, "COUNT(DISTINCT d.book_id)"),
+                PUBLISHER_ROW, plan(startDate, endDate).arguments());
+    }
+
+    /**
+     * @return total clicks, total reading minutes and number of distinct books of the publisher
+     */
+    public long[] getPublisherSummary(Long publisherId, LocalDate startDate, LocalDate endDate) {
+        Object[] arguments = plan(startDate, endDate).arguments(publisherId);
+        return jdbcTemplate.queryForObject(PUBLISHER_SUMMARY, (rs, rowNum) ->
+                new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, arguments);
+    }
+
+    public List<Object[]> getMostClickedBooks(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(MOST_CLICKED_BOOKS, BOOK_ROW, plan(startDate, endDate).arguments());
+    }
+
+    public List<Object[]> getTopReaders(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(TOP_READERS, READER_ROW, plan(startDate, endDate).arguments());
+    }
+
+    private int writeFacts(LocalDate from, LocalDate to) {
+        Date start = Date.valueOf(from);
+        Date end = Date.valueOf(to);
+        jdbcTemplate.update(DELETE_BOOK_FACTS, start, end);
+        jdbcTemplate.update(DELETE_READER_FACTS, start, end);
+        return jdbcTemplate.update(INSERT_BOOK_FACTS, start, end) + jdbcTemplate.update(INSERT_READER_FACTS, start, end);
+    }
+
+    private void createPartitions(YearMonth from, YearMonth to) {
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            for (String parent : new String[]{BOOK_FACTS, READER_FACTS}) {
+                jdbcTemplate.execute(String.format(CREATE_PARTITION, partitionName(parent, month), parent,
+                        month.atDay(1), month.plusMonths(1).atDay(1)));
+            }
+        }
+    }
+
+    private int dropPartitionsBefore(String parent, YearMonth oldestKept) {
+        int dropped = 0;
+        String prefix = parent + "_p";
+        for (String partition : jdbcTemplate.queryForList(LIST_PARTITIONS, String.class, parent)) {
+            if (!partition.startsWith(prefix)) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+            if (month.isBefore(oldestKept)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private static String partitionName(String parent, YearMonth month) {
+        return parent + "_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private FactState state() {
+        List<FactState> rows = jdbcTemplate.query(SELECT_STATE, (rs, rowNum) ->
+                new FactState(rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate()));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private RangePlan plan(LocalDate startDate, LocalDate endDate) {
+        return plan(startDate, endDate, state());
+    }
+
+    /**
+     * Split a report range into the part answered by facts and the parts read live.
+     *
+     * @param state null before the backfill has started
+     */
+    static RangePlan plan(LocalDate startDate, LocalDate endDate, FactState state) {
+        if (state == null) {
+            // Not backfilled yet: everything is live, the fact range is empty
+            return new RangePlan(endDate.plusDays(1), endDate, startDate, endDate, endDate.plusDays(1), endDate);
+        }
+
+        LocalDate oldTo = min(endDate, state.retainedFrom().minusDays(1));
+        LocalDate factFrom = max(startDate, state.retainedFrom());
+        LocalDate factTo = min(endDate, state.completeThrough());
+        LocalDate liveFrom = max(max(startDate, state.completeThrough().plusDays(1)), oldTo.plusDays(1));
+        return new RangePlan(factFrom, factTo, startDate, oldTo, liveFrom, endDate);
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    record FactState(LocalDate completeThrough, LocalDate retainedFrom) {
+    }
+
+    /**
+     * Inclusive day ranges; a range whose start is after its end is empty.
+     */
+    record RangePlan(LocalDate factFrom, LocalDate factTo, LocalDate oldFrom, LocalDate oldTo,
+                             LocalDate liveFrom, LocalDate liveTo) {
+
+        Object[] arguments(Object... trailing) {
+            Object[] arguments = new Object[6 + trailing.length];
+            arguments[0] = Date.valueOf(factFrom);
+            arguments[1] = Date.valueOf(factTo);
+            arguments[2] = Date.valueOf(oldFrom);
+            arguments[3] = Date.valueOf(oldTo);
+            arguments[4] = Date.valueOf(liveFrom);
+            arguments[5] = Date.valueOf(liveTo);
+            System.arraycopy(trailing, 0, arguments, 6, trailing.length);
+            return arguments;
+        }
+    }
+}
@@ -30,12 +30,18 @@ public interface AnalyticsService {
 
     Map<String, Object> getDashboardAnalytics();
 
+    Map<String, Object> getDashboardAnalytics(boolean forceRefresh);
+
     Map<String, Object> getBookAnalytics(Long bookId, LocalDate startDate, LocalDate endDate);
 
     List<Map<String, Object>> getTopReaders(LocalDate startDate, LocalDate endDate);
 
     void processDailyAnalytics();
 
+    int rollupDailyAnalytics(LocalDate startDate, LocalDate endDate);
+
+    boolean startRollup(LocalDate startDate, LocalDate endDate);
+
     void cleanupStaleReadingSessions();
 
     // Publisher analytics
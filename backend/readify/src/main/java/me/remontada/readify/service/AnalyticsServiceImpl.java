@@ -1,21 +1,26 @@
 package me.remontada.readify.service;
 
+import jakarta.annotation.PreDestroy;
 import me.remontada.readify.model.*;
 import me.remontada.readify.repository.BookAnalyticsRepository;
 import me.remontada.readify.repository.BookRepository;
 import me.remontada.readify.repository.ReadingSessionRepository;
-import me.remontada.readify.repository.UserRepository;
-import me.remontada.readify.repository.SubscriptionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @Transactional
@@ -26,20 +31,35 @@ public class AnalyticsServiceImpl implements AnalyticsService {
     private final ReadingSessionRepository readingSessionRepository;
     private final BookAnalyticsRepository bookAnalyticsRepository;
     private final BookRepository bookRepository;
-    private final UserRepository userRepository;
-    private final SubscriptionRepository subscriptionRepository;
+    private final BookAnalyticsAggregator analyticsAggregator;
+    private final BookAnalyticsRollup analyticsRollup;
+    private final DashboardSnapshotService dashboardSnapshotService;
+    private final AnalyticsFactStore analyticsFactStore;
+    private final int rollupLookbackDays;
+    private final ExecutorService rollupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analytics-rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rollupRunning = new AtomicBoolean();
 
     @Autowired
     public AnalyticsServiceImpl(ReadingSessionRepository readingSessionRepository,
                                 BookAnalyticsRepository bookAnalyticsRepository,
                                 BookRepository bookRepository,
-                                UserRepository userRepository,
-                                SubscriptionRepository subscriptionRepository) {
+                                BookAnalyticsAggregator analyticsAggregator,
+                                BookAnalyticsRollup analyticsRollup,
+                                DashboardSnapshotService dashboardSnapshotService,
+                                AnalyticsFactStore analyticsFactStore,
+                                @Value("${app.analytics.rollup.lookback-days:2}") int rollupLookbackDays) {
         this.readingSessionRepository = readingSessionRepository;
         this.bookAnalyticsRepository = bookAnalyticsRepository;
         this.bookRepository = bookRepository;
-        this.userRepository = userRepository;
-        this.subscriptionRepository = subscriptionRepository;
+        this.analyticsAggregator = analyticsAggregator;
+        this.analyticsRollup = analyticsRollup;
+        this.dashboardSnapshotService = dashboardSnapshotService;
+        this.analyticsFactStore = analyticsFactStore;
+        this.rollupLookbackDays = Math.max(1, rollupLookbackDays);
     }
 
     @Override
@@ -60,6 +80,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
                 activeSessions.stream().skip(1).forEach(session -> {
                     session.endSession();
+                    recordReadingMinutes(session);
                     readingSessionRepository.save(session);
                 });
             }
@@ -87,10 +108,11 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
         // Track book click for analytics
         trackBookClick(book);
+        analyticsAggregator.recordSession(book.getId());
 
         // Track unique reader if this is their first session today
         if (isFirstSessionToday) {
-            trackUniqueReader(book);
+            analyticsAggregator.recordUniqueReader(book.getId());
         }
 
         return savedSession;
@@ -107,6 +129,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
         }
 
         session.endSession();
+        recordReadingMinutes(session);
         if (pagesRead != null) {
             session.setPagesRead(pagesRead);
         }
@@ -123,91 +146,23 @@ public class AnalyticsServiceImpl implements AnalyticsService {
         return readingSessionRepository.save(session);
     }
 
+    /**
+     * Counted in memory and written to book_analytics by {@link BookAnalyticsAggregator}, so a click
+     * costs no database access.
+     */
     @Override
     public void trackBookClick(Book book) {
-
-        LocalDate today = LocalDate.now();
-        BookAnalytics analytics;
-
-        try {
-            analytics = bookAnalyticsRepository
-                    .findByBookAndAnalyticsDate(book, today)
-                    .orElse(new BookAnalytics());
-        } catch (org.springframework.dao.IncorrectResultSizeDataAccessException e) {
-            // Handle duplicate records - this should not happen, but if it does, we'll clean it up
-            logger.error("Found duplicate BookAnalytics for book {} on date {}. Cleaning up duplicates.", book.getTitle(), today);
-
-            // Query all duplicates manually and merge them
-            List<BookAnalytics> duplicates = bookAnalyticsRepository.findAll().stream()
-                    .filter(ba -> ba.getBook().getId().equals(book.getId()) && ba.getAnalyticsDate().equals(today))
-                    .toList();
-
-            if (duplicates.isEmpty()) {
-                analytics = new BookAnalytics();
-            } else {
-                // Keep the first one and merge data
-                analytics = duplicates.get(0);
-
-                // Sum up all clicks from duplicates
-                long totalClicks = duplicates.stream().mapToLong(BookAnalytics::getDailyClicks).sum();
-                long totalReaders = duplicates.stream().mapToLong(BookAnalytics::getDailyUniqueReaders).sum();
-                long totalMinutes = duplicates.stream().mapToLong(BookAnalytics::getDailyReadingMinutes).sum();
-                long totalSessions = duplicates.stream().mapToLong(BookAnalytics::getDailySessions).sum();
-
-                analytics.setDailyClicks(totalClicks);
-                analytics.setDailyUniqueReaders(totalReaders);
-                analytics.setDailyReadingMinutes(totalMinutes);
-                analytics.setDailySessions(totalSessions);
-
-                // Delete the duplicates (skip the first one)
-                for (int i = 1; i < duplicates.size(); i++) {
-                    bookAnalyticsRepository.delete(duplicates.get(i));
-                }
-            }
-        }
-
-        if (analytics.getId() == null) {
-            analytics.setBook(book);
-            analytics.setAnalyticsDate(today);
-            logger.info("Creating new BookAnalytics for book {} on date {}", book.getTitle(), today);
-        }
-
-        analytics.incrementClicks();
-        bookAnalyticsRepository.save(analytics);
-        logger.info("Tracked click for book: {} - Total clicks today: {}", book.getTitle(), analytics.getDailyClicks());
+        analyticsAggregator.recordClick(book.getId());
     }
 
     /**
-     * Track unique reader for a book on the current day
+     * Book the minutes of an ended session on the day it started
      */
-    private void trackUniqueReader(Book book) {
-        LocalDate today = LocalDate.now();
-        BookAnalytics analytics;
-
-        try {
-            analytics = bookAnalyticsRepository
-                    .findByBookAndAnalyticsDate(book, today)
-                    .orElse(new BookAnalytics());
-        } catch (org.springframework.dao.IncorrectResultSizeDataAccessException e) {
-            // Handle duplicate records
-            logger.error("Found duplicate BookAnalytics for book {} on date {}. Using first record.", book.getTitle(), today);
-
-            List<BookAnalytics> duplicates = bookAnalyticsRepository.findAll().stream()
-                    .filter(ba -> ba.getBook().getId().equals(book.getId()) && ba.getAnalyticsDate().equals(today))
-                    .toList();
-
-            analytics = duplicates.isEmpty() ? new BookAnalytics() : duplicates.get(0);
-        }
-
-        if (analytics.getId() == null) {
-            analytics.setBook(book);
-            analytics.setAnalyticsDate(today);
+    private void recordReadingMinutes(ReadingSession session) {
+        if (session.getDurationMinutes() != null) {
+            analyticsAggregator.recordReadingMinutes(session.getBook().getId(),
+                    session.getSessionStart().toLocalDate(), session.getDurationMinutes());
         }
-
-        analytics.incrementUniqueReaders();
-        bookAnalyticsRepository.save(analytics);
-        logger.info("Tracked unique reader for book: {} - Total unique readers today: {}",
-                book.getTitle(), analytics.getDailyUniqueReaders());
     }
 
     @Override
@@ -275,82 +230,13 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public Map<String, Object> getDashboardAnalytics() {
-        LocalDate today = LocalDate.now();
-        LocalDate weekAgo = today.minusDays(7);
-        LocalDate monthAgo = today.minusDays(30);
-        LocalDate monthStart = today.withDayOfMonth(1);
-
-        // User statistics
-        long totalUsers = userRepository.countAllUsers();
-        long subscribedUsers = userRepository.countUsersWithActiveSubscription();
-
-        // Subscription statistics
-        long totalActiveSubscriptions = subscriptionRepository.countActiveSubscriptions();
-        List<Object[]> subscriptionsByType = subscriptionRepository.getActiveSubscriptionsByType();
-
-        Map<String, Long> subscriptionCounts = new HashMap<>();
-        for (Object[] result : subscriptionsByType) {
-            SubscriptionType type = (SubscriptionType) result[0];
-            Long count = (Long) result[1];
-            subscriptionCounts.put(type.name(), count);
-        }
+        return getDashboardAnalytics(false);
+    }
 
-        // Book statistics
-        long totalBooks = bookRepository.count();
-
-        // Click statistics for this month
-        Long monthClicks = bookAnalyticsRepository.getTotalClicksBetweenDates(monthStart, today);
-
-        // Last 30 days statistics
-        LocalDate thirtyDaysAgo = today.minusDays(30);
-        Long last30DaysClicks = bookAnalyticsRepository.getTotalClicksBetweenDates(thirtyDaysAgo, today);
-
-        // Today's statistics
-        Long todayClicks = bookAnalyticsRepository.getTotalClicksForDate(today);
-        Long todayReadingMinutes = bookAnalyticsRepository.getTotalReadingMinutesForDate(today);
-        Long todayReaders = bookAnalyticsRepository.getTotalUniqueReadersForDate(today);
-
-        List<Map<String, Object>> mostReadThisWeek = getMostReadBooks(weekAgo, today);
-        List<Map<String, Object>> mostPopularThisMonth = getMostPopularBooks(monthAgo, today);
-
-        Map<String, Object> analytics = new HashMap<>();
-
-        analytics.put("users", Map.of(
-                "totalUsers", totalUsers,
-                "subscribedUsers", subscribedUsers,
-                "freeUsers", totalUsers - subscribedUsers
-        ));
-
-        analytics.put("subscriptions", Map.of(
-                "totalActive", totalActiveSubscriptions,
-                "monthly", subscriptionCounts.getOrDefault("MONTHLY", 0L),
-                "sixMonth", subscriptionCounts.getOrDefault("SIX_MONTH", 0L),
-                "yearly", subscriptionCounts.getOrDefault("YEARLY", 0L)
-        ));
-
-        analytics.put("books", Map.of(
-                "totalBooks", totalBooks
-        ));
-
-        analytics.put("engagement", Map.of(
-                "totalClicksThisMonth", monthClicks != null ? monthClicks : 0L,
-                "totalClicksLast30Days", last30DaysClicks != null ? last30DaysClicks : 0L,
-                "todayClicks", todayClicks != null ? todayClicks : 0L
-        ));
-
-        analytics.put("today", Map.of(
-                "totalClicks", todayClicks != null ? todayClicks : 0L,
-                "totalReadingMinutes", todayReadingMinutes != null ? todayReadingMinutes : 0L,
-                "totalReadingHours", todayReadingMinutes != null ? todayReadingMinutes / 60.0 : 0.0,
-                "uniqueReaders", todayReaders != null ? todayReaders : 0L
-        ));
-
-        analytics.put("trends", Map.of(
-                "mostReadThisWeek", mostReadThisWeek.subList(0, Math.min(5, mostReadThisWeek.size())),
-                "mostPopularThisMonth", mostPopularThisMonth.subList(0, Math.min(5, mostPopularThisMonth.size()))
-        ));
-
-        return analytics;
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> getDashboardAnalytics(boolean forceRefresh) {
+        return dashboardSnapshotService.getDashboard(forceRefresh);
     }
 
     @Override
@@ -394,8 +280,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public List<Map<String, Object>> getTopReaders(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        List<Object[]> results = readingSessionRepository.getTopReadersByTime(startDateTime);
+        List<Object[]> results = analyticsFactStore.getTopReaders(startDate, endDate);
 
         return results.stream()
                 .map(result -> Map.of(
@@ -406,42 +291,72 @@ public class AnalyticsServiceImpl implements AnalyticsService {
                 .toList();
     }
 
+    /**
+     * Re-runs the last few days as well, so sessions that ended after the previous night's run are
+     * picked up, and catches up on up to a month of days the analytics facts are missing.
+     */
     @Override
     @Scheduled(cron = "0 30 1 * * ?")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void processDailyAnalytics() {
-        LocalDate date = LocalDate.now().minusDays(1);
-
-        logger.info("Processing daily analytics for date: {}", date);
-
-        List<Book> allBooks = bookRepository.findAll();
+        LocalDate endDate = LocalDate.now().minusDays(1);
+        LocalDate catchUp = analyticsFactStore.getCompleteThrough().plusDays(1);
+        LocalDate startDate = endDate.minusDays(rollupLookbackDays - 1);
+        // While history is being backfilled the facts lag on purpose; the backfill catches them up
+        if (analyticsFactStore.isBackfilled() && catchUp.isBefore(startDate)) {
+            startDate = catchUp.isBefore(endDate.minusDays(30)) ? endDate.minusDays(30) : catchUp;
+        }
 
-        for (Book book : allBooks) {
-            BookAnalytics analytics;
+        logger.info("Processing daily analytics for: {} - {}", startDate, endDate);
 
-            try {
-                analytics = bookAnalyticsRepository
-                        .findByBookAndAnalyticsDate(book, date)
-                        .orElse(new BookAnalytics());
-            } catch (org.springframework.dao.IncorrectResultSizeDataAccessException e) {
-                // Handle duplicate records
-                logger.error("Found duplicate BookAnalytics for book {} on date {}. Using first record.", book.getTitle(), date);
+        int rows = rollupDailyAnalytics(startDate, endDate);
 
-                List<BookAnalytics> duplicates = bookAnalyticsRepository.findAll().stream()
-                        .filter(ba -> ba.getBook().getId().equals(book.getId()) && ba.getAnalyticsDate().equals(date))
-                        .toList();
+        logger.info("Daily analytics processing completed for: {} - {}, {} rows changed", startDate, endDate, rows);
+    }
 
-                analytics = duplicates.isEmpty() ? new BookAnalytics() : duplicates.get(0);
-            }
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int rollupDailyAnalytics(LocalDate startDate, LocalDate endDate) {
+        // Counters still in memory would otherwise be added on top of the recomputed values
+        analyticsAggregator.flush();
+        return analyticsRollup.rollup(startDate, endDate);
+    }
 
-            if (analytics.getId() == null) {
-                analytics.setBook(book);
-                analytics.setAnalyticsDate(date);
-            }
+    /**
+     * Roll up a range in the background, e.g. a backfill requested by an admin.
+     *
+     * @return false if a requested rollup is still running
+     * @throws IllegalArgumentException if the range is reversed or reaches today
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean startRollup(LocalDate startDate, LocalDate endDate) {
+        analyticsRollup.checkRange(startDate, endDate);
+        if (!rollupRunning.compareAndSet(false, true)) {
+            return false;
+        }
 
-            bookAnalyticsRepository.save(analytics);
+        try {
+            rollupExecutor.execute(() -> {
+                try {
+                    int rows = rollupDailyAnalytics(startDate, endDate);
+                    logger.info("Requested analytics rollup {} - {} completed, {} rows changed", startDate, endDate, rows);
+                } catch (RuntimeException e) {
+                    logger.error("Requested analytics rollup {} - {} failed", startDate, endDate, e);
+                } finally {
+                    rollupRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rollupRunning.set(false);
+            throw e;
         }
+        return true;
+    }
 
-        logger.info("Daily analytics processing completed for: {}", date);
+    @PreDestroy
+    public void shutdownRollup() {
+        rollupExecutor.shutdownNow();
     }
 
     @Override
@@ -455,6 +370,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
             for (ReadingSession session : staleSessions) {
                 session.endSession();
+                recordReadingMinutes(session);
                 readingSessionRepository.save(session);
             }
         }
@@ -462,7 +378,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public List<Map<String, Object>> getClicksByPublisher(LocalDate startDate, LocalDate endDate) {
-        List<Object[]> results = bookAnalyticsRepository.getClicksByPublisher(startDate, endDate);
+        List<Object[]> results = analyticsFactStore.getClicksByPublisher(startDate, endDate);
 
         return results.stream()
                 .map(result -> Map.of(
@@ -475,7 +391,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public List<Map<String, Object>> getReadingMinutesByPublisher(LocalDate startDate, LocalDate endDate) {
-        List<Object[]> results = bookAnalyticsRepository.getReadingMinutesByPublisher(startDate, endDate);
+        List<Object[]> results = analyticsFactStore.getReadingMinutesByPublisher(startDate, endDate);
 
         return results.stream()
                 .map(result -> Map.of(
@@ -489,7 +405,7 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public List<Map<String, Object>> getActiveBooksCountByPublisher(LocalDate startDate, LocalDate endDate) {
-        List<Object[]> results = bookAnalyticsRepository.getActiveBooksCountByPublisher(startDate, endDate);
+        List<Object[]> results = analyticsFactStore.getActiveBooksCountByPublisher(startDate, endDate);
 
         return results.stream()
                 .map(result -> Map.of(
@@ -502,8 +418,8 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public List<Map<String, Object>> getMostClickedBooksLast30Days() {
-        LocalDate thirtyDaysAgo = LocalDate.now().minusDays(30);
-        List<Object[]> results = bookAnalyticsRepository.getMostClickedBooksLast30Days(thirtyDaysAgo);
+        LocalDate today = LocalDate.now();
+        List<Object[]> results = analyticsFactStore.getMostClickedBooks(today.minusDays(30), today);
 
         return results.stream()
                 .map(result -> Map.of(
@@ -517,24 +433,10 @@ public class AnalyticsServiceImpl implements AnalyticsService {
 
     @Override
     public Map<String, Object> getPublisherAnalyticsSummary(Long publisherId, LocalDate startDate, LocalDate endDate) {
-        // Get all analytics for books from this publisher
-        List<BookAnalytics> publisherAnalytics = bookAnalyticsRepository.findByDateRange(startDate, endDate)
-                .stream()
-                .filter(ba -> ba.getBook().getPublisher().getId().equals(publisherId))
-                .toList();
-
-        long totalClicks = publisherAnalytics.stream()
-                .mapToLong(BookAnalytics::getDailyClicks)
-                .sum();
-
-        long totalReadingMinutes = publisherAnalytics.stream()
-                .mapToLong(BookAnalytics::getDailyReadingMinutes)
-                .sum();
-
-        long uniqueBooks = publisherAnalytics.stream()
-                .map(ba -> ba.getBook().getId())
-                .distinct()
-                .count();
+        long[] totals = analyticsFactStore.getPublisherSummary(publisherId, startDate, endDate);
+        long totalClicks = totals[0];
+        long totalReadingMinutes = totals[1];
+        long uniqueBooks = totals[2];
 
         return Map.of(
                 "publisherId", publisherId,
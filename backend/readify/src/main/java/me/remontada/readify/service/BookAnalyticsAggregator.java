@@ -0,0 +1,322 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind counters for {@code book_analytics}.
+ *
+ * <p>Clicks, unique readers, sessions and reading minutes are added to in-memory {@link LongAdder}s
+ * per book and day, so tracking costs no database access on the request path and concurrent
+ * clicks on one book do not contend. {@link #flush()} periodically adds what accumulated to the
+ * rows in a single {@code INSERT ... ON CONFLICT DO UPDATE} statement, which also means two
+ * nodes can never create the same book-day row twice.</p>
+ *
+ * <p>If a flush fails the drained counts are put back and go out with the next one. Counts not
+ * yet flushed are lost if the JVM dies; they are flushed on a normal shutdown.</p>
+ */
+@Slf4j
+@Component
+public class BookAnalyticsAggregator {
+
+    // Rows are sent as arrays and unnested, so a flush is one statement whatever its size
+    private static final String UPSERT = """
+            INSERT INTO book_analytics (book_id, analytics_date, daily_clicks, daily_unique_readers,
+                                        daily_sessions, daily_reading_minutes, created_at, updated_at)
+            SELECT d.book_id, d.analytics_date, d.clicks, d.readers, d.sessions, d.minutes, now(), now()
+            FROM unnest(?::bigint[], ?::date[], ?::bigint[], ?::bigint[], ?::bigint[], ?::bigint[])
+                 AS d(book_id, analytics_date, clicks, readers, sessions, minutes)
+            ON CONFLICT (book_id, analytics_date) DO UPDATE SET
+                daily_clicks = book_analytics.daily_clicks + excluded.daily_clicks,
+                daily_unique_readers = book_analytics.daily_unique_readers + excluded.daily_unique_readers,
+                daily_sessions = book_analytics.daily_sessions + excluded.daily_sessions,
+                daily_reading_minutes = book_analytics.daily_reading_minutes + excluded.daily_reading_minutes,
+                updated_at = now()""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentMap<LocalDate, DayCounters> countersByDay = new ConcurrentHashMap<>();
+    // Serializes flushes: the scheduler and the shutdown hook may overlap
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile FlushedTotals flushedToday = FlushedTotals.empty(LocalDate.now());
+
+    // Created once so lookups allocate nothing
+    private final Function<LocalDate, DayCounters> newDay = day -> new DayCounters();
+
+    /**
+     * @param migrations adds the unique key the upsert relies on; injected so it runs first
+     */
+    @Autowired
+    public BookAnalyticsAggregator(JdbcTemplate jdbcTemplate, SchemaMigrationRunner migrations) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void recordClick(Long bookId) {
+        add(bookId, LocalDate.now(), 1, 0, 0, 0);
+    }
+
+    public void recordUniqueReader(Long bookId) {
+        add(bookId, LocalDate.now(), 0, 1, 0, 0);
+    }
+
+    public void recordSession(Long bookId) {
+        add(bookId, LocalDate.now(), 0, 0, 1, 0);
+    }
+
+    public void recordReadingMinutes(Long bookId, LocalDate day, long minutes) {
+        if (minutes > 0) {
+            add(bookId, day, 0, 0, 0, minutes);
+        }
+    }
+
+    /**
+     * Add everything counted since the previous flush to {@code book_analytics}.
+     *
+     * @return number of book-day rows written
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval-ms:5000}")
+    public int flush() {
+        flushLock.lock();
+        try {
+            List<Delta> deltas = drain();
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                write(deltas);
+                addFlushedToday(deltas);
+                log.debug("Flushed analytics counters for {} book-days", deltas.size());
+                return deltas.size();
+            } catch (DataAccessException e) {
+                deltas.forEach(this::restore);
+                log.warn("Failed to flush analytics counters for {} book-days, retrying with the next flush: {}",
+                        deltas.size(), e.getMessage());
+                return 0;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Totals written for today by this node since it started. A reader that queried
+     * {@code book_analytics} inside {@link #atFlushBoundary} can add the growth of these totals
+     * since then to its result instead of querying again.
+     */
+    public FlushedTotals getFlushedToday() {
+        FlushedTotals totals = flushedToday;
+        LocalDate today = LocalDate.now();
+        return totals.day().equals(today) ? totals : FlushedTotals.empty(today);
+    }
+
+    /**
+     * Run {@code query} while no flush is in progress, so its result and {@link #getFlushedToday()}
+     * taken inside it describe the same state of the table.
+     */
+    public <T> T atFlushBoundary(Supplier<T> query) {
+        flushLock.lock();
+        try {
+            return query.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void addFlushedToday(List<Delta> deltas) {
+        FlushedTotals totals = getFlushedToday();
+        long clicks = totals.clicks();
+        long readers = totals.uniqueReaders();
+        long sessions = totals.sessions();
+        long minutes = totals.minutes();
+        for (Delta delta : deltas) {
+            if (delta.day().equals(totals.day())) {
+                clicks += delta.clicks();
+                readers += delta.uniqueReaders();
+                sessions += delta.sessions();
+                minutes += delta.minutes();
+            }
+        }
+        flushedToday = new FlushedTotals(totals.day(), clicks, readers, sessions, minutes);
+    }
+
+    private List<Delta> drain() {
+        // Minutes of a session are booked on the day it started, so yesterday still gets late updates
+        LocalDate retireBefore = LocalDate.now().minusDays(1);
+        List<Delta> deltas = new ArrayList<>();
+
+        for (Map.Entry<LocalDate, DayCounters> entry : countersByDay.entrySet()) {
+            LocalDate day = entry.getKey();
+            DayCounters dayCounters = entry.getValue();
+            int drainedForDay = dayCounters.drainTo(day, deltas);
+
+            // Removed first, then flagged: a writer that sees the flag adds again to a fresh map
+            if (drainedForDay == 0 && day.isBefore(retireBefore) && countersByDay.remove(day, dayCounters)) {
+                dayCounters.retired = true;
+                // Writers that looked the day up before it was removed may have added to it since
+                dayCounters.drainTo(day, deltas);
+            }
+        }
+
+        // Same lock order on every node, so concurrent flushes cannot deadlock
+        deltas.sort(Comparator.comparing(Delta::day).thenComparing(Delta::bookId));
+        return deltas;
+    }
+
+    private void write(List<Delta> deltas) {
+        int size = deltas.size();
+        Long[] bookIds = new Long[size];
+        Date[] days = new Date[size];
+        Long[] clicks = new Long[size];
+        Long[] readers = new Long[size];
+        Long[] sessions = new Long[size];
+        Long[] minutes = new Long[size];
+
+        for (int i = 0; i < size; i++) {
+            Delta delta = deltas.get(i);
+            bookIds[i] = delta.bookId();
+            days[i] = Date.valueOf(delta.day());
+            clicks[i] = delta.clicks();
+            readers[i] = delta.uniqueReaders();
+            sessions[i] = delta.sessions();
+            minutes[i] = delta.minutes();
+        }
+
+        jdbcTemplate.update(UPSERT, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("bigint", bookIds));
+            ps.setArray(2, connection.createArrayOf("date", days));
+            ps.setArray(3, connection.createArrayOf("bigint", clicks));
+            ps.setArray(4, connection.createArrayOf("bigint", readers));
+            ps.setArray(5, connection.createArrayOf("bigint", sessions));
+            ps.setArray(6, connection.createArrayOf("bigint", minutes));
+        });
+    }
+
+    private void restore(Delta delta) {
+        add(delta.bookId(), delta.day(), delta.clicks(), delta.uniqueReaders(), delta.sessions(), delta.minutes());
+    }
+
+    private void add(Long bookId, LocalDate day, long clicks, long uniqueReaders, long sessions, long minutes) {
+        DayCounters dayCounters = countersByDay.get(day);
+        if (dayCounters == null) {
+            dayCounters = countersByDay.computeIfAbsent(day, newDay);
+        }
+        Counters counters = dayCounters.forBook(bookId);
+        counters.add(clicks, uniqueReaders, sessions, minutes);
+
+        if (dayCounters.retired) {
+            // The day was retired around this add and its last drain may have missed it; whatever
+            // is still here moves to the day's new map. sumThenReset hands each count to one side.
+            Delta missed = counters.drain(bookId, day);
+            if (missed != null) {
+                restore(missed);
+            }
+        }
+    }
+
+    /**
+     * Counters of one day. A day is retired once it stayed empty for a flush and is old enough;
+     * it is then removed from the aggregator and drained one last time.
+     */
+    private static final class DayCounters {
+        private final ConcurrentMap<Long, Counters> byBook = new ConcurrentHashMap<>();
+        // Created once so lookups allocate nothing
+        private final Function<Long, Counters> newCounters = bookId -> new Counters();
+        private volatile boolean retired;
+
+        private Counters forBook(Long bookId) {
+            Counters counters = byBook.get(bookId);
+            return counters != null ? counters : byBook.computeIfAbsent(bookId, newCounters);
+        }
+
+        private int drainTo(LocalDate day, List<Delta> deltas) {
+            int drained = 0;
+            for (Map.Entry<Long, Counters> entry : byBook.entrySet()) {
+                Delta delta = entry.getValue().drain(entry.getKey(), day);
+                if (delta != null) {
+                    deltas.add(delta);
+                    drained++;
+                }
+            }
+            return drained;
+        }
+    }
+
+    /**
+     * Counts of one book and day not yet flushed.
+     */
+    private static final class Counters {
+        private final LongAdder clicks = new LongAdder();
+        private final LongAdder uniqueReaders = new LongAdder();
+        private final LongAdder sessions = new LongAdder();
+        private final LongAdder minutes = new LongAdder();
+
+        private void add(long addClicks, long addReaders, long addSessions, long addMinutes) {
+            if (addClicks != 0) {
+                clicks.add(addClicks);
+            }
+            if (addReaders != 0) {
+                uniqueReaders.add(addReaders);
+            }
+            if (addSessions != 0) {
+                sessions.add(addSessions);
+            }
+            if (addMinutes != 0) {
+                minutes.add(addMinutes);
+            }
+        }
+
+        /**
+         * Take the counts accumulated so far. sumThenReset swaps each cell to zero atomically, so an
+         * increment racing with it lands either in this delta or in the next one.
+         */
+        private Delta drain(Long bookId, LocalDate day) {
+            long drainedClicks = clicks.sumThenReset();
+            long drainedReaders = uniqueReaders.sumThenReset();
+            long drainedSessions = sessions.sumThenReset();
+            long drainedMinutes = minutes.sumThenReset();
+            if ((drainedClicks | drainedReaders | drainedSessions | drainedMinutes) == 0) {
+                return null;
+            }
+            return new Delta(bookId, day, drainedClicks, drainedReaders, drainedSessions, drainedMinutes);
+        }
+    }
+
+    /**
+     * Cumulative counts written for one day.
+     */
+    public record FlushedTotals(LocalDate day, long clicks, long uniqueReaders, long sessions, long minutes) {
+
+        static FlushedTotals empty(LocalDate day) {
+            return new FlushedTotals(day, 0, 0, 0, 0);
+        }
+    }
+
+    private record Delta(Long bookId, LocalDate day, long clicks, long uniqueReaders, long sessions, long minutes) {
+    }
+}
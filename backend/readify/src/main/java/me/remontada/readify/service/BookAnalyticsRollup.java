@@ -0,0 +1,167 @@
+package me.remontada.readify.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recomputes sessions, reading minutes and unique readers of closed days in {@code book_analytics}
+ * from {@code reading_sessions}.
+ *
+ * <p>Each day is one aggregate {@code INSERT ... SELECT ... GROUP BY book_id} upsert plus one
+ * statement that zeroes book-days without sessions, so the cost does not depend on the size of
+ * the catalog. Values are set, not added, which makes a run idempotent: a range can be rolled up
+ * again at any time, for example to backfill history. Clicks only exist in
+ * {@code book_analytics} and are left alone.</p>
+ *
+ * <p>Each rolled-up day is also rewritten in {@link AnalyticsFactStore}.</p>
+ *
+ * <p>Only days before today can be rolled up, since today's counters are still being added to by
+ * {@link BookAnalyticsAggregator}. Callers flush this node's aggregator first. Counts still buffered
+ * on other nodes are not: reading minutes of a session that ended on another node within one flush
+ * interval ({@code app.analytics.flush-interval-ms}) before the rollup are counted by the rollup and
+ * then added again by that node's flush. The nightly run rolls up the last
+ * {@code app.analytics.rollup.lookback-days} days again, which corrects such a day.</p>
+ */
+@Slf4j
+@Component
+public class BookAnalyticsRollup {
+
+    // Sessions are booked on the day they started; minutes only exist once a session has ended
+    private static final String UPSERT_DAY = """
+            INSERT INTO book_analytics (book_id, analytics_date, daily_clicks, daily_reading_minutes,
+                                        daily_unique_readers, daily_sessions, created_at, updated_at)
+            SELECT rs.book_id, ?::date, 0, COALESCE(SUM(rs.duration_minutes), 0),
+                   COUNT(DISTINCT rs.user_id), COUNT(*), now(), now()
+            FROM reading_sessions rs
+            WHERE rs.session_start >= ?::date AND rs.session_start < ?::date + 1
+            GROUP BY rs.book_id
+            ON CONFLICT (book_id, analytics_date) DO UPDATE SET
+                daily_reading_minutes = excluded.daily_reading_minutes,
+                daily_unique_readers = excluded.daily_unique_readers,
+                daily_sessions = excluded.daily_sessions,
+                updated_at = now()
+            WHERE (book_analytics.daily_reading_minutes, book_analytics.daily_unique_readers,
+                   book_analytics.daily_sessions)
+                  IS DISTINCT FROM (excluded.daily_reading_minutes, excluded.daily_unique_readers,
+                                    excluded.daily_sessions)""";
+
+    // Rows created by clicks alone, or left over from sessions since deleted
+    private static final String RESET_DAY = """
+            UPDATE book_analytics ba SET daily_reading_minutes = 0, daily_unique_readers = 0,
+                   daily_sessions = 0, updated_at = now()
+            WHERE ba.analytics_date = ?::date
+              AND (ba.daily_reading_minutes <> 0 OR ba.daily_unique_readers <> 0 OR ba.daily_sessions <> 0)
+              AND NOT EXISTS (SELECT 1 FROM reading_sessions rs
+                              WHERE rs.book_id = ba.book_id
+                                AND rs.session_start >= ba.analytics_date
+                                AND rs.session_start < ba.analytics_date + 1)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AnalyticsFactStore factStore;
+
+    private final LongAdder rowsWritten = new LongAdder();
+    private final Timer rollupTimer;
+    private volatile LocalDate lastRolledUpDay;
+
+    /**
+     * @param migrations adds the unique key the upsert relies on and the session_start index the
+     *                   day queries use; injected so it runs first
+     */
+    @Autowired
+    public BookAnalyticsRollup(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               SchemaMigrationRunner migrations,
+                               AnalyticsFactStore factStore,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.factStore = factStore;
+
+        this.rollupTimer = Timer.builder("readify.analytics.rollup")
+                .description("Duration of rolling up one day of reading sessions")
+                .register(meterRegistry);
+        FunctionCounter.builder("readify.analytics.rollup.rows", rowsWritten, LongAdder::sum)
+                .description("book_analytics rows changed by the rollup")
+                .register(meterRegistry);
+        Gauge.builder("readify.analytics.rollup.lag", this, BookAnalyticsRollup::lagSeconds)
+                .description("Seconds since the end of the newest rolled-up day")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Roll up every day from {@code from} to {@code to}, inclusive, one transaction per day.
+     *
+     * @return number of book_analytics rows changed
+     * @throws IllegalArgumentException if the range is reversed or reaches today
+     */
+    public int rollup(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+
+        int total = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            total += rollupDay(day);
+        }
+        return total;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is reversed or reaches today
+     */
+    public void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Rollup range starts after it ends: " + from + " > " + to);
+        }
+        if (!to.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Only days before today can be rolled up: " + to);
+        }
+    }
+
+    private int rollupDay(LocalDate day) {
+        long started = System.nanoTime();
+        Date date = Date.valueOf(day);
+
+        int[] rows = transactionTemplate.execute(status -> {
+            int updated = jdbcTemplate.update(UPSERT_DAY, date, date, date) + jdbcTemplate.update(RESET_DAY, date);
+            // Same transaction, so reports never see the facts of a half rolled-up day
+            return new int[]{updated, factStore.refresh(day, day)};
+        });
+        int changed = rows != null ? rows[0] : 0;
+        int facts = rows != null ? rows[1] : 0;
+
+        long elapsed = System.nanoTime() - started;
+        rollupTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        rowsWritten.add(changed);
+        if (lastRolledUpDay == null || day.isAfter(lastRolledUpDay)) {
+            lastRolledUpDay = day;
+        }
+
+        log.info("Rolled up analytics for {}: {} rows changed, {} fact rows written in {} ms",
+                day, changed, facts, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return changed;
+    }
+
+    private double lagSeconds() {
+        LocalDate day = lastRolledUpDay;
+        if (day == null) {
+            return Double.NaN;
+        }
+        return Duration.between(day.plusDays(1).atStartOfDay(), LocalDateTime.now()).getSeconds();
+    }
+}
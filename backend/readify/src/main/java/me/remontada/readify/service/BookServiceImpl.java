@@ -23,12 +23,15 @@ public class BookServiceImpl implements BookService {
     private final BookRepository bookRepository;
     private final CategoryService categoryService;
     private final PublisherService publisherService;
+    private final StreamingSessionService streamingSessionService;
 
     @Autowired
-    public BookServiceImpl(BookRepository bookRepository, CategoryService categoryService, PublisherService publisherService) {
+    public BookServiceImpl(BookRepository bookRepository, CategoryService categoryService, PublisherService publisherService,
+                           StreamingSessionService streamingSessionService) {
         this.bookRepository = bookRepository;
         this.categoryService = categoryService;
         this.publisherService = publisherService;
+        this.streamingSessionService = streamingSessionService;
     }
 
     @Override
@@ -290,16 +293,24 @@ public class BookServiceImpl implements BookService {
             existingBook.setPrice(bookData.getPrice());
         }
 
+        boolean accessChanged = false;
+
         if (bookData.getIsPremium() != null) {
+            accessChanged |= !bookData.getIsPremium().equals(existingBook.getIsPremium());
             existingBook.setIsPremium(bookData.getIsPremium());
         }
 
         if (bookData.getIsAvailable() != null) {
+            accessChanged |= !bookData.getIsAvailable().equals(existingBook.getIsAvailable());
             existingBook.setIsAvailable(bookData.getIsAvailable());
         }
 
         Book updatedBook = bookRepository.save(existingBook);
 
+        if (accessChanged) {
+            streamingSessionService.invalidateBookAuthorizations(id);
+        }
+
         return updatedBook;
     }
 
@@ -314,6 +325,7 @@ public class BookServiceImpl implements BookService {
 
         book.setIsAvailable(false);
         bookRepository.save(book);
+        streamingSessionService.invalidateBookAuthorizations(id);
 
         log.info("Soft deleted book: '{}' (ID: {})", book.getTitle(), id);
     }
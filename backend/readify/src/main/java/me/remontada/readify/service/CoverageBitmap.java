@@ -0,0 +1,103 @@
+package me.remontada.readify.service;
+
+import java.util.Arrays;
+
+/**
+ * Which fixed-size blocks of a book one reader was served recently, one bit per block.
+ *
+ * <p>Bits are kept in two generations of {@code generationMillis} each, packed into a single
+ * {@code long[]}: the current generation, then the previous one. When a generation ends the
+ * current bits become the previous ones and the current are cleared, so {@link #coverage(long)}
+ * always covers between one and two generations of history. A 40 MB book in 1 MB blocks takes one
+ * word per generation, about 50 bytes for the whole bitmap. Books of more than {@link #MAX_BLOCKS}
+ * blocks are tracked in larger blocks, so no bitmap exceeds 1 KB.</p>
+ *
+ * <p>Not thread-safe; {@link AccessPatternWindow} calls it under its own lock.</p>
+ */
+public final class CoverageBitmap {
+
+    public static final int MAX_BLOCKS = 4096;
+
+    private final long contentLength;
+    private final long blockSize;
+    private final int blocks;
+    private final int words;
+    private final long generationMillis;
+    // [0, words): current generation, [words, 2 * words): previous generation
+    private final long[] bits;
+    private long generationStart;
+
+    public CoverageBitmap(long contentLength, long blockSize, long generationMillis, long now) {
+        this.contentLength = contentLength;
+        this.blockSize = Math.max(Math.max(1, blockSize), (contentLength + MAX_BLOCKS - 1) / MAX_BLOCKS);
+        this.blocks = (int) Math.max(1, (contentLength + this.blockSize - 1) / this.blockSize);
+        this.words = (blocks + 63) >>> 6;
+        this.generationMillis = Math.max(1, generationMillis);
+        this.bits = new long[words * 2];
+        this.generationStart = now;
+    }
+
+    /**
+     * Mark the blocks of {@code rangeStart..rangeEnd} as served at {@code now}.
+     */
+    public void mark(long now, long rangeStart, long rangeEnd) {
+        rotate(now);
+        int first = block(rangeStart);
+        int last = block(rangeEnd);
+        for (int bit = first; bit <= last; ) {
+            int word = bit >>> 6;
+            int to = Math.min(last, (word << 6) + 63);
+            int width = to - bit + 1;
+            bits[word] |= width == 64 ? -1L : ((1L << width) - 1) << (bit & 63);
+            bit = to + 1;
+        }
+    }
+
+    /**
+     * Blocks served in the current or the previous generation.
+     */
+    public int servedBlocks(long now) {
+        rotate(now);
+        int served = 0;
+        for (int w = 0; w < words; w++) {
+            served += Long.bitCount(bits[w] | bits[words + w]);
+        }
+        return served;
+    }
+
+    public double coverage(long now) {
+        return (double) servedBlocks(now) / blocks;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    private int block(long offset) {
+        return (int) Math.min(blocks - 1, Math.max(0, offset) / blockSize);
+    }
+
+    private void rotate(long now) {
+        long elapsed = now - generationStart;
+        if (elapsed < generationMillis) {
+            return;
+        }
+        if (elapsed < generationMillis * 2) {
+            System.arraycopy(bits, 0, bits, words, words);
+            Arrays.fill(bits, 0, words, 0L);
+            generationStart += generationMillis;
+        } else {
+            // Idle for two generations or more: nothing recent remains
+            Arrays.fill(bits, 0L);
+            generationStart = now;
+        }
+    }
+}
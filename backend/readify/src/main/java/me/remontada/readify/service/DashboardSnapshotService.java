@@ -0,0 +1,276 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.model.Book;
+import me.remontada.readify.model.SubscriptionType;
+import me.remontada.readify.repository.BookAnalyticsRepository;
+import me.remontada.readify.repository.BookRepository;
+import me.remontada.readify.repository.SubscriptionRepository;
+import me.remontada.readify.repository.UserRepository;
+import me.remontada.readify.service.BookAnalyticsAggregator.FlushedTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Admin dashboard figures, materialized in memory.
+ *
+ * <p>A full refresh runs the dashboard's aggregate queries on a schedule. Between refreshes the
+ * click, minute and reader figures that include today are brought up to date from what
+ * {@link BookAnalyticsAggregator} has flushed since, so serving the dashboard costs no queries.
+ * {@code computedAt} in the result is the time of the last full refresh.</p>
+ *
+ * <p>A forced refresh runs the independent queries in parallel on a small pool of its own.</p>
+ */
+@Slf4j
+@Component
+public class DashboardSnapshotService {
+
+    private static final int TREND_SIZE = 5;
+
+    private final UserRepository userRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final BookRepository bookRepository;
+    private final BookAnalyticsRepository bookAnalyticsRepository;
+    private final BookAnalyticsAggregator analyticsAggregator;
+    private final ExecutorService refreshExecutor;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public DashboardSnapshotService(UserRepository userRepository,
+                                    SubscriptionRepository subscriptionRepository,
+                                    BookRepository bookRepository,
+                                    BookAnalyticsRepository bookAnalyticsRepository,
+                                    BookAnalyticsAggregator analyticsAggregator,
+                                    @Value("${app.analytics.dashboard.refresh-threads:4}") int refreshThreads) {
+        this.userRepository = userRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.bookRepository = bookRepository;
+        this.bookAnalyticsRepository = bookAnalyticsRepository;
+        this.analyticsAggregator = analyticsAggregator;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads), runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-refresh-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param forceRefresh run the queries now instead of serving the materialized snapshot
+     */
+    public Map<String, Object> getDashboard(boolean forceRefresh) {
+        Snapshot current = snapshot;
+        if (forceRefresh || current == null || !current.day().equals(LocalDate.now())) {
+            current = refresh(forceRefresh ? refreshExecutor : Runnable::run, LocalDateTime.now());
+        }
+        return current.toMap(analyticsAggregator.getFlushedToday());
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.dashboard.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            refresh(Runnable::run, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Dashboard snapshot refresh failed, serving the previous one: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * @param requestedAt callers that waited for a refresh started after this time reuse its result
+     */
+    private Snapshot refresh(Executor executor, LocalDateTime requestedAt) {
+        refreshLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current != null && !current.computedAt().isBefore(requestedAt)) {
+                return current;
+            }
+
+            long started = System.nanoTime();
+            Snapshot computed = compute(executor);
+            snapshot = computed;
+            log.debug("Dashboard snapshot refreshed in {} ms", (System.nanoTime() - started) / 1_000_000);
+            return computed;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Snapshot compute(Executor executor) {
+        LocalDateTime computedAt = LocalDateTime.now();
+        LocalDate today = computedAt.toLocalDate();
+
+        CompletableFuture<long[]> users = CompletableFuture.supplyAsync(() -> new long[]{
+                userRepository.countAllUsers(),
+                userRepository.countUsersWithActiveSubscription()
+        }, executor);
+        CompletableFuture<Long> activeSubscriptions =
+                CompletableFuture.supplyAsync(subscriptionRepository::countActiveSubscriptions, executor);
+        CompletableFuture<Map<String, Long>> subscriptionsByType =
+                CompletableFuture.supplyAsync(this::subscriptionsByType, executor);
+        CompletableFuture<Long> totalBooks = CompletableFuture.supplyAsync(bookRepository::count, executor);
+        // Everything that includes today is read between flushes, so the growth since can be added exactly
+        CompletableFuture<Engagement> engagement =
+                CompletableFuture.supplyAsync(() -> analyticsAggregator.atFlushBoundary(() -> engagement(today)), executor);
+        CompletableFuture<List<Map<String, Object>>> mostRead = CompletableFuture.supplyAsync(() -> topBooks(
+                bookAnalyticsRepository.getMostReadBooks(today.minusDays(7), today),
+                (book, minutes) -> Map.of(
+                        "bookId", book.getId(),
+                        "title", book.getTitle(),
+                        "author", book.getAuthor(),
+                        "totalReadingMinutes", minutes,
+                        "totalReadingHours", minutes / 60.0
+                )), executor);
+        CompletableFuture<List<Map<String, Object>>> mostPopular = CompletableFuture.supplyAsync(() -> topBooks(
+                bookAnalyticsRepository.getMostClickedBooks(today.minusDays(30), today),
+                (book, clicks) -> Map.of(
+                        "bookId", book.getId(),
+                        "title", book.getTitle(),
+                        "author", book.getAuthor(),
+                        "totalClicks", clicks,
+                        "totalReads", book.getTotalReads()
+                )), executor);
+
+        try {
+            return new Snapshot(today, computedAt,
+                    users.join()[0], users.join()[1],
+                    activeSubscriptions.join(), subscriptionsByType.join(),
+                    totalBooks.join(), engagement.join(),
+                    mostRead.join(), mostPopular.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private Map<String, Long> subscriptionsByType() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] result : subscriptionRepository.getActiveSubscriptionsByType()) {
+            counts.put(((SubscriptionType) result[0]).name(), (Long) result[1]);
+        }
+        return counts;
+    }
+
+    private Engagement engagement(LocalDate today) {
+        return new Engagement(
+                orZero(bookAnalyticsRepository.getTotalClicksBetweenDates(today.withDayOfMonth(1), today)),
+                orZero(bookAnalyticsRepository.getTotalClicksBetweenDates(today.minusDays(30), today)),
+                orZero(bookAnalyticsRepository.getTotalClicksForDate(today)),
+                orZero(bookAnalyticsRepository.getTotalReadingMinutesForDate(today)),
+                orZero(bookAnalyticsRepository.getTotalUniqueReadersForDate(today)),
+                analyticsAggregator.getFlushedToday());
+    }
+
+    /**
+     * Resolve the first {@link #TREND_SIZE} (bookId, total) rows that still have a book.
+     */
+    private List<Map<String, Object>> topBooks(List<Object[]> results,
+                                               BiFunction<Book, Long, Map<String, Object>> toEntry) {
+        List<Map<String, Object>> books = new ArrayList<>(TREND_SIZE);
+        for (Object[] result : results) {
+            if (books.size() == TREND_SIZE) {
+                break;
+            }
+            Optional<Book> book = bookRepository.findById((Long) result[0]);
+            book.ifPresent(value -> books.add(toEntry.apply(value, (Long) result[1])));
+        }
+        return List.copyOf(books);
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Figures that grow with today's activity, and the aggregator totals they already include.
+     */
+    private record Engagement(long monthClicks, long last30DaysClicks, long todayClicks,
+                              long todayReadingMinutes, long todayReaders, FlushedTotals included) {
+    }
+
+    private record Snapshot(LocalDate day, LocalDateTime computedAt,
+                            long totalUsers, long subscribedUsers,
+                            long activeSubscriptions, Map<String, Long> subscriptionsByType,
+                            long totalBooks, Engagement engagement,
+                            List<Map<String, Object>> mostReadThisWeek,
+                            List<Map<String, Object>> mostPopularThisMonth) {
+
+        Map<String, Object> toMap(FlushedTotals flushed) {
+            FlushedTotals included = engagement.included();
+            boolean sameDay = flushed.day().equals(included.day());
+            long newClicks = sameDay ? flushed.clicks() - included.clicks() : 0;
+            long newMinutes = sameDay ? flushed.minutes() - included.minutes() : 0;
+            long newReaders = sameDay ? flushed.uniqueReaders() - included.uniqueReaders() : 0;
+
+            long todayClicks = engagement.todayClicks() + newClicks;
+            long todayMinutes = engagement.todayReadingMinutes() + newMinutes;
+
+            Map<String, Object> analytics = new HashMap<>();
+
+            analytics.put("users", Map.of(
+                    "totalUsers", totalUsers,
+                    "subscribedUsers", subscribedUsers,
+                    "freeUsers", totalUsers - subscribedUsers
+            ));
+
+            analytics.put("subscriptions", Map.of(
+                    "totalActive", activeSubscriptions,
+                    "monthly", subscriptionsByType.getOrDefault("MONTHLY", 0L),
+                    "sixMonth", subscriptionsByType.getOrDefault("SIX_MONTH", 0L),
+                    "yearly", subscriptionsByType.getOrDefault("YEARLY", 0L)
+            ));
+
+            analytics.put("books", Map.of(
+                    "totalBooks", totalBooks
+            ));
+
+            analytics.put("engagement", Map.of(
+                    "totalClicksThisMonth", engagement.monthClicks() + newClicks,
+                    "totalClicksLast30Days", engagement.last30DaysClicks() + newClicks,
+                    "todayClicks", todayClicks
+            ));
+
+            analytics.put("today", Map.of(
+                    "totalClicks", todayClicks,
+                    "totalReadingMinutes", todayMinutes,
+                    "totalReadingHours", todayMinutes / 60.0,
+                    "uniqueReaders", engagement.todayReaders() + newReaders
+            ));
+
+            analytics.put("trends", Map.of(
+                    "mostReadThisWeek", mostReadThisWeek,
+                    "mostPopularThisMonth", mostPopularThisMonth
+            ));
+
+            analytics.put("computedAt", computedAt);
+
+            return analytics;
+        }
+    }
+}
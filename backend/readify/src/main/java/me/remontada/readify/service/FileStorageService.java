@@ -15,7 +15,8 @@ import java.io.IOException;
 public interface FileStorageService {
 
     /**
-     * Čuva PDF fajl knjige u storage
+     * Čuva PDF fajl knjige u storage i pravi indeks njegove strukture
+     * (verzija, xref, trailer, linearizacija, ofseti stranica) pored fajla
      * @param file - MultipartFile PDF dokument
      * @param bookId - ID knjige za naming convention
      * @return String - relativna putanja do sačuvanog fajla
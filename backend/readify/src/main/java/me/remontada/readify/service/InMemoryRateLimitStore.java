@@ -0,0 +1,167 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.util.KeyEvictor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Single-node limiter state: a {@link TokenBucket} per limit and key, and the distinct items per
+ * subject and day. Also used by {@link JdbcRateLimitStore} while the database is unreachable.
+ *
+ * Each limit, and the daily trackers, hold at most {@code max-keys} keys; a request that adds a
+ * key past the cap evicts the least recently used ones of a sample, so keys sprayed by an
+ * attacker cannot grow the heap between maintenance runs.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    // Buckets are stamped in milliseconds since this origin; see TokenBucket
+    private final long clockOriginNanos = System.nanoTime();
+    private final int maxKeys;
+
+    private final ConcurrentMap<Limit, LimitBuckets> bucketsByLimit = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DailyAccessTracker> dailyTrackers = new ConcurrentHashMap<>();
+    private final KeyEvictor<String, DailyAccessTracker> dailyEvictor;
+
+    private final Function<String, DailyAccessTracker> newDailyTracker = subject -> new DailyAccessTracker();
+
+    @Autowired
+    public InMemoryRateLimitStore(@Value("${app.security.rate-limit.max-keys:100000}") int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+        this.dailyEvictor = new KeyEvictor<>(dailyTrackers, this.maxKeys);
+    }
+
+    @Override
+    public boolean tryAcquire(Limit limit, Object key) {
+        long now = now();
+        return buckets(limit).get(key, now).tryConsume(now);
+    }
+
+    @Override
+    public int availablePermits(Limit limit, Object key) {
+        LimitBuckets buckets = bucketsByLimit.get(limit);
+        TokenBucket bucket = buckets != null ? buckets.buckets.get(key) : null;
+        return bucket != null ? bucket.getAvailableTokens(now()) : limit.burst();
+    }
+
+    @Override
+    public DailyAccess recordDailyAccess(String subject, LocalDate day, Long itemId, int maxPerDay) {
+        long now = now();
+        DailyAccessTracker tracker = dailyTrackers.get(subject);
+        if (tracker == null) {
+            tracker = dailyTrackers.computeIfAbsent(subject, newDailyTracker);
+            dailyEvictor.onInsert(dailyAge(now));
+        }
+        return tracker.record(day, itemId, maxPerDay, now);
+    }
+
+    @Override
+    public int dailyAccessCount(String subject, LocalDate day) {
+        DailyAccessTracker tracker = dailyTrackers.get(subject);
+        return tracker != null ? tracker.count(day) : 0;
+    }
+
+    @Override
+    public int removeIdle(long idleMillis, int budget) {
+        long now = now();
+        ToLongFunction<TokenBucket> age = bucket -> bucket.idleMillis(now);
+        int removed = 0;
+        for (LimitBuckets buckets : bucketsByLimit.values()) {
+            removed += buckets.evictor.removeOlderThan(age, idleMillis, budget);
+            removed += buckets.evictor.evictOverCapacity(age, budget);
+        }
+        return removed;
+    }
+
+    @Override
+    public int removeDailyAccessBefore(LocalDate oldestKept, int budget) {
+        long oldestKeptDay = oldestKept.toEpochDay();
+        // Age in days past the oldest kept day, so trackers last used before it are at least 1 old
+        int removed = dailyEvictor.removeOlderThan(tracker -> oldestKeptDay - tracker.lastDay, 1, budget);
+        return removed + dailyEvictor.evictOverCapacity(dailyAge(now()), budget);
+    }
+
+    private LimitBuckets buckets(Limit limit) {
+        LimitBuckets buckets = bucketsByLimit.get(limit);
+        return buckets != null ? buckets : bucketsByLimit.computeIfAbsent(limit, l -> new LimitBuckets(l, this));
+    }
+
+    private long now() {
+        return TokenBucket.clockMillis(clockOriginNanos);
+    }
+
+    private static ToLongFunction<DailyAccessTracker> dailyAge(long now) {
+        return tracker -> now - tracker.lastAccess;
+    }
+
+    /**
+     * Buckets of one limit, with the factory created once so lookups allocate nothing.
+     */
+    private static final class LimitBuckets {
+        private final ConcurrentMap<Object, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final KeyEvictor<Object, TokenBucket> evictor;
+        private final Function<Object, TokenBucket> newBucket;
+
+        private LimitBuckets(Limit limit, InMemoryRateLimitStore store) {
+            this.evictor = new KeyEvictor<>(buckets, store.maxKeys);
+            this.newBucket = key -> new TokenBucket(limit.perMinute(), limit.burst(), store.now());
+        }
+
+        private TokenBucket get(Object key, long now) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            bucket = buckets.computeIfAbsent(key, newBucket);
+            evictor.onInsert(b -> b.idleMillis(now));
+            return bucket;
+        }
+    }
+
+    /**
+     * Distinct items per day for one subject. Only the current and the previous day are kept.
+     */
+    private static final class DailyAccessTracker {
+        private final ConcurrentMap<LocalDate, Set<Long>> itemsByDay = new ConcurrentHashMap<>();
+        private volatile long lastAccess;
+        private volatile long lastDay;
+
+        // Check and insert under the tracker lock so parallel requests cannot both take the last slot
+        private synchronized DailyAccess record(LocalDate day, Long itemId, int maxPerDay, long now) {
+            lastAccess = now;
+            Set<Long> items = itemsByDay.get(day);
+            if (items == null) {
+                // First access of a new day: at most one older day is still worth keeping
+                LocalDate oldestKept = day.minusDays(1);
+                itemsByDay.keySet().removeIf(d -> d.isBefore(oldestKept));
+                items = ConcurrentHashMap.newKeySet();
+                itemsByDay.put(day, items);
+                lastDay = Math.max(lastDay, day.toEpochDay());
+            }
+
+            if (items.contains(itemId)) {
+                return new DailyAccess(true, true, items.size());
+            }
+            if (items.size() >= maxPerDay) {
+                return new DailyAccess(false, false, items.size());
+            }
+            items.add(itemId);
+            return new DailyAccess(true, false, items.size());
+        }
+
+        private int count(LocalDate day) {
+            Set<Long> items = itemsByDay.get(day);
+            return items != null ? items.size() : 0;
+        }
+    }
+}
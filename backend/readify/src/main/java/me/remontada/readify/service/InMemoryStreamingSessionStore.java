@@ -0,0 +1,104 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.service.StreamingSessionService.StreamingSession;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Single-node session store: a map by token plus an index ordered by expiry time, so expired
+ * sessions are removed from the head of the index instead of scanning the whole map.
+ */
+@Component
+@ConditionalOnProperty(name = "app.streaming.session-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryStreamingSessionStore implements StreamingSessionStore {
+
+    private final ConcurrentMap<String, StreamingSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<ExpiryKey> expiryIndex = new ConcurrentSkipListSet<>();
+
+    @Override
+    public Optional<StreamingSession> find(String token) {
+        return Optional.ofNullable(sessions.get(token));
+    }
+
+    @Override
+    public void save(StreamingSession session) {
+        sessions.put(session.getToken(), session);
+        expiryIndex.add(ExpiryKey.of(session));
+    }
+
+    @Override
+    public StreamingSession saveIfAbsent(StreamingSession session) {
+        StreamingSession existing = sessions.putIfAbsent(session.getToken(), session);
+        if (existing != null) {
+            return existing;
+        }
+        expiryIndex.add(ExpiryKey.of(session));
+        return session;
+    }
+
+    @Override
+    public boolean remove(StreamingSession session) {
+        if (sessions.remove(session.getToken(), session)) {
+            expiryIndex.remove(ExpiryKey.of(session));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean markReadCountRegistered(StreamingSession session) {
+        return session.getReadCountRegistered().compareAndSet(false, true);
+    }
+
+    @Override
+    public int removeExpired(Instant now, int limit) {
+        int removed = 0;
+
+        while (removed < limit) {
+            ExpiryKey oldest = expiryIndex.pollFirst();
+            if (oldest == null) {
+                break;
+            }
+            if (oldest.expiresAt().isAfter(now)) {
+                expiryIndex.add(oldest);
+                break;
+            }
+
+            StreamingSession session = sessions.get(oldest.token());
+            // The token may have been re-issued (rehydrated) with another expiry in the meantime
+            if (session != null && session.getExpiresAt().equals(oldest.expiresAt())
+                    && sessions.remove(oldest.token(), session)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public int localSize() {
+        return sessions.size();
+    }
+
+    /**
+     * Position of a session in the expiry index: ordered by expiry time, then token.
+     */
+    private record ExpiryKey(Instant expiresAt, String token) implements Comparable<ExpiryKey> {
+
+        static ExpiryKey of(StreamingSession session) {
+            return new ExpiryKey(session.getExpiresAt(), session.getToken());
+        }
+
+        @Override
+        public int compareTo(ExpiryKey other) {
+            int byTime = expiresAt.compareTo(other.expiresAt);
+            return byTime != 0 ? byTime : token.compareTo(other.token);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.util.KeyEvictor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limiter state shared by all nodes through Postgres.
+ *
+ * <p>Each limit is enforced as a sliding window counter: time is cut into windows of
+ * {@code burst / perMinute} minutes (at least one second) and a key may use {@code burst} permits
+ * per window, counting the previous window's usage weighted by how much of it still overlaps the
+ * sliding window. That admits the same burst and the same sustained rate as the node-local token
+ * bucket. Counters live in an {@code UNLOGGED} table (created by {@link SchemaMigrationRunner});
+ * losing them in a crash only resets the current window.</p>
+ *
+ * <p>Nodes do not go to the database per request. A node leases a block of permits for the key
+ * (at most {@code lease-size}) and hands them out locally; only an exhausted lease costs a round
+ * trip. Permits a node leased but did not use are given back by {@link #reconcile()} once the key
+ * goes idle, so they are not lost to the other nodes. A key over its budget is not re-checked
+ * against the database until a permit can have freed up.</p>
+ *
+ * <p>Daily distinct-item limits (promo chapters) are checked in the database under an advisory
+ * lock per subject; they are hit once per chapter open, not per chunk.</p>
+ *
+ * <p>Window boundaries come from the wall clock, so nodes are expected to run NTP. While the
+ * database is unreachable the store falls back to per-node limits.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.security.rate-limit.store", havingValue = "jdbc")
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final String OPEN_WINDOW = """
+            INSERT INTO rate_limit_windows (limit_name, limit_key, window_start, used, expires_at)
+            VALUES (?, ?, ?, 0, ?)
+            ON CONFLICT DO NOTHING""";
+
+    // The FOR UPDATE makes concurrent leases for the same key queue up and see each other's grants
+    private static final String LEASE = """
+            WITH prev_window AS (
+                SELECT COALESCE(MAX(used), 0) AS used FROM rate_limit_windows
+                WHERE limit_name = ? AND limit_key = ? AND window_start = ?
+            ), cur_window AS (
+                SELECT used FROM rate_limit_windows
+                WHERE limit_name = ? AND limit_key = ? AND window_start = ?
+                FOR UPDATE
+            ), granted AS (
+                SELECT LEAST(?, GREATEST(0, ? - cur_window.used - FLOOR(prev_window.used * ?)::INT)) AS permits
+                FROM cur_window, prev_window
+            )
+            UPDATE rate_limit_windows w SET used = w.used + granted.permits
+            FROM granted
+            WHERE w.limit_name = ? AND w.limit_key = ? AND w.window_start = ?
+            RETURNING granted.permits""";
+
+    private static final String RETURN_PERMITS = """
+            UPDATE rate_limit_windows SET used = GREATEST(0, used - ?)
+            WHERE limit_name = ? AND limit_key = ? AND window_start = ?""";
+
+    private static final String DELETE_EXPIRED_WINDOWS = "DELETE FROM rate_limit_windows WHERE expires_at < ?";
+
+    private static final String LOCK_SUBJECT = "SELECT pg_advisory_xact_lock(hashtext('rate-limit-daily:' || ?))";
+
+    private static final String SELECT_DAILY_ITEMS =
+            "SELECT item_id FROM rate_limit_daily_access WHERE subject = ? AND access_date = ?";
+
+    private static final String INSERT_DAILY_ITEM = """
+            INSERT INTO rate_limit_daily_access (subject, access_date, item_id) VALUES (?, ?, ?)
+            ON CONFLICT DO NOTHING""";
+
+    private static final String COUNT_DAILY_ITEMS =
+            "SELECT COUNT(*) FROM rate_limit_daily_access WHERE subject = ? AND access_date = ?";
+
+    // Bounded so one maintenance run after a long outage does not hold a huge delete
+    private static final String DELETE_DAILY_BEFORE = """
+            DELETE FROM rate_limit_daily_access WHERE ctid IN (
+                SELECT ctid FROM rate_limit_daily_access WHERE access_date < ? LIMIT ?
+            )""";
+
+    private static final long DATABASE_RETRY_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int leaseSize;
+    private final long leaseIdleMillis;
+    private final int maxKeys;
+
+    private final ConcurrentMap<Limit, LimitLeases> leasesByLimit = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PermitReturn> pendingReturns = new ConcurrentLinkedQueue<>();
+    // Per-node limits used while the database is unreachable
+    private final InMemoryRateLimitStore fallback;
+    private volatile long databaseRetryAt;
+    private volatile long lastWindowPurge;
+
+    @Autowired
+    public JdbcRateLimitStore(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.security.rate-limit.store.lease-size:5}") int leaseSize,
+                              @Value("${app.security.rate-limit.store.lease-idle-ms:2000}") long leaseIdleMillis,
+                              @Value("${app.security.rate-limit.max-keys:100000}") int maxKeys) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseSize = Math.max(1, leaseSize);
+        this.leaseIdleMillis = Math.max(100, leaseIdleMillis);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.fallback = new InMemoryRateLimitStore(this.maxKeys);
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("JDBC rate limit store initialized: leaseSize={}, leaseIdleMs={}", leaseSize, leaseIdleMillis);
+    }
+
+    @Override
+    public boolean tryAcquire(Limit limit, Object key) {
+        long now = System.currentTimeMillis();
+        if (now < databaseRetryAt) {
+            return fallback.tryAcquire(limit, key);
+        }
+
+        LimitLeases leases = leases(limit);
+        long window = now / leases.windowMillis;
+        Lease lease = leases.get(key, now);
+        lease.lastUsed = now;
+
+        if (lease.tryTake(window)) {
+            return true;
+        }
+        if (now < lease.deniedUntil) {
+            return false;
+        }
+
+        // One request per key renews the lease; the others wait and use what it brought back
+        lease.lock.lock();
+        try {
+            if (lease.tryTake(window)) {
+                return true;
+            }
+            if (now < lease.deniedUntil) {
+                return false;
+            }
+
+            long previousWindow = lease.window();
+            int leftover = lease.drain();
+            if (leftover > 0 && previousWindow == ((window - 1) & Lease.WINDOW_MASK)) {
+                // Still weighs on the sliding window; older leftovers no longer count anywhere
+                pendingReturns.add(new PermitReturn(leases, lease.dbKey, previousWindow, leftover));
+            }
+
+            int granted;
+            try {
+                granted = lease(leases, lease.dbKey, window, now);
+            } catch (DataAccessException e) {
+                databaseRetryAt = now + DATABASE_RETRY_MILLIS;
+                log.warn("Rate limit store unreachable, using per-node limits for {} ms: {}",
+                        DATABASE_RETRY_MILLIS, e.getMessage());
+                return fallback.tryAcquire(limit, key);
+            }
+
+            if (granted == 0) {
+                lease.reset(window, 0);
+                lease.deniedUntil = now + leases.retryMillis;
+                return false;
+            }
+
+            // One of the granted permits is this request's
+            lease.reset(window, granted - 1);
+            return true;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    @Override
+    public int availablePermits(Limit limit, Object key) {
+        LimitLeases leases = leasesByLimit.get(limit);
+        Lease lease = leases != null ? leases.leases.get(key) : null;
+        if (lease == null) {
+            return limit.burst();
+        }
+        long window = System.currentTimeMillis() / leases.windowMillis;
+        return lease.window() == (window & Lease.WINDOW_MASK) ? lease.remaining() : 0;
+    }
+
+    @Override
+    public DailyAccess recordDailyAccess(String subject, LocalDate day, Long itemId, int maxPerDay) {
+        Date date = Date.valueOf(day);
+        try {
+            // The advisory lock is held until commit, so parallel requests cannot both take the last slot
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.query(LOCK_SUBJECT, rs -> null, subject);
+
+                List<Long> items = jdbcTemplate.queryForList(SELECT_DAILY_ITEMS, Long.class, subject, date);
+                if (items.contains(itemId)) {
+                    return new DailyAccess(true, true, items.size());
+                }
+                if (items.size() >= maxPerDay) {
+                    return new DailyAccess(false, false, items.size());
+                }
+
+                jdbcTemplate.update(INSERT_DAILY_ITEM, subject, date, itemId);
+                return new DailyAccess(true, false, items.size() + 1);
+            });
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Rate limit store unreachable, recording daily access for {} locally: {}", subject, e.getMessage());
+            return fallback.recordDailyAccess(subject, day, itemId, maxPerDay);
+        }
+    }
+
+    @Override
+    public int dailyAccessCount(String subject, LocalDate day) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(COUNT_DAILY_ITEMS, Integer.class, subject, Date.valueOf(day));
+            return count != null ? count : 0;
+        } catch (DataAccessException e) {
+            return fallback.dailyAccessCount(subject, day);
+        }
+    }
+
+    @Override
+    public int removeIdle(long idleMillis, int budget) {
+        long now = System.currentTimeMillis();
+        ToLongFunction<Lease> age = lease -> now - lease.lastUsed;
+        int removed = 0;
+
+        for (LimitLeases leases : leasesByLimit.values()) {
+            removed += leases.evictor.removeOlderThan(age, idleMillis, budget);
+            removed += leases.evictor.evictOverCapacity(age, budget);
+        }
+
+        return removed + fallback.removeIdle(idleMillis, budget);
+    }
+
+    @Override
+    public int removeDailyAccessBefore(LocalDate oldestKept, int budget) {
+        fallback.removeDailyAccessBefore(oldestKept, budget);
+        return jdbcTemplate.update(DELETE_DAILY_BEFORE, Date.valueOf(oldestKept), budget);
+    }
+
+    /**
+     * Give unused permits of idle leases back to the shared counters, so another node can use
+     * them, and drop expired window rows.
+     */
+    @Scheduled(fixedDelayString = "${app.security.rate-limit.store.reconcile-interval-ms:1000}")
+    public void reconcile() {
+        long now = System.currentTimeMillis();
+
+        for (LimitLeases leases : leasesByLimit.values()) {
+            for (Lease lease : leases.leases.values()) {
+                if (now - lease.lastUsed >= leaseIdleMillis && lease.remaining() > 0) {
+                    returnLeftover(leases, lease);
+                }
+            }
+        }
+
+        List<PermitReturn> batch = new ArrayList<>();
+        PermitReturn next;
+        while ((next = pendingReturns.poll()) != null) {
+            batch.add(next);
+        }
+
+        try {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(RETURN_PERMITS, batch.stream()
+                        .map(r -> new Object[]{r.permits(), r.leases().limit.name(), r.dbKey(), r.window()})
+                        .toList());
+                log.trace("Returned unused permits of {} rate limit leases", batch.size());
+            }
+
+            if (now - lastWindowPurge >= 60_000) {
+                lastWindowPurge = now;
+                int purged = jdbcTemplate.update(DELETE_EXPIRED_WINDOWS, now);
+                log.debug("Purged {} expired rate limit windows", purged);
+            }
+        } catch (DataAccessException e) {
+            // Returned permits are a courtesy to other nodes; the window expires anyway
+            log.warn("Failed to reconcile rate limit leases: {}", e.getMessage());
+        }
+    }
+
+    private void returnLeftover(LimitLeases leases, Lease lease) {
+        long window = lease.window();
+        int leftover = lease.drain();
+        if (leftover > 0) {
+            pendingReturns.add(new PermitReturn(leases, lease.dbKey, window, leftover));
+        }
+    }
+
+    private int lease(LimitLeases leases, String dbKey, long window, long now) {
+        String name = leases.limit.name();
+        double previousWeight = 1.0 - (double) (now - window * leases.windowMillis) / leases.windowMillis;
+        Object[] args = {
+                name, dbKey, window - 1,
+                name, dbKey, window,
+                leases.leaseSize, leases.permitsPerWindow, previousWeight,
+                name, dbKey, window
+        };
+
+        List<Integer> granted = jdbcTemplate.query(LEASE, (rs, rowNum) -> rs.getInt(1), args);
+        if (granted.isEmpty()) {
+            // First lease of this window for the key
+            jdbcTemplate.update(OPEN_WINDOW, name, dbKey, window, (window + 2) * leases.windowMillis);
+            granted = jdbcTemplate.query(LEASE, (rs, rowNum) -> rs.getInt(1), args);
+        }
+        return granted.isEmpty() ? 0 : granted.get(0);
+    }
+
+    private LimitLeases leases(Limit limit) {
+        LimitLeases leases = leasesByLimit.get(limit);
+        return leases != null ? leases : leasesByLimit.computeIfAbsent(limit, l -> new LimitLeases(l, leaseSize, this));
+    }
+
+    /**
+     * Window geometry and leases of one limit.
+     */
+    private static final class LimitLeases {
+        private final Limit limit;
+        private final long windowMillis;
+        private final int permitsPerWindow;
+        private final int leaseSize;
+        // Time for one permit to free up in the sliding window
+        private final long retryMillis;
+        private final ConcurrentMap<Object, Lease> leases = new ConcurrentHashMap<>();
+        private final KeyEvictor<Object, Lease> evictor;
+        private final Function<Object, Lease> newLease = key -> new Lease(String.valueOf(key));
+
+        private LimitLeases(Limit limit, int leaseSize, JdbcRateLimitStore store) {
+            this.limit = limit;
+            this.windowMillis = Math.max(1000, (limit.burst() * 60_000L + limit.perMinute() - 1) / limit.perMinute());
+            this.permitsPerWindow = (int) Math.max(limit.burst(),
+                    (limit.perMinute() * windowMillis + 59_999) / 60_000);
+            this.leaseSize = Math.min(leaseSize, permitsPerWindow);
+            this.retryMillis = Math.max(50, windowMillis / permitsPerWindow);
+            // Leftovers of an evicted lease are not returned; they expire with their window
+            this.evictor = new KeyEvictor<>(leases, store.maxKeys);
+        }
+
+        private Lease get(Object key, long now) {
+            Lease lease = leases.get(key);
+            if (lease != null) {
+                return lease;
+            }
+            lease = leases.computeIfAbsent(key, newLease);
+            evictor.onInsert(l -> now - l.lastUsed);
+            return lease;
+        }
+    }
+
+    /**
+     * Permits this node holds for one key: window index in the high 32 bits, remaining permits in
+     * the low 32 bits, so taking a permit is one CAS that also checks the lease is for this window.
+     * Window indexes of one second or longer fit in 32 bits until 2106.
+     */
+    private static final class Lease {
+        private static final long WINDOW_MASK = 0xFFFF_FFFFL;
+
+        private final String dbKey;
+        private final AtomicLong state = new AtomicLong();
+        // Not synchronized: renewing a lease waits on the database and would pin a virtual thread's carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long deniedUntil;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Lease(String dbKey) {
+            this.dbKey = dbKey;
+        }
+
+        boolean tryTake(long window) {
+            while (true) {
+                long current = state.get();
+                if ((current >>> 32) != (window & WINDOW_MASK) || (int) current <= 0) {
+                    return false;
+                }
+                if (state.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        int drain() {
+            while (true) {
+                long current = state.get();
+                int remaining = (int) current;
+                if (remaining <= 0 || state.compareAndSet(current, current & ~WINDOW_MASK)) {
+                    return Math.max(0, remaining);
+                }
+            }
+        }
+
+        void reset(long window, int permits) {
+            state.set(((window & WINDOW_MASK) << 32) | (permits & WINDOW_MASK));
+        }
+
+        long window() {
+            return state.get() >>> 32;
+        }
+
+        int remaining() {
+            return (int) state.get();
+        }
+    }
+
+    private record PermitReturn(LimitLeases leases, String dbKey, long window, int permits) {
+    }
+}
@@ -0,0 +1,387 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.service.StreamingSessionService.StreamingSession;
+import me.remontada.readify.util.KeyEvictor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Session store shared by all reader nodes through Postgres.
+ *
+ * <p>Sessions are kept in an {@code UNLOGGED} table (created by {@link SchemaMigrationRunner}): they
+ * are short lived and can be re-created from the signed token, so WAL writes and crash safety are
+ * not worth paying for on every open.
+ * Postgres truncates unlogged tables when it recovers from a crash (not on a clean restart), so
+ * after a database crash every live session is gone: readers are re-hydrated from their tokens
+ * on the next request, and a session whose read was already counted may be counted once more.
+ * Unlogged tables are also not replicated, so the store does not survive a failover to a standby.
+ * New sessions are queued and inserted in batches; a session is always visible on the node that
+ * issued it, and other nodes that miss a not-yet-flushed session fall back to re-hydration from
+ * the signed token, which inserts with {@code ON CONFLICT DO NOTHING}.</p>
+ *
+ * <p>The optional near-cache keeps recently used sessions on the node, so chunk requests after the
+ * first one are served without a database round trip. Entries are reloaded after
+ * {@code near-cache.ttl-seconds}.</p>
+ *
+ * <p>Authorization invalidations are shared through {@code streaming_authorization_epochs}: the
+ * node that revokes access bumps the epoch of the user or book in the revoking transaction, and
+ * every node polls the table and clears its snapshots when an epoch moves. Until a poll has
+ * succeeded recently, {@link #invalidationsCurrent()} is false and snapshots are not used. Rows
+ * are kept for a session TTL, the longest a snapshot they could concern can live; a node forgets
+ * a pruned row, so the same user or book bumped again later is reported as new.</p>
+ *
+ * <p>The read-count flag is always set with a conditional update in the database, so a session
+ * is counted once even when its requests are spread across nodes.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.streaming.session-store", havingValue = "jdbc")
+public class JdbcStreamingSessionStore implements StreamingSessionStore {
+
+    private static final String INSERT = """
+            INSERT INTO streaming_sessions
+                (token, user_id, book_id, issued_at, expires_at, watermark_text, watermark_signature)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (token) DO NOTHING""";
+
+    private static final String SELECT = """
+            SELECT token, user_id, book_id, issued_at, expires_at, watermark_text, watermark_signature,
+                   read_count_registered
+            FROM streaming_sessions WHERE token = ?""";
+
+    private static final String MARK_READ_COUNTED =
+            "UPDATE streaming_sessions SET read_count_registered = TRUE WHERE token = ? AND read_count_registered = FALSE";
+
+    private static final String SELECT_READ_COUNTED =
+            "SELECT read_count_registered FROM streaming_sessions WHERE token = ?";
+
+    private static final String DELETE = "DELETE FROM streaming_sessions WHERE token = ?";
+
+    private static final String DELETE_EXPIRED = """
+            DELETE FROM streaming_sessions WHERE token IN (
+                SELECT token FROM streaming_sessions WHERE expires_at < ? ORDER BY expires_at LIMIT ?
+            )""";
+
+    private static final String BUMP_EPOCH = """
+            INSERT INTO streaming_authorization_epochs (scope, target_id, epoch, updated_at)
+            VALUES (?, ?, 1, now())
+            ON CONFLICT (scope, target_id)
+            DO UPDATE SET epoch = streaming_authorization_epochs.epoch + 1, updated_at = now()""";
+
+    private static final String SELECT_EPOCHS =
+            "SELECT scope, target_id, epoch FROM streaming_authorization_epochs";
+
+    private static final String DELETE_OLD_EPOCHS =
+            "DELETE FROM streaming_authorization_epochs WHERE updated_at < ?";
+
+    private static final RowMapper<StreamingSession> SESSION_ROW_MAPPER = (rs, rowNum) -> {
+        StreamingSession session = new StreamingSession(
+                rs.getString("token"),
+                rs.getLong("user_id"),
+                rs.getLong("book_id"),
+                rs.getTimestamp("issued_at").toInstant(),
+                rs.getTimestamp("expires_at").toInstant(),
+                rs.getString("watermark_text"),
+                rs.getString("watermark_signature")
+        );
+        session.getReadCountRegistered().set(rs.getBoolean("read_count_registered"));
+        return session;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean nearCacheEnabled;
+    private final int nearCacheMaxEntries;
+    private final long nearCacheTtlNanos;
+    private final int writeBatchSize;
+    private final long invalidationPollMillis;
+    private final Duration epochRetention;
+
+    private final ConcurrentMap<String, CachedSession> nearCache = new ConcurrentHashMap<>();
+    private final KeyEvictor<String, CachedSession> nearCacheEvictor;
+    private final ConcurrentMap<String, StreamingSession> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<StreamingSession> pendingQueue = new ConcurrentLinkedQueue<>();
+    // Not synchronized: the batch insert would pin a virtual thread's carrier while it waits on the database
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Last epoch seen per user or book; filled by the first poll without notifying anyone.
+    // Holds exactly the rows of the last poll, so a pruned key that reappears always notifies.
+    private final ConcurrentMap<EpochKey, Long> seenEpochs = new ConcurrentHashMap<>();
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private volatile BiConsumer<InvalidationScope, Long> invalidationListener = (scope, id) -> { };
+    private volatile long lastPollNanos;
+    private volatile boolean polled;
+
+    @Autowired
+    public JdbcStreamingSessionStore(JdbcTemplate jdbcTemplate,
+                                     @Value("${app.streaming.session-store.near-cache.enabled:true}") boolean nearCacheEnabled,
+                                     @Value("${app.streaming.session-store.near-cache.max-entries:50000}") int nearCacheMaxEntries,
+                                     @Value("${app.streaming.session-store.near-cache.ttl-seconds:30}") long nearCacheTtlSeconds,
+                                     @Value("${app.streaming.session-store.write-batch-size:128}") int writeBatchSize,
+                                     @Value("${app.streaming.session-store.invalidation-poll-ms:500}") long invalidationPollMillis,
+                                     @Value(StreamingSessionService.SESSION_TTL_SECONDS) long sessionTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nearCacheEnabled = nearCacheEnabled;
+        this.nearCacheMaxEntries = Math.max(1, nearCacheMaxEntries);
+        this.nearCacheTtlNanos = Duration.ofSeconds(Math.max(1, nearCacheTtlSeconds)).toNanos();
+        this.nearCacheEvictor = new KeyEvictor<>(nearCache, this.nearCacheMaxEntries);
+        this.writeBatchSize = Math.max(1, writeBatchSize);
+        this.invalidationPollMillis = Math.max(1, invalidationPollMillis);
+        this.epochRetention = StreamingSessionService.sessionTtl(sessionTtlSeconds).plusMinutes(1);
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("JDBC streaming session store initialized: nearCache={}, maxEntries={}, batchSize={}, invalidationPollMs={}",
+                nearCacheEnabled, nearCacheMaxEntries, writeBatchSize, invalidationPollMillis);
+    }
+
+    @Override
+    public Optional<StreamingSession> find(String token) {
+        CachedSession cached = nearCache.get(token);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < nearCacheTtlNanos) {
+            return Optional.of(cached.session());
+        }
+
+        StreamingSession unflushed = pending.get(token);
+        if (unflushed != null) {
+            return Optional.of(unflushed);
+        }
+
+        List<StreamingSession> rows = jdbcTemplate.query(SELECT, SESSION_ROW_MAPPER, token);
+        if (rows.isEmpty()) {
+            nearCache.remove(token);
+            return Optional.empty();
+        }
+
+        StreamingSession loaded = rows.get(0);
+        cache(loaded);
+        return Optional.of(loaded);
+    }
+
+    @Override
+    public void save(StreamingSession session) {
+        pending.put(session.getToken(), session);
+        pendingQueue.add(session);
+        cache(session);
+
+        if (pending.size() >= writeBatchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public StreamingSession saveIfAbsent(StreamingSession session) {
+        int inserted = jdbcTemplate.update(INSERT, insertArguments(session));
+        if (inserted == 1) {
+            cache(session);
+            return session;
+        }
+
+        // Another node stored it first; use the stored row so the read-count flag is shared
+        return find(session.getToken()).orElse(session);
+    }
+
+    @Override
+    public boolean remove(StreamingSession session) {
+        String token = session.getToken();
+        nearCache.remove(token);
+        pending.remove(token);
+        return jdbcTemplate.update(DELETE, token) > 0;
+    }
+
+    @Override
+    public boolean markReadCountRegistered(StreamingSession session) {
+        if (session.getReadCountRegistered().get()) {
+            return false;
+        }
+
+        // The row must exist before it can be flagged
+        if (pending.containsKey(session.getToken())) {
+            flush();
+        }
+
+        if (jdbcTemplate.update(MARK_READ_COUNTED, session.getToken()) == 1) {
+            session.getReadCountRegistered().set(true);
+            return true;
+        }
+
+        // Flagged by another node, or the row is not stored yet (failed flush); only the first is final
+        List<Boolean> flagged = jdbcTemplate.queryForList(SELECT_READ_COUNTED, Boolean.class, session.getToken());
+        if (!flagged.isEmpty() && Boolean.TRUE.equals(flagged.get(0))) {
+            session.getReadCountRegistered().set(true);
+        }
+        return false;
+    }
+
+    /**
+     * Delete expired rows and drop near-cache entries past their TTL. The near-cache is swept
+     * from where the previous sweep stopped, at most {@code limit} entries per call; expired
+     * sessions it still holds are rejected by the caller and removed when they are looked up.
+     */
+    @Override
+    public int removeExpired(Instant now, int limit) {
+        long nowNanos = System.nanoTime();
+        nearCacheEvictor.removeOlderThan(cached -> nowNanos - cached.loadedAt(), nearCacheTtlNanos, limit);
+        // Every node sweeps; deleting a row that another node already deleted is harmless
+        return jdbcTemplate.update(DELETE_EXPIRED, Timestamp.from(now), limit);
+    }
+
+    @Override
+    public void publishInvalidation(InvalidationScope scope, Long id) {
+        jdbcTemplate.update(BUMP_EPOCH, scope.name(), id);
+    }
+
+    @Override
+    public void onRemoteInvalidation(BiConsumer<InvalidationScope, Long> listener) {
+        this.invalidationListener = listener;
+    }
+
+    @Override
+    public boolean invalidationsCurrent() {
+        long maxAgeNanos = Duration.ofMillis(Math.max(2000, 4 * invalidationPollMillis)).toNanos();
+        return polled && System.nanoTime() - lastPollNanos < maxAgeNanos;
+    }
+
+    /**
+     * Read every epoch and report the ones that moved since the last poll. The node that bumped an
+     * epoch is told as well, which only clears snapshots it already cleared.
+     */
+    @Scheduled(fixedDelayString = "${app.streaming.session-store.invalidation-poll-ms:500}")
+    public void pollInvalidations() {
+        if (!pollLock.tryLock()) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            Map<EpochKey, Long> epochs = new HashMap<>();
+            jdbcTemplate.query(SELECT_EPOCHS, rs -> {
+                epochs.put(new EpochKey(InvalidationScope.valueOf(rs.getString("scope")), rs.getLong("target_id")),
+                        rs.getLong("epoch"));
+            });
+            applyEpochs(epochs, polled);
+            lastPollNanos = started;
+            polled = true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll streaming authorization invalidations: {}", e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Report the keys whose epoch moved or that were not in the previous poll, then forget keys
+     * that are gone from the table: a pruned key that is bumped again starts over at 1 and must
+     * not be mistaken for the epoch seen before the prune.
+     */
+    void applyEpochs(Map<EpochKey, Long> epochs, boolean notify) {
+        epochs.forEach((key, epoch) -> {
+            Long previous = seenEpochs.put(key, epoch);
+            if (notify && (previous == null || previous.longValue() != epoch)) {
+                invalidationListener.accept(key.scope(), key.targetId());
+            }
+        });
+        seenEpochs.keySet().retainAll(epochs.keySet());
+    }
+
+    /**
+     * Drop epochs that no live snapshot can depend on any more. Nodes forget a dropped key on
+     * their next poll, so bumping it again later notifies them as a new key.
+     */
+    @Scheduled(fixedDelayString = "${app.streaming.session-store.epoch-prune-interval-ms:60000}")
+    public void pruneEpochs() {
+        try {
+            Timestamp cutoff = Timestamp.from(Instant.now().minus(epochRetention));
+            int removed = jdbcTemplate.update(DELETE_OLD_EPOCHS, cutoff);
+            if (removed > 0) {
+                log.debug("Removed {} old streaming authorization epochs", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to prune streaming authorization epochs: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public int localSize() {
+        return nearCache.size();
+    }
+
+    /**
+     * Insert queued sessions in one batch. Runs when the batch is full, before a queued session is
+     * flagged as counted, and on a short schedule so other nodes see new sessions quickly.
+     */
+    @Scheduled(fixedDelayString = "${app.streaming.session-store.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<StreamingSession> batch = new ArrayList<>();
+            StreamingSession next;
+            while ((next = pendingQueue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(INSERT, batch.stream().map(this::insertArguments).toList());
+            } catch (RuntimeException e) {
+                // Keep the sessions queued; they stay usable on this node meanwhile
+                pendingQueue.addAll(batch);
+                log.warn("Failed to store {} streaming sessions: {}", batch.size(), e.getMessage());
+                return;
+            }
+            batch.forEach(session -> pending.remove(session.getToken(), session));
+            log.trace("Stored {} streaming sessions", batch.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void cache(StreamingSession session) {
+        if (!nearCacheEnabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        nearCache.put(session.getToken(), new CachedSession(session, now));
+        nearCacheEvictor.onInsert(cached -> now - cached.loadedAt());
+    }
+
+    private Object[] insertArguments(StreamingSession session) {
+        return new Object[]{
+                session.getToken(),
+                session.getUserId(),
+                session.getBookId(),
+                Timestamp.from(session.getIssuedAt()),
+                Timestamp.from(session.getExpiresAt()),
+                session.getWatermarkText(),
+                session.getWatermarkSignature()
+        };
+    }
+
+    private record CachedSession(StreamingSession session, long loadedAt) {
+    }
+
+    record EpochKey(InvalidationScope scope, long targetId) {
+    }
+}
@@ -1,6 +1,7 @@
 package me.remontada.readify.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.FileSystemResource;
@@ -53,6 +54,19 @@ public class LocalFileStorageService implements FileStorageService {
     private Path coversPath;
     private Path promoPath;
 
+    private final PdfRangeStreamer pdfRangeStreamer;
+    private final PdfStructureIndexService pdfStructureIndexService;
+    private final StreamingSessionService streamingSessionService;
+
+    @Autowired
+    public LocalFileStorageService(PdfRangeStreamer pdfRangeStreamer,
+                                   PdfStructureIndexService pdfStructureIndexService,
+                                   StreamingSessionService streamingSessionService) {
+        this.pdfRangeStreamer = pdfRangeStreamer;
+        this.pdfStructureIndexService = pdfStructureIndexService;
+        this.streamingSessionService = streamingSessionService;
+    }
+
     /**
      * @PostConstruct - izvršava se nakon dependency injection
      * Kreira potrebne direktorijume ako ne postoje
@@ -91,9 +105,22 @@ public class LocalFileStorageService implements FileStorageService {
         String fileName = "book-" + bookId + ".pdf";
         Path targetLocation = this.booksPath.resolve(fileName);
 
+        // Zatvaramo deljeni kanal i mapirane segmente stare verzije fajla
+        pdfRangeStreamer.evict(targetLocation);
+        // Otvorene sesije čitanja pamte putanju i veličinu fajla
+        streamingSessionService.invalidateBookAuthorizations(bookId);
+
         // Kopiranje fajla
         Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
 
+        // Indeks strukture PDF-a se pravi jednom, pri upload-u, i čuva pored fajla
+        try {
+            pdfStructureIndexService.buildAndStore(targetLocation);
+        } catch (IOException e) {
+            pdfStructureIndexService.evict(targetLocation);
+            log.warn("Failed to index PDF {}, index will be built on first metadata request: {}",
+                    fileName, e.getMessage());
+        }
 
         // Vraćamo relativnu putanju za čuvanje u bazi
         return booksDir + "/" + fileName;
@@ -170,7 +197,10 @@ public class LocalFileStorageService implements FileStorageService {
         // Brisanje PDF-a
         String pdfName = "book-" + bookId + ".pdf";
         Path pdfPath = this.booksPath.resolve(pdfName);
+        pdfRangeStreamer.evict(pdfPath);
+        streamingSessionService.invalidateBookAuthorizations(bookId);
         Files.deleteIfExists(pdfPath);
+        pdfStructureIndexService.delete(pdfPath);
 
         // Brisanje cover-a (sve ekstenzije)
         String[] extensions = {".jpg", ".jpeg", ".png"};
@@ -280,6 +310,7 @@ public class LocalFileStorageService implements FileStorageService {
         Path targetLocation = this.promoPath.resolve(fileName);
 
         // Kopiranje fajla
+        pdfRangeStreamer.evict(targetLocation);
         Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
 
         log.info("Saved promo chapter: {} (size: {} bytes)", fileName, file.getSize());
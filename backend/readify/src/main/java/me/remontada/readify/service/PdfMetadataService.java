@@ -30,4 +30,29 @@ public interface PdfMetadataService {
      * @throws IOException if PDF cannot be read or parsed
      */
     PdfMetadataDto extractMetadata(Resource resource, Book book, User user) throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * Extract metadata, optionally without embedding the initial chunk
+     *
+     * When {@code inlineInitialChunk} is false the DTO only describes the
+     * initial chunk (sizes and URL) and the bytes are fetched separately
+     * from the binary initial-chunk endpoint.
+     */
+    PdfMetadataDto extractMetadata(Resource resource, Book book, User user, boolean inlineInitialChunk) throws IOException;
+
+    /**
+     * Layout of the initial chunk (header + footer) for a file of the given size
+     */
+    InitialChunkLayout describeInitialChunk(long totalSize);
+
+    /**
+     * Header and footer byte ranges that make up the initial chunk.
+     * The chunk is the header bytes immediately followed by the footer bytes.
+     */
+    record InitialChunkLayout(long totalSize, long headerLength, long footerOffset, long footerLength) {
+
+        public long size() {
+            return headerLength + footerLength;
+        }
+    }
+}
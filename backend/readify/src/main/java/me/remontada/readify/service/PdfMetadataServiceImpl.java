@@ -2,6 +2,7 @@ package me.remontada.readify.service;
 
 import lombok.extern.slf4j.Slf4j;
 import me.remontada.readify.dto.PdfMetadataDto;
+import me.remontada.readify.dto.PdfStructureIndex;
 import me.remontada.readify.model.Book;
 import me.remontada.readify.model.User;
 import me.remontada.readify.service.StreamingSessionService.StreamingSessionDescriptor;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 /**
@@ -22,12 +24,18 @@ import java.util.Base64;
  * - PDF Footer (last 200KB): Contains XRef table, Root object, Trailer
  *
  * This ensures PDF.js can parse the document without loading the entire file.
+ *
+ * Structural facts (version, linearization, page count) come from the
+ * precomputed PdfStructureIndex, and the initial chunk is read in a single pass
+ * through the shared segment cache instead of opening the file twice.
  */
 @Slf4j
 @Service
 public class PdfMetadataServiceImpl implements PdfMetadataService {
 
     private final StreamingSessionService streamingSessionService;
+    private final PdfStructureIndexService pdfStructureIndexService;
+    private final PdfSegmentCache pdfSegmentCache;
 
     // Size constants for optimal PDF structure extraction
     private static final long HEADER_SIZE = 10240;      // 10KB - PDF header
@@ -35,12 +43,22 @@ public class PdfMetadataServiceImpl implements PdfMetadataService {
     private static final long RECOMMENDED_CHUNK = 5242880; // 5MB per chunk
 
     @Autowired
-    public PdfMetadataServiceImpl(StreamingSessionService streamingSessionService) {
+    public PdfMetadataServiceImpl(StreamingSessionService streamingSessionService,
+                                  PdfStructureIndexService pdfStructureIndexService,
+                                  PdfSegmentCache pdfSegmentCache) {
         this.streamingSessionService = streamingSessionService;
+        this.pdfStructureIndexService = pdfStructureIndexService;
+        this.pdfSegmentCache = pdfSegmentCache;
     }
 
     @Override
     public PdfMetadataDto extractMetadata(Resource resource, Book book, User user) throws IOException {
+        return extractMetadata(resource, book, user, true);
+    }
+
+    @Override
+    public PdfMetadataDto extractMetadata(Resource resource, Book book, User user,
+                                          boolean inlineInitialChunk) throws IOException {
         long totalSize = resource.contentLength();
 
         log.info("Extracting PDF metadata for book {} ({}), total size: {} bytes",
@@ -49,33 +67,69 @@ public class PdfMetadataServiceImpl implements PdfMetadataService {
         // Create streaming session for this user-book pair
         StreamingSessionDescriptor session = streamingSessionService.openSession(user, book);
 
-        // Extract PDF version from header
-        String pdfVersion = extractPdfVersion(resource);
+        PdfStructureIndex index = loadIndex(resource);
+        InitialChunkLayout layout = describeInitialChunk(totalSize);
 
-        // This allows PDF.js to parse document structure immediately
-        byte[] initialChunk = createInitialChunk(resource, totalSize);
-        String initialChunkBase64 = Base64.getEncoder().encodeToString(initialChunk);
-
-        log.debug("Created initial chunk for book {}: {} bytes (header + footer)",
-                  book.getId(), initialChunk.length);
-
-        return PdfMetadataDto.builder()
+        PdfMetadataDto.PdfMetadataDtoBuilder builder = PdfMetadataDto.builder()
                 .totalSize(totalSize)
-                .initialChunk(initialChunkBase64)
-                .initialChunkSize((long) initialChunk.length)
+                .initialChunkSize(layout.size())
+                .initialChunkUrl("/api/reader/" + book.getId() + "/initial-chunk")
+                .headerLength(layout.headerLength())
+                .footerOffset(layout.footerOffset())
                 .sessionToken(session.token())
                 .watermarkSignature(session.watermarkSignature())
                 .issuedAt(session.issuedAt().toString())
                 .recommendedChunkSize(RECOMMENDED_CHUNK)
                 .title(book.getTitle())
-                .pdfVersion(pdfVersion)
-                .build();
-    }
+                .linearized(index != null ? index.getLinearized() : null)
+                .pageCount(index != null ? index.getPageCount() : null);
+
+        String pdfVersion = index != null ? index.getPdfVersion() : null;
 
+        if (inlineInitialChunk) {
+            // Legacy clients: header + footer embedded as Base64
+            byte[] initialChunk = createInitialChunk(pdfSegmentCache.asResource(resource), layout);
+            builder.initialChunk(Base64.getEncoder().encodeToString(initialChunk));
 
-    private byte[] createInitialChunk(Resource resource, long totalSize) throws IOException {
+            // PDF version comes from the index, or from the header bytes we already read
+            if (pdfVersion == null) {
+                pdfVersion = extractPdfVersion(initialChunk);
+            }
+
+            log.debug("Created inline initial chunk for book {}: {} bytes (header + footer)",
+                      book.getId(), initialChunk.length);
+        } else if (pdfVersion == null) {
+            pdfVersion = extractPdfVersion(readHeader(pdfSegmentCache.asResource(resource)));
+        }
+
+        return builder.pdfVersion(pdfVersion).build();
+    }
+
+    @Override
+    public InitialChunkLayout describeInitialChunk(long totalSize) {
         long headerSize = Math.min(HEADER_SIZE, totalSize);
         long footerSize = Math.min(FOOTER_SIZE, totalSize - headerSize);
+        return new InitialChunkLayout(totalSize, headerSize, totalSize - footerSize, footerSize);
+    }
+
+
+    private PdfStructureIndex loadIndex(Resource resource) {
+        if (!resource.isFile()) {
+            return null;
+        }
+        try {
+            return pdfStructureIndexService.findIndex(resource.getFile().toPath()).orElse(null);
+        } catch (IOException e) {
+            log.warn("PDF structure index unavailable for {}: {}", resource.getDescription(), e.getMessage());
+            return null;
+        }
+    }
+
+
+    private byte[] createInitialChunk(Resource resource, InitialChunkLayout layout) throws IOException {
+        long headerSize = layout.headerLength();
+        long footerSize = layout.footerLength();
+        long totalSize = layout.totalSize();
 
         byte[] header = new byte[(int) headerSize];
         byte[] footer = new byte[(int) footerSize];
@@ -114,20 +168,21 @@ public class PdfMetadataServiceImpl implements PdfMetadataService {
     }
 
 
-    private String extractPdfVersion(Resource resource) throws IOException {
-        byte[] headerBytes = new byte[16]; // "%PDF-1.7" is typically within first 16 bytes
-
+    private byte[] readHeader(Resource resource) throws IOException {
         try (InputStream is = resource.getInputStream()) {
-            int read = is.read(headerBytes);
-            if (read > 0) {
-                String header = new String(headerBytes, 0, read);
-                if (header.startsWith("%PDF-")) {
-                    String version = header.substring(5, Math.min(8, header.length())).trim();
-                    return version;
-                }
-            }
+            return is.readNBytes(16);
+        }
+    }
+
+
+    private String extractPdfVersion(byte[] initialChunk) {
+        // "%PDF-1.7" is typically within first 16 bytes
+        int length = Math.min(16, initialChunk.length);
+        String header = new String(initialChunk, 0, length, StandardCharsets.ISO_8859_1);
+        if (header.startsWith("%PDF-")) {
+            return header.substring(5, Math.min(8, header.length())).trim();
         }
 
         return "unknown";
     }
-}
\ No newline at end of file
+}
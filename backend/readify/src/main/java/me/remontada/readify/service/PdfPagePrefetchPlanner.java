@@ -0,0 +1,223 @@
+package me.remontada.readify.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.dto.PageRangePlanDto;
+import me.remontada.readify.dto.PageRangePlanDto.PageSpan;
+import me.remontada.readify.dto.PdfStructureIndex;
+import me.remontada.readify.dto.PdfStructureIndex.PageObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps page numbers to byte spans using the {@link PdfStructureIndex} of a book.
+ *
+ * <p>For linearized files whose page objects are all visible in the index, the spans are exact:
+ * page 1 is {@code [0, /E)}, and every following page runs from its page object to the next known
+ * object boundary (next page, cross-reference section or end of file). Linearized files keep each
+ * page's private objects right after its page object, so one range per page is enough; resources
+ * shared by several pages live in the shared-objects section and are fetched by PDF.js on demand.</p>
+ *
+ * <p>Other files get no plan. Their page order in the file says nothing about page numbers and a
+ * page's objects are spread over the file, so any span would be a guess; the reader then fetches
+ * ranges on demand as PDF.js asks for them. The same applies to linearized files whose page
+ * objects sit in object streams, which the index does not see.</p>
+ */
+@Slf4j
+@Service
+public class PdfPagePrefetchPlanner {
+
+    private final PdfStructureIndexService pdfStructureIndexService;
+    private final int prefetchPages;
+    private final long maxSpanBytes;
+    private final ConcurrentMap<Path, CachedLayout> layouts = new ConcurrentHashMap<>();
+
+    public PdfPagePrefetchPlanner(PdfStructureIndexService pdfStructureIndexService,
+                                  @Value("${app.streaming.prefetch.pages:2}") int prefetchPages,
+                                  @Value("${app.streaming.prefetch.max-span-bytes:8388608}") long maxSpanBytes) {
+        if (maxSpanBytes <= 0) {
+            throw new IllegalArgumentException("Prefetch span cap must be greater than zero");
+        }
+        this.pdfStructureIndexService = pdfStructureIndexService;
+        this.prefetchPages = Math.max(0, prefetchPages);
+        this.maxSpanBytes = maxSpanBytes;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * Plan the byte span for pages {@code fromPage..toPage} (1-based, inclusive) plus the spans of
+     * the pages that should be prefetched next. The planned span never exceeds the configured cap;
+     * when it would, the plan stops at the last page that fits.
+     *
+     * @return empty when the book has no exact page layout
+     * @throws IllegalArgumentException when the page range is invalid for this book
+     * @throws IllegalStateException while the structure index of the book is still being built
+     */
+    public Optional<PageRangePlanDto> plan(Long bookId, Path pdf, int fromPage, int toPage) throws IOException {
+        PageLayout layout = layoutFor(pdf);
+        if (layout == null) {
+            return Optional.empty();
+        }
+        int pageCount = layout.pageCount();
+
+        if (fromPage < 1 || fromPage > toPage || fromPage > pageCount) {
+            throw new IllegalArgumentException("Invalid page range " + fromPage + "-" + toPage
+                    + " for document with " + pageCount + " pages");
+        }
+
+        long start = layout.start(fromPage);
+        long firstEnd = Math.min(layout.end(fromPage), start + maxSpanBytes - 1);
+
+        List<PageSpan> spans = new ArrayList<>();
+        spans.add(new PageSpan(fromPage, start, firstEnd));
+
+        int lastPage = fromPage;
+        long end = firstEnd;
+        int requestedLast = Math.min(toPage, pageCount);
+        for (int page = fromPage + 1; page <= requestedLast; page++) {
+            long pageEnd = layout.end(page);
+            if (pageEnd - start + 1 > maxSpanBytes) {
+                break;
+            }
+            spans.add(new PageSpan(page, layout.start(page), pageEnd));
+            lastPage = page;
+            end = pageEnd;
+        }
+
+        List<PageSpan> prefetch = new ArrayList<>();
+        for (int page = lastPage + 1; page <= Math.min(pageCount, lastPage + prefetchPages); page++) {
+            prefetch.add(new PageSpan(page, layout.start(page), layout.end(page)));
+        }
+
+        log.trace("Planned pages {}-{} of book {} as bytes {}-{}", fromPage, lastPage, bookId, start, end);
+
+        return Optional.of(PageRangePlanDto.builder()
+                .bookId(bookId)
+                .fromPage(fromPage)
+                .toPage(lastPage)
+                .pageCount(pageCount)
+                .totalSize(layout.totalSize())
+                .start(start)
+                .end(end)
+                .length(end - start + 1)
+                .range("bytes=" + start + "-" + end)
+                .pages(spans)
+                .prefetch(prefetch)
+                .build());
+    }
+
+    private PageLayout layoutFor(Path pdf) throws IOException {
+        Path key = pdf.toAbsolutePath().normalize();
+        PdfStructureIndex index;
+        try {
+            index = pdfStructureIndexService.findIndex(key).orElse(null);
+        } catch (IOException e) {
+            layouts.remove(key);
+            throw e;
+        }
+        if (index == null) {
+            layouts.remove(key);
+            throw new IllegalStateException("Page layout for this document is still being prepared");
+        }
+
+        // A replaced PDF gets a new index instance, which invalidates the cached layout
+        CachedLayout cached = layouts.get(key);
+        if (cached != null && cached.index() == index) {
+            return cached.layout();
+        }
+
+        PageLayout layout = buildLayout(index);
+        layouts.put(key, new CachedLayout(index, layout));
+        return layout;
+    }
+
+    /**
+     * @return null when the file is not linearized or its page objects are not all in the index
+     */
+    private PageLayout buildLayout(PdfStructureIndex index) {
+        long size = index.getFileSize();
+        List<PageObject> pages = index.getPages() != null ? index.getPages() : List.of();
+        int pageCount = index.getPageCount() != null ? index.getPageCount() : pages.size();
+
+        if (pageCount <= 0 || size <= 0) {
+            throw new IllegalArgumentException("Page layout is not available for this document");
+        }
+
+        long firstPageEnd = index.getFirstPageEndOffset() != null ? index.getFirstPageEndOffset() : -1;
+        if (!Boolean.TRUE.equals(index.getLinearized()) || pages.size() != pageCount
+                || firstPageEnd <= 0 || firstPageEnd > size) {
+            return null;
+        }
+
+        List<PageObject> ordered = new ArrayList<>(pages);
+        ordered.sort(Comparator.comparingLong(PageObject::getOffset));
+
+        // Exactly one page object (page 1) must live in the first-page section
+        if (ordered.get(0).getOffset() >= firstPageEnd
+                || (ordered.size() > 1 && ordered.get(1).getOffset() < firstPageEnd)) {
+            return null;
+        }
+
+        TreeSet<Long> boundaries = new TreeSet<>();
+        boundaries.add(firstPageEnd);
+        boundaries.add(size);
+        addBoundary(boundaries, index.getXrefOffset());
+        addBoundary(boundaries, index.getTrailerOffset());
+        ordered.forEach(page -> boundaries.add(page.getOffset()));
+
+        long[] starts = new long[pageCount];
+        long[] ends = new long[pageCount];
+        starts[0] = 0;
+        ends[0] = firstPageEnd - 1;
+        for (int i = 1; i < pageCount; i++) {
+            long start = ordered.get(i).getOffset();
+            Long next = boundaries.higher(start);
+            starts[i] = start;
+            ends[i] = (next != null ? next : size) - 1;
+        }
+
+        return new PageLayout(starts, ends, size);
+    }
+
+    private void addBoundary(TreeSet<Long> boundaries, Long offset) {
+        if (offset != null && offset > 0) {
+            boundaries.add(offset);
+        }
+    }
+
+    /**
+     * @param layout null when the book has no exact layout
+     */
+    private record CachedLayout(PdfStructureIndex index, PageLayout layout) {
+    }
+
+    /**
+     * Per-page inclusive byte spans, indexed by page number - 1.
+     */
+    private record PageLayout(long[] starts, long[] ends, long totalSize) {
+
+        int pageCount() {
+            return starts.length;
+        }
+
+        long start(int page) {
+            return starts[page - 1];
+        }
+
+        long end(int page) {
+            return ends[page - 1];
+        }
+    }
+}
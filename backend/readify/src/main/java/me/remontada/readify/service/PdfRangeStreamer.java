@@ -0,0 +1,497 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Range streaming engine that moves PDF bytes from the page cache to the client socket
+ * without copying them through a heap buffer.
+ *
+ * <p>Three strategies are used, in order of preference:</p>
+ * <ol>
+ *     <li>The shared {@link PdfSegmentCache}, when enabled: hot titles are served from
+ *     memory-mapped segments shared by every session, for single ranges and multipart bodies
+ *     alike, instead of each request reading the file on its own.</li>
+ *     <li>Container sendfile, with the cache disabled: when Tomcat advertises sendfile support a
+ *     single range is handed over through the {@code org.apache.tomcat.sendfile.*} request
+ *     attributes and the kernel copies the bytes straight to the socket once the controller
+ *     returns.</li>
+ *     <li>Positional {@link FileChannel#transferTo} from a channel shared by every request for the
+ *     same file. Positional reads do not touch the channel position, so one open channel per book
+ *     serves all concurrent readers.</li>
+ * </ol>
+ *
+ * <p>With {@code app.streaming.async-io.enabled} a single range is written through a Servlet
+ * {@link WriteListener} instead of a blocking copy: the request thread returns immediately and
+ * bytes are read from the segment cache (or the shared channel when the cache is disabled) only
+ * when the connection can accept them, so slow clients do not hold a request thread. Sendfile
+ * still takes precedence over the channel, since the container already completes it without a
+ * request thread. Multipart bodies are always written blocking. On Java 21 ({@code -Pjava21})
+ * the same effect is achieved for all strategies with {@code spring.threads.virtual.enabled},
+ * which runs every request on a virtual thread.</p>
+ *
+ * <p>Shared channels are reference counted: a channel replaced because the file changed on disk,
+ * or evicted because the book was deleted, is closed only after the last in-flight transfer has
+ * released it.</p>
+ */
+@Slf4j
+@Service
+public class PdfRangeStreamer {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final int FALLBACK_BUFFER_SIZE = 8192;
+    private static final int ASYNC_BUFFER_SIZE = 65536;
+
+    private final boolean sendfileEnabled;
+    private final boolean asyncIoEnabled;
+    private final long asyncTimeoutMillis;
+    private final PdfSegmentCache segmentCache;
+    private final ResponseChannelFactory responseChannels;
+    private final ConcurrentMap<Path, SharedChannel> channels = new ConcurrentHashMap<>();
+
+    public PdfRangeStreamer(@Value("${app.streaming.sendfile.enabled:true}") boolean sendfileEnabled,
+                            @Value("${app.streaming.async-io.enabled:false}") boolean asyncIoEnabled,
+                            @Value("${app.streaming.async-io.timeout-ms:60000}") long asyncTimeoutMillis,
+                            PdfSegmentCache segmentCache,
+                            Optional<ResponseChannelFactory> responseChannels) {
+        this.sendfileEnabled = sendfileEnabled;
+        this.asyncIoEnabled = asyncIoEnabled;
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+        this.segmentCache = segmentCache;
+        this.responseChannels = responseChannels.orElse(ResponseChannelFactory.DEFAULT);
+    }
+
+    /**
+     * Stream the inclusive byte range {@code start..end} of the resource into the response body.
+     * Status and headers (including Content-Length) must already be set by the caller.
+     *
+     * @return number of bytes handed over to the container
+     */
+    public long stream(Resource resource, long start, long end,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = end - start + 1;
+        if (length <= 0) {
+            return 0;
+        }
+
+        Path path = resolvePath(resource);
+        boolean async = path != null && asyncIoEnabled && request.isAsyncSupported();
+        if (path != null && segmentCache.isEnabled()) {
+            if (async) {
+                startAsyncTransfer(path, start, length, request, response,
+                        (target, position) -> segmentCache.read(path, position, target), () -> { });
+                return length;
+            }
+            return copy(resource, start, end, response.getOutputStream());
+        }
+
+        if (path != null && sendfileEnabled && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            log.trace("Delegated range {}-{} of {} to container sendfile", start, end, path);
+            return length;
+        }
+
+        if (async) {
+            SharedChannel shared = acquire(path);
+            startAsyncTransfer(path, start, length, request, response, shared.channel::read, shared::release);
+            return length;
+        }
+
+        return copy(resource, start, end, response.getOutputStream());
+    }
+
+    /**
+     * Write several regions as a {@code multipart/byteranges} body (RFC 7233, appendix A).
+     * Sets status 206, Content-Type with the boundary and the exact Content-Length; every part is
+     * copied straight from the segment cache or shared channel.
+     *
+     * @return number of payload bytes written (excluding part headers)
+     */
+    public long streamMultipart(List<ResourceRegion> regions, String contentType,
+                                HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        long contentLength = regions.get(0).getResource().contentLength();
+
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long bodyLength = 0;
+        for (ResourceRegion region : regions) {
+            long start = region.getPosition();
+            long end = start + region.getCount() - 1;
+            String header = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + start + "-" + end + "/" + contentLength + "\r\n\r\n";
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            bodyLength += headerBytes.length + region.getCount();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        bodyLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(bodyLength);
+
+        OutputStream out = response.getOutputStream();
+        long written = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            ResourceRegion region = regions.get(i);
+            out.write(partHeaders.get(i));
+            written += copy(region.getResource(), region.getPosition(),
+                    region.getPosition() + region.getCount() - 1, out);
+        }
+        out.write(closing);
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Write the inclusive byte range {@code start..end} of the resource into an arbitrary stream,
+     * e.g. when several ranges are concatenated into one response body. Uses the segment cache
+     * or the shared channel; container sendfile is not available here.
+     *
+     * @return number of bytes written
+     */
+    public long copy(Resource resource, long start, long end, OutputStream out) throws IOException {
+        long length = end - start + 1;
+        if (length <= 0) {
+            return 0;
+        }
+
+        Path path = resolvePath(resource);
+        if (path == null) {
+            return copyFromStream(resource, start, length, out);
+        }
+
+        if (segmentCache.isEnabled()) {
+            long written = segmentCache.write(path, start, length, responseChannels.open(out));
+            out.flush();
+            return written;
+        }
+
+        return transfer(path, start, length, out);
+    }
+
+    /**
+     * Copy {@code length} bytes starting at {@code position} into the supplied stream using the
+     * shared channel for the file.
+     */
+    public long transfer(Path path, long position, long length, OutputStream out) throws IOException {
+        SharedChannel shared = acquire(path);
+        try {
+            WritableByteChannel target = responseChannels.open(out);
+            long transferred = 0;
+            while (transferred < length) {
+                long written = shared.channel.transferTo(position + transferred, length - transferred, target);
+                if (written <= 0) {
+                    break; // end of file
+                }
+                transferred += written;
+            }
+            out.flush();
+            return transferred;
+        } finally {
+            shared.release();
+        }
+    }
+
+    /**
+     * Close the shared channel and unmap cached segments for a file, e.g. after the file has
+     * been deleted or replaced.
+     */
+    public void evict(Path path) {
+        if (path == null) {
+            return;
+        }
+        segmentCache.invalidate(path);
+        SharedChannel removed = channels.remove(path.toAbsolutePath().normalize());
+        if (removed != null) {
+            removed.release();
+            log.debug("Evicted shared channel for {}", path);
+        }
+    }
+
+    public int getOpenChannelCount() {
+        return channels.size();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        channels.keySet().forEach(path -> {
+            SharedChannel removed = channels.remove(path);
+            if (removed != null) {
+                removed.release();
+            }
+        });
+    }
+
+    private SharedChannel acquire(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            evict(key);
+            throw e;
+        }
+
+        while (true) {
+            SharedChannel current = channels.get(key);
+            if (current != null && current.matches(attributes) && current.retain()) {
+                return current;
+            }
+
+            SharedChannel fresh = SharedChannel.open(key, attributes);
+            boolean installed = current == null
+                    ? channels.putIfAbsent(key, fresh) == null
+                    : channels.replace(key, current, fresh);
+
+            if (installed) {
+                if (current != null) {
+                    current.release();
+                    log.debug("Replaced stale shared channel for {}", key);
+                }
+                fresh.retain();
+                return fresh;
+            }
+
+            // Another request installed a channel first, use that one
+            fresh.release();
+        }
+    }
+
+    /**
+     * Hand the range over to a {@link AsyncRangeWriter}; {@code release} runs once the async
+     * request is over, or right away if it could not be started.
+     */
+    private void startAsyncTransfer(Path path, long position, long length,
+                                    HttpServletRequest request, HttpServletResponse response,
+                                    RangeSource source, Runnable release) throws IOException {
+        try {
+            AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.setTimeout(asyncTimeoutMillis);
+            AsyncRangeWriter writer = new AsyncRangeWriter(asyncContext, response.getOutputStream(),
+                    source, release, position, length);
+            asyncContext.addListener(writer);
+            response.getOutputStream().setWriteListener(writer);
+            log.trace("Streaming range {}-{} of {} with non-blocking writes", position, position + length - 1, path);
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    private Path resolvePath(Resource resource) {
+        if (!resource.isFile()) {
+            return null;
+        }
+        try {
+            return resource.getFile().toPath().toAbsolutePath().normalize();
+        } catch (IOException e) {
+            log.debug("Resource {} is not backed by a file, using stream copy", resource.getDescription());
+            return null;
+        }
+    }
+
+    private long copyFromStream(Resource resource, long start, long length, OutputStream out) throws IOException {
+        try (InputStream inputStream = resource.getInputStream()) {
+            inputStream.skipNBytes(start);
+
+            byte[] buffer = new byte[FALLBACK_BUFFER_SIZE];
+            long totalCopied = 0;
+            while (totalCopied < length) {
+                int bytesToRead = (int) Math.min(buffer.length, length - totalCopied);
+                int bytesRead = inputStream.read(buffer, 0, bytesToRead);
+                if (bytesRead == -1) {
+                    break;
+                }
+                out.write(buffer, 0, bytesRead);
+                totalCopied += bytesRead;
+            }
+            out.flush();
+            return totalCopied;
+        }
+    }
+
+    /**
+     * Positional read of the file into a buffer; returns -1 or 0 at the end of the file.
+     */
+    @FunctionalInterface
+    private interface RangeSource {
+        int read(ByteBuffer target, long position) throws IOException;
+    }
+
+    /**
+     * Drains a range of the file into the response whenever the container reports that the
+     * connection can take more data. Keeps its source (e.g. a reference on the shared channel)
+     * until the async request completes, times out or fails.
+     */
+    private static final class AsyncRangeWriter implements WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final RangeSource source;
+        private final Runnable release;
+        private final ByteBuffer buffer = ByteBuffer.allocate(ASYNC_BUFFER_SIZE);
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private long position;
+        private long remaining;
+
+        private AsyncRangeWriter(AsyncContext asyncContext, ServletOutputStream out,
+                                 RangeSource source, Runnable release, long position, long length) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.source = source;
+            this.release = release;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                if (remaining <= 0) {
+                    complete();
+                    return;
+                }
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = source.read(buffer, position);
+                if (read <= 0) {
+                    complete(); // end of file
+                    return;
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("Non-blocking PDF write aborted: {}", throwable.getMessage());
+            complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.debug("Non-blocking PDF write timed out with {} bytes left", remaining);
+            complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // not re-dispatched
+        }
+
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Read-only channel shared between concurrent transfers. The registry itself holds one
+     * reference; the channel is closed when the count drops to zero.
+     */
+    private static final class SharedChannel {
+        private final FileChannel channel;
+        private final long size;
+        private final long lastModified;
+        private final Object fileKey;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private SharedChannel(FileChannel channel, BasicFileAttributes attributes) {
+            this.channel = channel;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.fileKey = attributes.fileKey();
+        }
+
+        static SharedChannel open(Path path, BasicFileAttributes attributes) throws IOException {
+            return new SharedChannel(FileChannel.open(path, StandardOpenOption.READ), attributes);
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis()
+                    && Objects.equals(fileKey, attributes.fileKey());
+        }
+
+        boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close shared PDF channel", e);
+                }
+            }
+        }
+    }
+}
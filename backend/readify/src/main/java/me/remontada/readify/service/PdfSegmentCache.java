@@ -0,0 +1,507 @@
+package me.remontada.readify.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared cache of memory-mapped PDF segments.
+ *
+ * <p>Each PDF is split into fixed-size segments that are mapped on first use and then shared by
+ * every session reading the same book, so hot titles are served straight from mapped memory
+ * instead of every request opening and reading the file on its own.</p>
+ *
+ * <ul>
+ *     <li>Segments are reference counted; a segment is unmapped only once it has been evicted
+ *     and the last reader has released it.</li>
+ *     <li>The total number of mapped bytes is bounded, least recently used segments are evicted
+ *     first.</li>
+ *     <li>Segments are tagged with the size, modification time and inode of the file they were
+ *     mapped from, so a replaced PDF is never served from stale mappings.</li>
+ * </ul>
+ *
+ * <p>Hit/miss/eviction counters and mapped bytes are published as Micrometer meters under
+ * {@code readify.pdf.segment-cache.*} and are available through the actuator metrics endpoint.</p>
+ */
+@Slf4j
+@Service
+public class PdfSegmentCache {
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            log.warn("Explicit unmapping unavailable, mapped PDF segments will be released by GC: {}", e.getMessage());
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final boolean enabled;
+    private final long segmentSize;
+    private final long maxMappedBytes;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<SegmentKey, MappedSegment> segments = new LinkedHashMap<>(64, 0.75f, true);
+    private long mappedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PdfSegmentCache(@Value("${app.streaming.segment-cache.enabled:true}") boolean enabled,
+                           @Value("${app.streaming.segment-cache.segment-size:4194304}") long segmentSize,
+                           @Value("${app.streaming.segment-cache.max-mapped-bytes:268435456}") long maxMappedBytes,
+                           MeterRegistry meterRegistry) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 byte and 2 GiB");
+        }
+        this.enabled = enabled;
+        this.segmentSize = segmentSize;
+        this.maxMappedBytes = Math.max(segmentSize, maxMappedBytes);
+
+        FunctionCounter.builder("readify.pdf.segment-cache.hits", hits, LongAdder::sum)
+                .description("Segment lookups served from an existing mapping")
+                .register(meterRegistry);
+        FunctionCounter.builder("readify.pdf.segment-cache.misses", misses, LongAdder::sum)
+                .description("Segment lookups that had to map the file")
+                .register(meterRegistry);
+        FunctionCounter.builder("readify.pdf.segment-cache.evictions", evictions, LongAdder::sum)
+                .description("Segments evicted because of the size bound or file invalidation")
+                .register(meterRegistry);
+        Gauge.builder("readify.pdf.segment-cache.mapped.bytes", this, PdfSegmentCache::getMappedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("readify.pdf.segment-cache.segments", this, PdfSegmentCache::getSegmentCount)
+                .register(meterRegistry);
+
+        log.info("PDF segment cache initialized: enabled={}, segmentSize={}, maxMappedBytes={}",
+                enabled, segmentSize, this.maxMappedBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Write {@code length} bytes of the file starting at {@code position} to the channel from
+     * mapped segments. The mapped buffers are handed to the channel as they are.
+     *
+     * @return number of bytes written
+     */
+    public long write(Path path, long position, long length, WritableByteChannel target) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        FileVersion version = FileVersion.of(key);
+        long end = Math.min(position + length, version.size());
+
+        long current = position;
+        while (current < end) {
+            int index = (int) (current / segmentSize);
+            MappedSegment segment = acquire(key, version, index);
+            try {
+                int from = (int) (current - segment.offset);
+                int to = (int) (Math.min(end, segment.offset + segment.length) - segment.offset);
+                ByteBuffer slice = segment.buffer.slice(from, to - from);
+                while (slice.hasRemaining()) {
+                    target.write(slice);
+                }
+                current += to - from;
+            } finally {
+                segment.release();
+            }
+        }
+        return current - position;
+    }
+
+    /**
+     * Copy bytes of the file starting at {@code position} into {@code target}, at most up to the
+     * end of the segment holding {@code position}, e.g. for a writer that fills a buffer whenever
+     * the connection can take more data.
+     *
+     * @return number of bytes copied, or -1 when {@code position} is at or past the end of the file
+     */
+    public int read(Path path, long position, ByteBuffer target) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        FileVersion version = FileVersion.of(key);
+        if (position >= version.size()) {
+            return -1;
+        }
+
+        MappedSegment segment = acquire(key, version, (int) (position / segmentSize));
+        try {
+            int from = (int) (position - segment.offset);
+            int count = Math.min(segment.length - from, target.remaining());
+            target.put(segment.buffer.slice(from, count));
+            return count;
+        } finally {
+            segment.release();
+        }
+    }
+
+    /**
+     * Wrap a file backed resource so that reads are served from the shared mapped segments.
+     * Resources that are not files, or a disabled cache, return the original resource.
+     */
+    public Resource asResource(Resource resource) throws IOException {
+        if (!enabled || !resource.isFile()) {
+            return resource;
+        }
+        Path path = resource.getFile().toPath().toAbsolutePath().normalize();
+        return new MappedPdfResource(path, FileVersion.of(path));
+    }
+
+    /**
+     * Drop and unmap every segment of the file, e.g. after the book was deleted or replaced.
+     */
+    public void invalidate(Path path) {
+        if (path == null) {
+            return;
+        }
+        Path key = path.toAbsolutePath().normalize();
+        List<MappedSegment> removed = new ArrayList<>();
+        synchronized (lock) {
+            Iterator<Map.Entry<SegmentKey, MappedSegment>> iterator = segments.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<SegmentKey, MappedSegment> entry = iterator.next();
+                if (entry.getKey().path().equals(key)) {
+                    iterator.remove();
+                    mappedBytes -= entry.getValue().length;
+                    removed.add(entry.getValue());
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            evictions.add(removed.size());
+            removed.forEach(MappedSegment::release);
+            log.debug("Invalidated {} mapped segments for {}", removed.size(), key);
+        }
+    }
+
+    public long getMappedBytes() {
+        synchronized (lock) {
+            return mappedBytes;
+        }
+    }
+
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @PreDestroy
+    public void clear() {
+        List<MappedSegment> removed;
+        synchronized (lock) {
+            removed = new ArrayList<>(segments.values());
+            segments.clear();
+            mappedBytes = 0;
+        }
+        removed.forEach(MappedSegment::release);
+    }
+
+    private MappedSegment acquire(Path path, FileVersion version, int index) throws IOException {
+        SegmentKey key = new SegmentKey(path, index);
+
+        MappedSegment cached;
+        synchronized (lock) {
+            cached = segments.get(key);
+            if (cached != null && cached.version.equals(version) && cached.retain()) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        misses.increment();
+        if (cached != null && cached.version.equals(FileVersion.of(path))) {
+            // The caller started before the file changed; a private mapping keeps it from evicting
+            // the current one, which readers of the new version would map straight back
+            return map(key, version);
+        }
+        MappedSegment fresh = map(key, version);
+
+        List<MappedSegment> evicted = new ArrayList<>();
+        MappedSegment result;
+        synchronized (lock) {
+            MappedSegment raced = segments.get(key);
+            if (raced != null && raced.version.equals(version) && raced.retain()) {
+                result = raced;
+            } else {
+                if (raced != null) {
+                    segments.remove(key);
+                    mappedBytes -= raced.length;
+                    evicted.add(raced);
+                }
+                segments.put(key, fresh);
+                mappedBytes += fresh.length;
+                fresh.retain();
+                result = fresh;
+                evictOverflow(evicted);
+            }
+        }
+
+        if (result != fresh) {
+            fresh.release();
+        }
+        if (!evicted.isEmpty()) {
+            evictions.add(evicted.size());
+            evicted.forEach(MappedSegment::release);
+        }
+        return result;
+    }
+
+    private void evictOverflow(List<MappedSegment> evicted) {
+        Iterator<MappedSegment> iterator = segments.values().iterator();
+        while (mappedBytes > maxMappedBytes && iterator.hasNext()) {
+            MappedSegment eldest = iterator.next();
+            iterator.remove();
+            mappedBytes -= eldest.length;
+            evicted.add(eldest);
+        }
+    }
+
+    private MappedSegment map(SegmentKey key, FileVersion version) throws IOException {
+        long offset = key.index() * segmentSize;
+        if (offset >= version.size()) {
+            throw new IOException("Segment " + key.index() + " is beyond the end of " + key.path());
+        }
+        int length = (int) Math.min(segmentSize, version.size() - offset);
+        try (FileChannel channel = FileChannel.open(key.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            return new MappedSegment(version, buffer, offset, length);
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Exception e) {
+            log.debug("Failed to unmap PDF segment", e);
+        }
+    }
+
+    private record SegmentKey(Path path, int index) {
+    }
+
+    private record FileVersion(long size, long lastModified, Object fileKey) {
+        static FileVersion of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileVersion(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+        }
+    }
+
+    /**
+     * Mapped slice of a PDF file. The cache holds one reference while the segment is registered;
+     * the mapping is released once every reader has released it as well.
+     */
+    private static final class MappedSegment {
+        private final FileVersion version;
+        private final MappedByteBuffer buffer;
+        private final long offset;
+        private final int length;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private MappedSegment(FileVersion version, MappedByteBuffer buffer, long offset, int length) {
+            this.version = version;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                unmap(buffer);
+            }
+        }
+    }
+
+    /**
+     * Resource view over the mapped segments of a file, used where Spring streams a
+     * {@link org.springframework.core.io.support.ResourceRegion} on our behalf.
+     */
+    private final class MappedPdfResource extends AbstractResource {
+        private final Path path;
+        private final FileVersion version;
+
+        private MappedPdfResource(Path path, FileVersion version) {
+            this.path = path;
+            this.version = version;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Mapped PDF [" + path + "]";
+        }
+
+        @Override
+        public String getFilename() {
+            return path.getFileName().toString();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return version.size();
+        }
+
+        @Override
+        public long lastModified() {
+            return version.lastModified();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new SegmentInputStream(path, version);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || (other instanceof MappedPdfResource that
+                    && path.equals(that.path) && version.equals(that.version));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, version);
+        }
+    }
+
+    /**
+     * Input stream that walks the mapped segments of a file. Skipping is O(1), which keeps
+     * range responses from reading the bytes in front of the requested range.
+     */
+    private final class SegmentInputStream extends InputStream {
+        private final Path path;
+        private final FileVersion version;
+        private long position;
+        private MappedSegment current;
+
+        private SegmentInputStream(Path path, FileVersion version) {
+            this.path = path;
+            this.version = version;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= version.size()) {
+                return -1;
+            }
+            MappedSegment segment = segmentAtPosition();
+            int inSegment = (int) (position - segment.offset);
+            int count = Math.min(len, segment.length - inSegment);
+            segment.buffer.get(inSegment, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            long target = Math.min(version.size(), position + n);
+            long skipped = target - position;
+            position = target;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, version.size() - position);
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+        }
+
+        private MappedSegment segmentAtPosition() throws IOException {
+            if (current == null || position < current.offset || position >= current.offset + current.length) {
+                close();
+                current = acquire(path, version, (int) (position / segmentSize));
+            }
+            return current;
+        }
+    }
+}
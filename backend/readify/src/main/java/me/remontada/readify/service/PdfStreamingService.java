@@ -11,6 +11,8 @@ import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -31,11 +33,25 @@ public class PdfStreamingService {
      */
     private final long chunkSize;
 
-    public PdfStreamingService(@Value("${app.streaming.chunk-size:262144}") long chunkSize) {
+    /**
+     * Limits for multi-range requests: number of parts after coalescing and
+     * total bytes across all parts.
+     */
+    private final int maxRangeParts;
+    private final long maxMultiRangeBytes;
+
+    public PdfStreamingService(@Value("${app.streaming.chunk-size:262144}") long chunkSize,
+                               @Value("${app.streaming.multi-range.max-parts:8}") int maxRangeParts,
+                               @Value("${app.streaming.multi-range.max-total-bytes:4194304}") long maxMultiRangeBytes) {
         if (chunkSize <= 0) {
             throw new IllegalArgumentException("Streaming chunk size must be greater than zero");
         }
+        if (maxRangeParts <= 0 || maxMultiRangeBytes <= 0) {
+            throw new IllegalArgumentException("Multi-range limits must be greater than zero");
+        }
         this.chunkSize = chunkSize;
+        this.maxRangeParts = maxRangeParts;
+        this.maxMultiRangeBytes = maxMultiRangeBytes;
     }
 
     public long getChunkSize() {
@@ -81,6 +97,73 @@ public class PdfStreamingService {
         return new ResourceRegion(resource, start, effectiveLength);
     }
 
+    /**
+     * Resolve every range of the incoming request.
+     *
+     * A single range (or no Range header) behaves exactly like {@link #getResourceRegion}.
+     * Several ranges are sorted and overlapping or adjacent ones are merged, so that
+     * PDF.js can fetch xref streams, object streams and fonts for a page in one
+     * {@code multipart/byteranges} response instead of one request per range.
+     *
+     * @throws IllegalArgumentException when a range is not satisfiable or the request
+     *                                  exceeds the configured part count or byte limit
+     */
+    public List<ResourceRegion> getResourceRegions(Resource resource, HttpHeaders headers) throws IOException {
+        List<HttpRange> ranges = headers.getRange();
+        if (ranges == null || ranges.size() <= 1) {
+            return List.of(getResourceRegion(resource, headers));
+        }
+
+        long contentLength = resource.contentLength();
+        if (ranges.size() > maxRangeParts * 4) {
+            // Reject absurd headers before doing any work on them
+            throw new IllegalArgumentException("Too many ranges requested: " + ranges.size());
+        }
+
+        List<long[]> spans = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(contentLength);
+            long end = range.getRangeEnd(contentLength);
+            if (start >= contentLength || start > end) {
+                throw new IllegalArgumentException("Requested range not satisfiable");
+            }
+            spans.add(new long[]{start, end});
+        }
+        spans.sort(Comparator.comparingLong(span -> span[0]));
+
+        List<ResourceRegion> regions = new ArrayList<>();
+        long totalBytes = 0;
+        long currentStart = spans.get(0)[0];
+        long currentEnd = spans.get(0)[1];
+        for (int i = 1; i <= spans.size(); i++) {
+            if (i < spans.size() && spans.get(i)[0] <= currentEnd + 1) {
+                currentEnd = Math.max(currentEnd, spans.get(i)[1]);
+                continue;
+            }
+
+            long length = currentEnd - currentStart + 1;
+            totalBytes += length;
+            regions.add(new ResourceRegion(resource, currentStart, length));
+
+            if (i < spans.size()) {
+                currentStart = spans.get(i)[0];
+                currentEnd = spans.get(i)[1];
+            }
+        }
+
+        if (regions.size() > maxRangeParts) {
+            throw new IllegalArgumentException("Too many ranges requested: " + regions.size()
+                    + " (max " + maxRangeParts + ")");
+        }
+        if (totalBytes > maxMultiRangeBytes) {
+            throw new IllegalArgumentException("Requested ranges too large: " + totalBytes
+                    + " bytes (max " + maxMultiRangeBytes + ")");
+        }
+
+        log.trace("Serving {} PDF ranges ({} requested), {} bytes total", regions.size(), ranges.size(), totalBytes);
+        return regions;
+    }
+
     /**
      * Helper method used primarily for logging purposes so that controllers can
      * emit human readable messages about the media type that will be streamed.
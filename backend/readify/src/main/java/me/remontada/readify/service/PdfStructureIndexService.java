@@ -0,0 +1,409 @@
+package me.remontada.readify.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.dto.PdfStructureIndex;
+import me.remontada.readify.dto.PdfStructureIndex.PageObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds, stores and serves {@link PdfStructureIndex} files.
+ *
+ * <p>The index is built once when a PDF is uploaded and written next to it as
+ * {@code <pdf name>.index.json}. Lookups are served from memory as long as the size and
+ * modification time of the PDF still match; the sidecar file is read only on the first lookup
+ * after a restart. PDFs uploaded before indexing existed, or replaced behind the service's back,
+ * are indexed on a background thread, and lookups report no index until the build has finished,
+ * so a reader request never waits for a full scan of the file.</p>
+ *
+ * <p>Page objects are found by a single sequential scan for {@code N G obj} headers whose
+ * dictionary declares {@code /Type /Page}. Pages stored inside compressed object streams
+ * (PDF 1.5+) are not visible to this scan.</p>
+ */
+@Slf4j
+@Service
+public class PdfStructureIndexService {
+
+    static final int INDEX_VERSION = 1;
+
+    private static final String INDEX_SUFFIX = ".index.json";
+    private static final int HEADER_SCAN = 1024;
+    private static final int TAIL_SCAN = 65536;
+    private static final int SCAN_CHUNK = 1024 * 1024;
+    private static final int SCAN_LOOKBACK = 32;
+    private static final int OBJECT_DICT_SCAN = 1024;
+
+    private static final Pattern VERSION = Pattern.compile("%PDF-([0-9.]+)");
+    private static final Pattern STARTXREF = Pattern.compile("startxref\\s+(\\d+)");
+    private static final Pattern FIRST_PAGE_END = Pattern.compile("/E\\s+(\\d+)");
+    private static final Pattern PAGE_COUNT = Pattern.compile("/N\\s+(\\d+)");
+
+    private static final byte[] TYPE_KEY = "/Type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAGE_NAME = "/Page".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_OBJ = "endobj".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STREAM = "stream".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<Path, PdfStructureIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, CompletableFuture<Void>> pendingBuilds = new ConcurrentHashMap<>();
+    private final ExecutorService buildExecutor;
+
+    @Autowired
+    public PdfStructureIndexService(ObjectMapper objectMapper,
+                                    @Value("${app.streaming.index.build-threads:1}") int buildThreads) {
+        this.objectMapper = objectMapper;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.buildExecutor = Executors.newFixedThreadPool(Math.max(1, buildThreads), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-index-build-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Index the PDF and store the index beside it. Called at upload time.
+     */
+    public PdfStructureIndex buildAndStore(Path pdf) throws IOException {
+        Path key = normalize(pdf);
+        PdfStructureIndex index = build(key);
+
+        Path indexPath = indexPathFor(key);
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        objectMapper.writeValue(tempPath.toFile(), index);
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        indexes.put(key, index);
+        log.info("Indexed PDF {}: version={}, xref={}, linearized={}, pages={}",
+                key.getFileName(), index.getPdfVersion(), index.getXrefOffset(),
+                index.getLinearized(), index.getPages().size());
+        return index;
+    }
+
+    /**
+     * Return the up-to-date index for the PDF, or empty while it is being built in the background.
+     * Never scans the PDF on the calling thread.
+     */
+    public Optional<PdfStructureIndex> findIndex(Path pdf) throws IOException {
+        Path key = normalize(pdf);
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+
+        PdfStructureIndex cached = indexes.get(key);
+        if (cached != null) {
+            if (matches(cached, attributes)) {
+                return Optional.of(cached);
+            }
+            // The PDF changed on disk since this index was built
+            indexes.remove(key, cached);
+        }
+
+        PdfStructureIndex stored = loadStored(key, attributes);
+        if (stored != null) {
+            indexes.put(key, stored);
+            return Optional.of(stored);
+        }
+
+        scheduleBuild(key);
+        return Optional.empty();
+    }
+
+    /**
+     * Forget the in-memory index and remove the stored index, e.g. when the book is deleted.
+     */
+    public void delete(Path pdf) throws IOException {
+        Path key = normalize(pdf);
+        indexes.remove(key);
+        Files.deleteIfExists(indexPathFor(key));
+    }
+
+    /**
+     * Drop the in-memory copy so the next lookup re-reads the stored index.
+     */
+    public void evict(Path pdf) {
+        indexes.remove(normalize(pdf));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    private void scheduleBuild(Path key) {
+        pendingBuilds.computeIfAbsent(key, path -> {
+            log.info("No up-to-date structure index for {}, building it in the background", path.getFileName());
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    buildAndStore(path);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to build structure index for {}: {}", path.getFileName(), e.getMessage());
+                } finally {
+                    pendingBuilds.remove(path);
+                }
+            }, buildExecutor);
+        });
+    }
+
+    PdfStructureIndex build(Path pdf) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(pdf, BasicFileAttributes.class);
+        long size = attributes.size();
+
+        try (FileChannel channel = FileChannel.open(pdf, StandardOpenOption.READ)) {
+            String head = readAscii(channel, 0, (int) Math.min(HEADER_SCAN, size));
+            long tailStart = Math.max(0, size - TAIL_SCAN);
+            String tail = readAscii(channel, tailStart, (int) (size - tailStart));
+
+            String linearization = extractLinearizationDictionary(head);
+            long xrefOffset = lastNumber(STARTXREF, tail);
+            int trailerIndex = tail.lastIndexOf("trailer");
+            long trailerOffset = trailerIndex >= 0 ? tailStart + trailerIndex : xrefOffset;
+
+            List<PageObject> pages = scanPageObjects(channel, size);
+
+            long declaredPages = linearization != null ? lastNumber(PAGE_COUNT, linearization) : -1;
+
+            return PdfStructureIndex.builder()
+                    .indexVersion(INDEX_VERSION)
+                    .fileSize(size)
+                    .lastModified(attributes.lastModifiedTime().toMillis())
+                    .pdfVersion(extractVersion(head))
+                    .xrefOffset(xrefOffset)
+                    .trailerOffset(trailerOffset)
+                    .linearized(linearization != null)
+                    .linearizationDictionary(linearization)
+                    .firstPageEndOffset(linearization != null ? lastNumber(FIRST_PAGE_END, linearization) : -1L)
+                    .pageCount(declaredPages > 0 ? (int) declaredPages : pages.size())
+                    .pages(pages)
+                    .build();
+        }
+    }
+
+    private PdfStructureIndex loadStored(Path pdf, BasicFileAttributes attributes) {
+        Path indexPath = indexPathFor(pdf);
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+
+        try {
+            PdfStructureIndex index = objectMapper.readValue(indexPath.toFile(), PdfStructureIndex.class);
+            return matches(index, attributes) ? index : null;
+        } catch (IOException e) {
+            log.warn("Failed to read structure index {}: {}", indexPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean matches(PdfStructureIndex index, BasicFileAttributes attributes) {
+        return index.getIndexVersion() != null
+                && index.getIndexVersion() == INDEX_VERSION
+                && index.getFileSize() != null && index.getFileSize() == attributes.size()
+                && index.getLastModified() != null
+                && index.getLastModified() == attributes.lastModifiedTime().toMillis();
+    }
+
+    private List<PageObject> scanPageObjects(FileChannel channel, long size) throws IOException {
+        List<PageObject> pages = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_LOOKBACK + SCAN_CHUNK + OBJECT_DICT_SCAN);
+        byte[] bytes = buffer.array();
+
+        for (long chunkStart = 0; chunkStart < size; chunkStart += SCAN_CHUNK) {
+            long base = Math.max(0, chunkStart - SCAN_LOOKBACK);
+            buffer.clear();
+            int filled = readFully(channel, buffer, base);
+
+            int from = (int) (chunkStart - base);
+            int to = Math.min(filled - 3, from + SCAN_CHUNK);
+
+            for (int i = Math.max(from, 1); i < to; i++) {
+                if (bytes[i] != 'o' || bytes[i + 1] != 'b' || bytes[i + 2] != 'j') {
+                    continue;
+                }
+                if (!isWhitespace(bytes[i - 1])) {
+                    continue;
+                }
+                if (i + 3 < filled && !isWhitespace(bytes[i + 3]) && !isDelimiter(bytes[i + 3])) {
+                    continue;
+                }
+
+                int objectStart = findObjectHeaderStart(bytes, i - 1);
+                if (objectStart < 0) {
+                    continue;
+                }
+
+                int dictEnd = Math.min(filled, i + 3 + OBJECT_DICT_SCAN);
+                if (declaresPageType(bytes, i + 3, dictEnd)) {
+                    int objectNumber = parseObjectNumber(bytes, objectStart);
+                    pages.add(new PageObject(objectNumber, base + objectStart));
+                }
+            }
+        }
+
+        return pages;
+    }
+
+    /**
+     * Walk back from the whitespace in front of "obj" over "N G" and return the offset of N,
+     * or -1 when the bytes are not an indirect object header.
+     */
+    private int findObjectHeaderStart(byte[] bytes, int position) {
+        int j = position;
+        while (j >= 0 && isWhitespace(bytes[j])) {
+            j--;
+        }
+        int generationEnd = j;
+        while (j >= 0 && isDigit(bytes[j])) {
+            j--;
+        }
+        if (j == generationEnd || j < 0 || !isWhitespace(bytes[j])) {
+            return -1;
+        }
+        while (j >= 0 && isWhitespace(bytes[j])) {
+            j--;
+        }
+        int numberEnd = j;
+        while (j >= 0 && isDigit(bytes[j])) {
+            j--;
+        }
+        if (j == numberEnd || numberEnd - j > 9) {
+            return -1;
+        }
+        if (j >= 0 && !isWhitespace(bytes[j]) && !isDelimiter(bytes[j])) {
+            return -1;
+        }
+        return j + 1;
+    }
+
+    private boolean declaresPageType(byte[] bytes, int from, int to) {
+        for (int k = from; k < to; k++) {
+            if (startsWith(bytes, k, to, END_OBJ) || startsWith(bytes, k, to, STREAM)) {
+                return false;
+            }
+            if (!startsWith(bytes, k, to, TYPE_KEY)) {
+                continue;
+            }
+            int v = k + TYPE_KEY.length;
+            while (v < to && isWhitespace(bytes[v])) {
+                v++;
+            }
+            if (startsWith(bytes, v, to, PAGE_NAME)) {
+                int after = v + PAGE_NAME.length;
+                // "/Page" but not "/Pages"
+                return after >= to || isWhitespace(bytes[after]) || isDelimiter(bytes[after]);
+            }
+        }
+        return false;
+    }
+
+    private int parseObjectNumber(byte[] bytes, int start) {
+        int value = 0;
+        for (int k = start; isDigit(bytes[k]); k++) {
+            value = value * 10 + (bytes[k] - '0');
+        }
+        return value;
+    }
+
+    private String extractVersion(String head) {
+        Matcher matcher = VERSION.matcher(head);
+        return matcher.find() ? matcher.group(1) : "unknown";
+    }
+
+    private String extractLinearizationDictionary(String head) {
+        int marker = head.indexOf("/Linearized");
+        if (marker < 0) {
+            return null;
+        }
+        int start = head.lastIndexOf("<<", marker);
+        int end = head.indexOf(">>", marker);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        return head.substring(start, end + 2).replaceAll("\\s+", " ");
+    }
+
+    private long lastNumber(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        long value = -1;
+        while (matcher.find()) {
+            try {
+                value = Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                value = -1;
+            }
+        }
+        return value;
+    }
+
+    private String readAscii(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        int read = readFully(channel, buffer, position);
+        return new String(buffer.array(), 0, read, StandardCharsets.ISO_8859_1);
+    }
+
+    private int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static boolean startsWith(byte[] bytes, int position, int limit, byte[] pattern) {
+        if (position + pattern.length > limit) {
+            return false;
+        }
+        for (int k = 0; k < pattern.length; k++) {
+            if (bytes[position + k] != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == '<' || b == '>' || b == '[' || b == ']' || b == '(' || b == ')'
+                || b == '/' || b == '{' || b == '}' || b == '%';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static Path normalize(Path pdf) {
+        return pdf.toAbsolutePath().normalize();
+    }
+
+    private static Path indexPathFor(Path pdf) {
+        return pdf.resolveSibling(pdf.getFileName() + INDEX_SUFFIX);
+    }
+}
@@ -1,30 +1,30 @@
 package me.remontada.readify.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Rate limiting service for promo chapter access.
- * Limits anonymous users to 3 promo chapters per day by IP address.
+ * Limits anonymous users to 3 promo chapters per day by IP address. Counts are kept in the
+ * configured {@link RateLimitStore}, so with the jdbc store the limit holds across all nodes.
+ * Old counts are removed by {@link RateLimitMaintenance}.
  */
 @Slf4j
 @Service
 public class PromoChapterRateLimitService {
 
     private static final int MAX_PROMO_CHAPTERS_PER_DAY = 2;
-    private static final long CLEANUP_INTERVAL_HOURS = 6;
+    private static final int HISTORY_DAYS = 2;
 
-    private final ConcurrentMap<String, IpAccessTracker> ipTrackers = new ConcurrentHashMap<>();
-    private volatile Instant lastCleanup = Instant.now();
+    private final RateLimitStore rateLimitStore;
+
+    @Autowired
+    public PromoChapterRateLimitService(RateLimitStore rateLimitStore) {
+        this.rateLimitStore = rateLimitStore;
+    }
 
     /**
      * Check if an IP address can access a promo chapter.
@@ -39,32 +39,25 @@ public class PromoChapterRateLimitService {
             return PromoAccessResult.denied("Invalid request");
         }
 
-        periodicCleanup();
-
-        IpAccessTracker tracker = ipTrackers.computeIfAbsent(ipAddress, k -> new IpAccessTracker());
-
         LocalDate today = LocalDate.now();
+        RateLimitStore.DailyAccess access =
+                rateLimitStore.recordDailyAccess(ipAddress, today, bookId, MAX_PROMO_CHAPTERS_PER_DAY);
 
         // If this book was already accessed today, allow it (for refreshing/re-reading)
-        if (tracker.hasAccessedBook(today, bookId)) {
+        if (access.repeated()) {
             log.debug("IP {} re-accessing promo chapter for book {} (already counted for today)", ipAddress, bookId);
-            return PromoAccessResult.allowed(tracker.getBooksAccessedToday(today));
+            return PromoAccessResult.allowed(access.count());
         }
 
         // Check if limit is reached
-        int currentCount = tracker.getAccessCountForDate(today);
-        if (currentCount >= MAX_PROMO_CHAPTERS_PER_DAY) {
-            log.info("IP {} exceeded daily promo chapter limit ({}/{})", ipAddress, currentCount, MAX_PROMO_CHAPTERS_PER_DAY);
-            return PromoAccessResult.limitReached(currentCount);
+        if (!access.allowed()) {
+            log.info("IP {} exceeded daily promo chapter limit ({}/{})", ipAddress, access.count(), MAX_PROMO_CHAPTERS_PER_DAY);
+            return PromoAccessResult.limitReached(access.count());
         }
 
-        // Record access
-        tracker.recordAccess(today, bookId);
-        int newCount = currentCount + 1;
+        log.info("IP {} accessed promo chapter for book {} ({}/{})", ipAddress, bookId, access.count(), MAX_PROMO_CHAPTERS_PER_DAY);
 
-        log.info("IP {} accessed promo chapter for book {} ({}/{})", ipAddress, bookId, newCount, MAX_PROMO_CHAPTERS_PER_DAY);
-
-        return PromoAccessResult.allowed(newCount);
+        return PromoAccessResult.allowed(access.count());
     }
 
     /**
@@ -75,77 +68,24 @@ public class PromoChapterRateLimitService {
             return new PromoAccessStatus(0, MAX_PROMO_CHAPTERS_PER_DAY, false);
         }
 
-        IpAccessTracker tracker = ipTrackers.get(ipAddress);
-        if (tracker == null) {
-            return new PromoAccessStatus(0, MAX_PROMO_CHAPTERS_PER_DAY, false);
-        }
-
-        LocalDate today = LocalDate.now();
-        int count = tracker.getAccessCountForDate(today);
+        int count = rateLimitStore.dailyAccessCount(ipAddress, LocalDate.now());
         boolean limitReached = count >= MAX_PROMO_CHAPTERS_PER_DAY;
 
         return new PromoAccessStatus(count, MAX_PROMO_CHAPTERS_PER_DAY, limitReached);
     }
 
     /**
-     * Clean up old tracking data
-     */
-    private void periodicCleanup() {
-        Instant now = Instant.now();
-        if (ChronoUnit.HOURS.between(lastCleanup, now) >= CLEANUP_INTERVAL_HOURS) {
-            lastCleanup = now;
-
-            int removed = cleanupExpiredTrackers();
-            log.debug("Promo chapter rate limit cleanup: removed {} expired IP trackers", removed);
-        }
-    }
-
-    private int cleanupExpiredTrackers() {
-        LocalDate cutoffDate = LocalDate.now().minusDays(2); // Keep 2 days of history
-        int removedCount = 0;
-        var iterator = ipTrackers.entrySet().iterator();
-
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            if (entry.getValue().shouldRemove(cutoffDate)) {
-                iterator.remove();
-                removedCount++;
-            }
-        }
-
-        return removedCount;
-    }
-
-    /**
-     * Tracks promo chapter access per IP address by date
+     * Clean up old tracking data, examining at most {@code budget} records. Run by
+     * {@link RateLimitMaintenance}.
+     *
+     * @return number of records removed
      */
-    private static class IpAccessTracker {
-        private final ConcurrentMap<LocalDate, Set<Long>> accessesByDate = new ConcurrentHashMap<>();
-        private volatile Instant lastAccess = Instant.now();
-
-        public void recordAccess(LocalDate date, Long bookId) {
-            lastAccess = Instant.now();
-            accessesByDate.computeIfAbsent(date, k -> ConcurrentHashMap.newKeySet()).add(bookId);
-        }
-
-        public boolean hasAccessedBook(LocalDate date, Long bookId) {
-            Set<Long> books = accessesByDate.get(date);
-            return books != null && books.contains(bookId);
-        }
-
-        public int getAccessCountForDate(LocalDate date) {
-            Set<Long> books = accessesByDate.get(date);
-            return books != null ? books.size() : 0;
-        }
-
-        public int getBooksAccessedToday(LocalDate today) {
-            return getAccessCountForDate(today);
-        }
-
-        public boolean shouldRemove(LocalDate cutoffDate) {
-            // Remove if all access dates are before cutoff
-            return accessesByDate.keySet().stream().allMatch(date -> date.isBefore(cutoffDate));
+    public int evictExpired(int budget) {
+        int removed = rateLimitStore.removeDailyAccessBefore(LocalDate.now().minusDays(HISTORY_DAYS), budget);
+        if (removed > 0) {
+            log.debug("Promo chapter rate limit cleanup: removed {} expired IP records", removed);
         }
+        return removed;
     }
 
     public static class PromoAccessResult {
@@ -0,0 +1,62 @@
+package me.remontada.readify.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes idle rate limiter state on a schedule instead of on the request that happens to cross
+ * the cleanup interval. Every run examines at most {@code max-keys-per-run} keys per map and
+ * continues where the previous run stopped, so its cost does not grow with the number of keys.
+ */
+@Slf4j
+@Component
+public class RateLimitMaintenance {
+
+    private final RateLimitingService rateLimitingService;
+    private final PromoChapterRateLimitService promoChapterRateLimitService;
+    private final int maxKeysPerRun;
+
+    private final LongAdder evictedKeys = new LongAdder();
+    private final Timer maintenanceTimer;
+
+    @Autowired
+    public RateLimitMaintenance(
+            RateLimitingService rateLimitingService,
+            PromoChapterRateLimitService promoChapterRateLimitService,
+            @Value("${app.security.rate-limit.maintenance.max-keys-per-run:5000}") int maxKeysPerRun,
+            MeterRegistry meterRegistry) {
+
+        this.rateLimitingService = rateLimitingService;
+        this.promoChapterRateLimitService = promoChapterRateLimitService;
+        this.maxKeysPerRun = Math.max(1, maxKeysPerRun);
+
+        FunctionCounter.builder("readify.ratelimit.keys.evicted", evictedKeys, LongAdder::sum)
+                .description("Rate limiter keys removed as idle or above the key cap")
+                .register(meterRegistry);
+        this.maintenanceTimer = Timer.builder("readify.ratelimit.maintenance")
+                .description("Duration of one rate limiter maintenance run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.rate-limit.maintenance.interval-ms:10000}")
+    public void runMaintenance() {
+        long started = System.nanoTime();
+        try {
+            evictedKeys.add(rateLimitingService.evictIdle(maxKeysPerRun));
+            evictedKeys.add(promoChapterRateLimitService.evictExpired(maxKeysPerRun));
+        } catch (RuntimeException e) {
+            log.warn("Rate limit maintenance failed: {}", e.getMessage());
+        } finally {
+            maintenanceTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
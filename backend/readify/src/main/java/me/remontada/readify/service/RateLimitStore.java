@@ -0,0 +1,78 @@
+package me.remontada.readify.service;
+
+import java.time.LocalDate;
+
+/**
+ * Storage of rate limiter state, selected with {@code app.security.rate-limit.store}:
+ * - memory: token buckets and daily promo counters live in this JVM only, so every node
+ *           enforces the limits on its own
+ * - jdbc:   limits are shared through Postgres, so the budget holds for the whole cluster no
+ *           matter how the load balancer spreads the requests
+ *
+ * Used by {@link RateLimitingService} for chunk requests and by
+ * {@link PromoChapterRateLimitService} for anonymous promo chapters. Keys held in memory are capped
+ * per limit at {@code app.security.rate-limit.max-keys}; {@link RateLimitMaintenance} sweeps them.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Take one permit of {@code limit} for the key (a user id, a session token, ...).
+     * Keys are compared with equals, so callers should pass ids they already hold rather than
+     * building composite strings per request.
+     *
+     * @return false when the key has used up its budget
+     */
+    boolean tryAcquire(Limit limit, Object key);
+
+    /**
+     * Permits the key could take right now, as far as this node knows.
+     */
+    int availablePermits(Limit limit, Object key);
+
+    /**
+     * Record that {@code subject} accessed {@code itemId} on {@code day}, unless that would exceed
+     * {@code maxPerDay} distinct items. Accessing an item already counted that day is always allowed.
+     */
+    DailyAccess recordDailyAccess(String subject, LocalDate day, Long itemId, int maxPerDay);
+
+    /**
+     * Distinct items {@code subject} accessed on {@code day}.
+     */
+    int dailyAccessCount(String subject, LocalDate day);
+
+    /**
+     * Drop local limiter state not used for {@code idleMillis}, then evict the least recently used
+     * keys while a limit tracks more keys than its cap. Examines at most {@code budget} keys per
+     * limit, continuing where the previous call stopped.
+     *
+     * @return number of keys removed
+     */
+    int removeIdle(long idleMillis, int budget);
+
+    /**
+     * Drop daily access records older than {@code oldestKept}, then evict the least recently seen
+     * subjects above the key cap. Examines at most {@code budget} subjects or rows.
+     *
+     * @return number of records removed
+     */
+    int removeDailyAccessBefore(LocalDate oldestKept, int budget);
+
+    /**
+     * A named limit: {@code burst} requests at once, refilled at {@code perMinute}.
+     * Create one instance per limit and reuse it.
+     */
+    record Limit(String name, int perMinute, int burst) {
+
+        public Limit {
+            perMinute = Math.max(1, perMinute);
+            burst = Math.max(1, burst);
+        }
+    }
+
+    /**
+     * Outcome of {@link #recordDailyAccess}: whether it was allowed, whether the item had already
+     * been counted that day, and the distinct item count for the day afterwards.
+     */
+    record DailyAccess(boolean allowed, boolean repeated, int count) {
+    }
+}
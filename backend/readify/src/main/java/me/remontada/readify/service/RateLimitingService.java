@@ -1,51 +1,124 @@
 package me.remontada.readify.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import me.remontada.readify.dto.response.ReadingCoverageDTO;
+import me.remontada.readify.service.AccessPatternWindow.Assessment;
+import me.remontada.readify.service.RateLimitStore.Limit;
+import me.remontada.readify.util.KeyEvictor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * Rate limiting service using token bucket algorithm to prevent rapid PDF range requests.
  *
  * Implements per-user and per-session rate limiting to detect and prevent automated
- * PDF downloading attempts while allowing normal reading behavior.
+ * PDF downloading attempts while allowing normal reading behavior. Bucket state is kept in the
+ * configured {@link RateLimitStore}, so the limits can hold across all nodes; the suspicious
+ * activity windows ({@link AccessPatternWindow}) are per node. Idle state is removed by
+ * {@link RateLimitMaintenance}, off the request path.
+ *
+ * Suspicious access is reported once per window slot to the {@code readify.ratelimit.suspicious}
+ * metrics and to the {@code readify.audit} log. Which blocks of each book a user was served
+ * ({@link CoverageBitmap}) can be inspected through {@link #getCoverage} and {@link #getTopCoverage}.
  */
 @Slf4j
 @Service
 public class RateLimitingService {
 
+    private static final Logger audit = LoggerFactory.getLogger("readify.audit");
+
     private final boolean enabled;
     private final int requestsPerMinute;
     private final int burstSize;
     private final int suspiciousThreshold;
     private final long cleanupIntervalMinutes;
 
-    private final ConcurrentMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, SuspiciousActivityTracker> activityTrackers = new ConcurrentHashMap<>();
-    private volatile Instant lastCleanup = Instant.now();
+    private final long idleCutoffMillis;
+    // Activity is stamped in milliseconds since this origin
+    private final long clockOriginNanos = System.nanoTime();
+
+    private final RateLimitStore rateLimitStore;
+    private final Limit userLimit;
+    private final Limit sessionLimit;
+    private final AccessPatternWindow.Limits detectorLimits;
+    private final long detectorWindowMillis;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary suspiciousScores;
 
+    // Keyed by the caller's own user and book ids, so a check builds no key strings
+    private final ConcurrentMap<Long, UserActivity> activityByUser = new ConcurrentHashMap<>();
+    private final KeyEvictor<Long, UserActivity> activityEvictor;
+
+    // Created once: lambdas capturing this would otherwise be allocated on every check
+    private final Function<Long, UserActivity> newUserActivity = userId -> new UserActivity();
+
+    @Autowired
     public RateLimitingService(
+            RateLimitStore rateLimitStore,
             @Value("${app.security.rate-limit.enabled:true}") boolean enabled,
             @Value("${app.security.rate-limit.requests-per-minute:10}") int requestsPerMinute,
             @Value("${app.security.rate-limit.burst-size:20}") int burstSize,
             @Value("${app.security.rate-limit.suspicious-threshold:100}") int suspiciousThreshold,
-            @Value("${app.security.rate-limit.cleanup-interval-minutes:30}") long cleanupIntervalMinutes) {
+            @Value("${app.security.rate-limit.cleanup-interval-minutes:30}") long cleanupIntervalMinutes,
+            @Value("${app.security.rate-limit.max-keys:100000}") int maxKeys,
+            @Value("${app.security.rate-limit.detector.window-seconds:60}") long detectorWindowSeconds,
+            @Value("${app.security.rate-limit.detector.max-requests-per-minute:50}") double maxRequestsPerMinute,
+            @Value("${app.security.rate-limit.detector.max-bytes-per-minute:52428800}") long maxBytesPerMinute,
+            @Value("${app.security.rate-limit.detector.max-coverage:0.8}") double maxCoverage,
+            @Value("${app.security.rate-limit.detector.min-coverage-bytes:8388608}") long minCoverageBytes,
+            @Value("${app.security.rate-limit.coverage.block-size:${app.streaming.chunk-size:1048576}}") long coverageBlockSize,
+            @Value("${app.security.rate-limit.coverage.window-seconds:600}") long coverageWindowSeconds,
+            @Value("${app.security.rate-limit.detector.warn-score:0.75}") double warnScore,
+            MeterRegistry meterRegistry) {
 
         this.enabled = enabled;
         this.requestsPerMinute = Math.max(1, requestsPerMinute);
         this.burstSize = Math.max(1, burstSize);
         this.suspiciousThreshold = Math.max(50, suspiciousThreshold);
         this.cleanupIntervalMinutes = Math.max(10, cleanupIntervalMinutes);
-
-        log.info("Rate limiting initialized: enabled={}, requests/min={}, burst={}, suspicious={}",
-                enabled, this.requestsPerMinute, this.burstSize, this.suspiciousThreshold);
+        this.idleCutoffMillis = TimeUnit.MINUTES.toMillis(this.cleanupIntervalMinutes * 2);
+        this.activityEvictor = new KeyEvictor<>(activityByUser, Math.max(1, maxKeys));
+
+        this.rateLimitStore = rateLimitStore;
+        this.userLimit = new Limit("user", this.requestsPerMinute, this.burstSize);
+        // Session limit is more permissive than the user limit
+        this.sessionLimit = new Limit("session",
+                (int) Math.min(Integer.MAX_VALUE, this.requestsPerMinute * 2L),
+                (int) Math.min(Integer.MAX_VALUE, this.burstSize * 2L));
+
+        // The suspicious threshold caps requests per detector window
+        this.detectorWindowMillis = TimeUnit.SECONDS.toMillis(Math.max(AccessPatternWindow.SLOTS, detectorWindowSeconds));
+        this.detectorLimits = new AccessPatternWindow.Limits(maxRequestsPerMinute, this.suspiciousThreshold,
+                maxBytesPerMinute, maxCoverage, minCoverageBytes, coverageBlockSize,
+                TimeUnit.SECONDS.toMillis(coverageWindowSeconds), warnScore);
+
+        this.meterRegistry = meterRegistry;
+        this.suspiciousScores = DistributionSummary.builder("readify.ratelimit.suspicious.score")
+                .description("Score of reported suspicious access, 1.0 and above is blocked")
+                .register(meterRegistry);
+
+        log.info("Rate limiting initialized: enabled={}, requests/min={}, burst={}, suspicious={}, maxKeys={}, store={}",
+                enabled, this.requestsPerMinute, this.burstSize, this.suspiciousThreshold, maxKeys,
+                rateLimitStore.getClass().getSimpleName());
     }
 
     /**
@@ -56,53 +129,65 @@ public class RateLimitingService {
      * @param bookId Book being accessed
      * @param rangeStart Start of the requested byte range
      * @param rangeEnd End of the requested byte range
+     * @param contentLength Size of the book in bytes, or 0 if unknown
      * @return RateLimitResult indicating if request is allowed and any warnings
      */
     public RateLimitResult checkRateLimit(Long userId, String sessionToken, Long bookId,
-                                        long rangeStart, long rangeEnd) {
+                                        long rangeStart, long rangeEnd, long contentLength) {
+        return checkRateLimit(userId, sessionToken, bookId, new long[]{rangeStart, rangeEnd}, contentLength);
+    }
+
+    /**
+     * Check a request that serves several byte ranges at once (multipart/byteranges). It costs one
+     * permit like any other request; the detector is charged for the ranges themselves, not for
+     * the span from the first to the last.
+     *
+     * @param ranges Inclusive start and end offsets, in pairs, in the order they are served
+     */
+    public RateLimitResult checkRateLimit(Long userId, String sessionToken, Long bookId,
+                                        long[] ranges, long contentLength) {
         if (!enabled) {
             return RateLimitResult.allowed();
         }
 
-        periodicCleanup();
-
-        String userKey = "user:" + userId;
-        String sessionKey = "session:" + sessionToken;
-        String activityKey = userId + ":" + bookId;
-
         // Check user-level rate limit
-        TokenBucket userBucket = userBuckets.computeIfAbsent(userKey,
-            k -> new TokenBucket(requestsPerMinute, burstSize));
-
-        if (!userBucket.tryConsume()) {
+        if (!rateLimitStore.tryAcquire(userLimit, userId)) {
             log.warn("User {} exceeded rate limit (user-level)", userId);
             return RateLimitResult.denied("Rate limit exceeded for user");
         }
 
         // Check session-level rate limit (more permissive)
-        TokenBucket sessionBucket = sessionBuckets.computeIfAbsent(sessionKey,
-            k -> new TokenBucket(requestsPerMinute * 2, burstSize * 2));
-
-        if (!sessionBucket.tryConsume()) {
+        if (!rateLimitStore.tryAcquire(sessionLimit, sessionToken)) {
             log.warn("Session {} exceeded rate limit (session-level)", sessionToken);
             return RateLimitResult.denied("Rate limit exceeded for session");
         }
 
         // Track suspicious activity patterns
-        SuspiciousActivityTracker tracker = activityTrackers.computeIfAbsent(activityKey,
-            k -> new SuspiciousActivityTracker());
+        long now = now();
+        UserActivity activity = activityByUser.get(userId);
+        if (activity == null) {
+            activity = activityByUser.computeIfAbsent(userId, newUserActivity);
+            activityEvictor.onInsert(activityAge(now));
+        }
+        activity.lastActivity = now;
+
+        AccessPatternWindow window = activity.windows.get(bookId);
+        if (window == null) {
+            window = activity.addWindow(bookId, now);
+        }
 
-        SuspiciousActivityResult suspiciousResult = tracker.recordRequest(rangeStart, rangeEnd);
+        Assessment assessment = window.record(now, ranges, contentLength, detectorLimits);
 
-        if (suspiciousResult.isSuspicious()) {
-            log.warn("Suspicious activity detected for user {} on book {}: {}",
-                    userId, bookId, suspiciousResult.getReason());
+        if (assessment.isSuspicious()) {
+            if (assessment.report()) {
+                report(userId, bookId, assessment);
+            }
 
-            if (suspiciousResult.shouldBlock()) {
+            if (assessment.shouldBlock()) {
                 return RateLimitResult.denied("Suspicious download pattern detected");
             }
 
-            return RateLimitResult.allowedWithWarning(suspiciousResult.getReason());
+            return RateLimitResult.allowedWithWarning(assessment.reason());
         }
 
         return RateLimitResult.allowed();
@@ -116,166 +201,133 @@ public class RateLimitingService {
             return new RateLimitStatus(true, -1, -1, false);
         }
 
-        String userKey = "user:" + userId;
-        String sessionKey = "session:" + sessionToken;
-
-        TokenBucket userBucket = userBuckets.get(userKey);
-        TokenBucket sessionBucket = sessionBuckets.get(sessionKey);
-
-        int userTokens = userBucket != null ? userBucket.getAvailableTokens() : burstSize;
-        int sessionTokens = sessionBucket != null ? sessionBucket.getAvailableTokens() : burstSize * 2;
+        int userTokens = rateLimitStore.availablePermits(userLimit, userId);
+        int sessionTokens = sessionToken != null
+                ? rateLimitStore.availablePermits(sessionLimit, sessionToken)
+                : sessionLimit.burst();
 
         return new RateLimitStatus(true, userTokens, sessionTokens, false);
     }
 
     /**
-     * Clean up expired buckets and trackers
+     * One bounded maintenance pass, run by {@link RateLimitMaintenance}: drop buckets and trackers
+     * idle for twice the cleanup interval and evict the least recently used keys above the cap.
+     * Examines at most {@code budget} keys per map.
+     *
+     * @return number of keys removed
      */
-    private void periodicCleanup() {
-        Instant now = Instant.now();
-        if (ChronoUnit.MINUTES.between(lastCleanup, now) >= cleanupIntervalMinutes) {
-            lastCleanup = now;
+    public int evictIdle(int budget) {
+        ToLongFunction<UserActivity> age = activityAge(now());
 
-            int userBucketsRemoved = cleanupExpiredBuckets(userBuckets);
-            int sessionBucketsRemoved = cleanupExpiredBuckets(sessionBuckets);
-            int trackersRemoved = cleanupExpiredTrackers();
+        int bucketsRemoved = rateLimitStore.removeIdle(idleCutoffMillis, budget);
+        int trackersRemoved = activityEvictor.removeOlderThan(age, idleCutoffMillis, budget)
+                + activityEvictor.evictOverCapacity(age, budget);
 
-            log.debug("Rate limit cleanup: removed {} user buckets, {} session buckets, {} trackers",
-                    userBucketsRemoved, sessionBucketsRemoved, trackersRemoved);
+        if (bucketsRemoved > 0 || trackersRemoved > 0) {
+            log.debug("Rate limit cleanup: removed {} buckets, {} user trackers", bucketsRemoved, trackersRemoved);
         }
+        return bucketsRemoved + trackersRemoved;
     }
 
-    private int cleanupExpiredBuckets(ConcurrentMap<String, TokenBucket> buckets) {
-        Instant cutoff = Instant.now().minus(cleanupIntervalMinutes * 2, ChronoUnit.MINUTES);
-        int removedCount = 0;
-        var iterator = buckets.entrySet().iterator();
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            if (entry.getValue().getLastRefill().isBefore(cutoff)) {
-                iterator.remove();
-                removedCount++;
-            }
+    /**
+     * Coverage of the books {@code userId} is reading, as tracked on this node.
+     */
+    public List<ReadingCoverageDTO> getCoverage(Long userId) {
+        UserActivity activity = activityByUser.get(userId);
+        if (activity == null) {
+            return List.of();
         }
-        return removedCount;
-    }
 
-    private int cleanupExpiredTrackers() {
-        Instant cutoff = Instant.now().minus(cleanupIntervalMinutes * 2, ChronoUnit.MINUTES);
-        int removedCount = 0;
-        var iterator = activityTrackers.entrySet().iterator();
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            if (entry.getValue().getLastActivity().isBefore(cutoff)) {
-                iterator.remove();
-                removedCount++;
+        long now = now();
+        List<ReadingCoverageDTO> result = new ArrayList<>();
+        activity.windows.forEach((bookId, window) -> {
+            AccessPatternWindow.Coverage coverage = window.coverage(now);
+            if (coverage != null) {
+                result.add(toCoverageDto(userId, bookId, coverage, now));
             }
-        }
-        return removedCount;
+        });
+        result.sort(Comparator.comparingDouble(ReadingCoverageDTO::getCoverage).reversed());
+        return result;
     }
 
     /**
-     * Token bucket implementation for rate limiting
+     * The {@code limit} reader/book pairs with the highest coverage on this node. Walks every
+     * tracked user, so it is meant for the admin endpoint only.
      */
-    private static class TokenBucket {
-        private final int capacity;
-        private final double refillRate; // tokens per second
-        private final AtomicLong tokens; // scaled by 1000 for precision
-        private volatile Instant lastRefill;
-
-        public TokenBucket(int requestsPerMinute, int capacity) {
-            this.capacity = capacity;
-            this.refillRate = requestsPerMinute / 60.0; // tokens per second
-            this.tokens = new AtomicLong(capacity * 1000L);
-            this.lastRefill = Instant.now();
-        }
-
-        public boolean tryConsume() {
-            refill();
-            long currentTokens = tokens.get();
-            if (currentTokens >= 1000) { // 1 token = 1000 units
-                return tokens.compareAndSet(currentTokens, currentTokens - 1000);
-            }
-            return false;
+    public List<ReadingCoverageDTO> getTopCoverage(int limit) {
+        int size = Math.max(1, limit);
+        long now = now();
+        PriorityQueue<ReadingCoverageDTO> top =
+                new PriorityQueue<>(size + 1, Comparator.comparingDouble(ReadingCoverageDTO::getCoverage));
+
+        for (Map.Entry<Long, UserActivity> user : activityByUser.entrySet()) {
+            user.getValue().windows.forEach((bookId, window) -> {
+                AccessPatternWindow.Coverage coverage = window.coverage(now);
+                if (coverage != null && coverage.servedBlocks() > 0) {
+                    top.add(toCoverageDto(user.getKey(), bookId, coverage, now));
+                    if (top.size() > size) {
+                        top.poll();
+                    }
+                }
+            });
         }
 
-        public int getAvailableTokens() {
-            refill();
-            return (int) (tokens.get() / 1000);
-        }
+        List<ReadingCoverageDTO> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingDouble(ReadingCoverageDTO::getCoverage).reversed());
+        return result;
+    }
 
-        public Instant getLastRefill() {
-            return lastRefill;
-        }
+    private ReadingCoverageDTO toCoverageDto(Long userId, Long bookId, AccessPatternWindow.Coverage coverage, long now) {
+        return ReadingCoverageDTO.builder()
+                .userId(userId)
+                .bookId(bookId)
+                .contentLength(coverage.contentLength())
+                .blockSize(coverage.blockSize())
+                .totalBlocks(coverage.blocks())
+                .servedBlocks(coverage.servedBlocks())
+                .coverage(coverage.fraction())
+                .coverageWindowSeconds(TimeUnit.MILLISECONDS.toSeconds(detectorLimits.coverageWindowMillis()))
+                .lastActivity(LocalDateTime.now().minus(Duration.ofMillis(now - coverage.lastActivity())))
+                .build();
+    }
 
-        private void refill() {
-            Instant now = Instant.now();
-            Instant last = lastRefill;
+    private void report(Long userId, Long bookId, Assessment assessment) {
+        log.warn("Suspicious activity detected for user {} on book {}: {}", userId, bookId, assessment.reason());
+        audit.info("suspicious-access verdict={} score={} signal={} sequential={} user={} book={} reason=\"{}\"",
+                assessment.verdict(), String.format("%.2f", assessment.score()), assessment.signal(),
+                String.format("%.2f", assessment.sequentialRatio()), userId, bookId, assessment.reason());
 
-            if (ChronoUnit.MILLIS.between(last, now) > 100) { // refill every 100ms
-                double elapsed = ChronoUnit.MILLIS.between(last, now) / 1000.0;
-                long tokensToAdd = (long) (elapsed * refillRate * 1000);
+        suspiciousScores.record(assessment.score());
+        meterRegistry.counter("readify.ratelimit.suspicious",
+                "verdict", assessment.verdict().name().toLowerCase(),
+                "signal", assessment.signal().name().toLowerCase()).increment();
+    }
 
-                if (tokensToAdd > 0) {
-                    long currentTokens = tokens.get();
-                    long newTokens = Math.min(capacity * 1000L, currentTokens + tokensToAdd);
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - clockOriginNanos);
+    }
 
-                    if (tokens.compareAndSet(currentTokens, newTokens)) {
-                        lastRefill = now;
-                    }
-                }
-            }
-        }
+    private static ToLongFunction<UserActivity> activityAge(long now) {
+        return activity -> now - activity.lastActivity;
     }
 
     /**
-     * Tracks suspicious download patterns
+     * Access windows of one user, per book.
      */
-    private class SuspiciousActivityTracker {
-        private final AtomicLong requestCount = new AtomicLong(0);
-        private final AtomicLong totalBytesRequested = new AtomicLong(0);
-        private volatile Instant firstRequest = Instant.now();
-        private volatile Instant lastActivity = Instant.now();
-        private volatile long lastRangeEnd = -1;
-        private volatile boolean isSequential = true;
-
-        public SuspiciousActivityResult recordRequest(long rangeStart, long rangeEnd) {
-            lastActivity = Instant.now();
-            long requests = requestCount.incrementAndGet();
-            long bytes = totalBytesRequested.addAndGet(rangeEnd - rangeStart + 1);
-
-            // Check if requests are sequential (normal reading pattern)
-            if (lastRangeEnd != -1 && rangeStart != lastRangeEnd + 1) {
-                isSequential = false;
-            }
-            lastRangeEnd = rangeEnd;
-
-            long timeSpanMinutes = ChronoUnit.MINUTES.between(firstRequest, lastActivity);
-
-            // Suspicious patterns
-            if (requests > suspiciousThreshold) {
-                return new SuspiciousActivityResult(true, true,
-                    "Too many requests in session: " + requests);
-            }
-
-            if (timeSpanMinutes > 0 && requests / timeSpanMinutes > 50) {
-                return new SuspiciousActivityResult(true, true,
-                    "High request rate: " + (requests / timeSpanMinutes) + " req/min");
-            }
-
-            if (!isSequential && requests > 20) {
-                return new SuspiciousActivityResult(true, false,
-                    "Non-sequential access pattern detected");
-            }
-
-            return new SuspiciousActivityResult(false, false, null);
-        }
-
-        public Instant getLastActivity() {
-            return lastActivity;
+    private class UserActivity {
+        private final ConcurrentMap<Long, AccessPatternWindow> windows = new ConcurrentHashMap<>();
+        private volatile long lastActivity = now();
+
+        private AccessPatternWindow addWindow(Long bookId, long now) {
+            // A user only opens a new book now and then; drop the books they stopped reading
+            windows.values().removeIf(window -> now - window.getLastActivity() >= idleCutoffMillis);
+            return windows.computeIfAbsent(bookId, id -> new AccessPatternWindow(detectorWindowMillis, now));
         }
     }
 
     public static class RateLimitResult {
+        private static final RateLimitResult ALLOWED = new RateLimitResult(true, null, false);
+
         private final boolean allowed;
         private final String reason;
         private final boolean warning;
@@ -287,7 +339,7 @@ public class RateLimitingService {
         }
 
         public static RateLimitResult allowed() {
-            return new RateLimitResult(true, null, false);
+            return ALLOWED;
         }
 
         public static RateLimitResult allowedWithWarning(String reason) {
@@ -321,20 +373,4 @@ public class RateLimitingService {
         public int getSessionTokensAvailable() { return sessionTokensAvailable; }
         public boolean isSuspended() { return suspended; }
     }
-
-    private static class SuspiciousActivityResult {
-        private final boolean suspicious;
-        private final boolean shouldBlock;
-        private final String reason;
-
-        public SuspiciousActivityResult(boolean suspicious, boolean shouldBlock, String reason) {
-            this.suspicious = suspicious;
-            this.shouldBlock = shouldBlock;
-            this.reason = reason;
-        }
-
-        public boolean isSuspicious() { return suspicious; }
-        public boolean shouldBlock() { return shouldBlock; }
-        public String getReason() { return reason; }
-    }
-}
\ No newline at end of file
+}
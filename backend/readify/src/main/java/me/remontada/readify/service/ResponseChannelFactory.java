@@ -0,0 +1,24 @@
+package me.remontada.readify.service;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Adapts a response stream to a channel, so {@link PdfRangeStreamer} can hand mapped segments and
+ * file channels to it as {@link java.nio.ByteBuffer}s. The servlet container may register an
+ * implementation that passes buffers to its connector without a heap copy; {@link #DEFAULT} works
+ * with any stream.
+ */
+@FunctionalInterface
+public interface ResponseChannelFactory {
+
+    ResponseChannelFactory DEFAULT = out -> out instanceof WritableByteChannel channel
+            ? channel
+            : Channels.newChannel(out);
+
+    /**
+     * @return a channel writing to {@code out}; closing it must not close the stream
+     */
+    WritableByteChannel open(OutputStream out);
+}
@@ -0,0 +1,332 @@
+package me.remontada.readify.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the schema the application manages by hand, next to the tables Hibernate creates from
+ * the entities.
+ *
+ * <p>Migrations are numbered and run once, in order; applied versions are recorded in
+ * {@code readify_schema_migrations}. Every migration is also written to be idempotent, so a
+ * database set up before this table existed is brought in line without duplicate work. A
+ * transactional migration and its history row commit together. A non-transactional one, such as
+ * {@code CREATE INDEX CONCURRENTLY}, is recorded only after it has succeeded.</p>
+ *
+ * <p>Nodes starting together serialize on a session-level advisory lock. The lock is polled rather
+ * than waited for, because a node blocked inside {@code pg_advisory_lock} holds a snapshot that a
+ * concurrent index build on the lock holder would wait for.</p>
+ *
+ * <p>Runs after Hibernate has updated the schema, since several migrations alter entity tables.
+ * Beans that need these tables at startup inject the runner so it runs first.</p>
+ */
+@Slf4j
+@Component
+public class SchemaMigrationRunner {
+
+    private static final String CREATE_HISTORY = """
+            CREATE TABLE IF NOT EXISTS readify_schema_migrations (
+                version INT PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                applied_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+            )""";
+
+    private static final String SELECT_APPLIED = "SELECT version FROM readify_schema_migrations";
+
+    private static final String INSERT_APPLIED =
+            "INSERT INTO readify_schema_migrations (version, description) VALUES (?, ?)";
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(hashtext('readify_schema_migrations'))";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(hashtext('readify_schema_migrations'))";
+    private static final long LOCK_POLL_MILLIS = 500;
+
+    // V1: streaming session store (app.streaming.session-store=jdbc)
+    private static final String CREATE_STREAMING_SESSIONS = """
+            CREATE UNLOGGED TABLE IF NOT EXISTS streaming_sessions (
+                token VARCHAR(64) PRIMARY KEY,
+                user_id BIGINT NOT NULL,
+                book_id BIGINT NOT NULL,
+                issued_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                watermark_text VARCHAR(1000) NOT NULL,
+                watermark_signature VARCHAR(128) NOT NULL,
+                read_count_registered BOOLEAN NOT NULL DEFAULT FALSE
+            )""";
+
+    private static final String CREATE_STREAMING_SESSIONS_EXPIRY_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_streaming_sessions_expires_at ON streaming_sessions (expires_at)";
+
+    // V2: rate limit store (app.security.rate-limit.store=jdbc)
+    private static final String CREATE_RATE_LIMIT_WINDOWS = """
+            CREATE UNLOGGED TABLE IF NOT EXISTS rate_limit_windows (
+                limit_name VARCHAR(32) NOT NULL,
+                limit_key VARCHAR(128) NOT NULL,
+                window_start BIGINT NOT NULL,
+                used INT NOT NULL,
+                expires_at BIGINT NOT NULL,
+                PRIMARY KEY (limit_name, limit_key, window_start)
+            )""";
+
+    private static final String CREATE_RATE_LIMIT_WINDOWS_EXPIRY_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_rate_limit_windows_expires_at ON rate_limit_windows (expires_at)";
+
+    private static final String CREATE_RATE_LIMIT_DAILY_ACCESS = """
+            CREATE TABLE IF NOT EXISTS rate_limit_daily_access (
+                subject VARCHAR(64) NOT NULL,
+                access_date DATE NOT NULL,
+                item_id BIGINT NOT NULL,
+                PRIMARY KEY (subject, access_date, item_id)
+            )""";
+
+    private static final String CREATE_RATE_LIMIT_DAILY_ACCESS_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_rate_limit_daily_access_date ON rate_limit_daily_access (access_date)";
+
+    // V3: unique book-day rows in book_analytics
+    public static final String BOOK_ANALYTICS_UNIQUE_KEY = "uk_book_analytics_book_date";
+
+    private static final String BOOK_ANALYTICS_KEY_EXISTS =
+            "SELECT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = '" + BOOK_ANALYTICS_UNIQUE_KEY + "')";
+
+    // Blocks writers while duplicates are merged, readers carry on
+    private static final String LOCK_BOOK_ANALYTICS = "LOCK TABLE book_analytics IN SHARE ROW EXCLUSIVE MODE";
+
+    private static final String MERGE_BOOK_ANALYTICS_DUPLICATES = """
+            WITH groups AS (
+                SELECT MIN(id) AS keep_id, book_id, analytics_date,
+                       SUM(daily_clicks) AS clicks, SUM(daily_unique_readers) AS readers,
+                       SUM(daily_sessions) AS sessions, SUM(daily_reading_minutes) AS minutes
+                FROM book_analytics
+                GROUP BY book_id, analytics_date
+                HAVING COUNT(*) > 1
+            ), merged AS (
+                UPDATE book_analytics ba SET daily_clicks = g.clicks, daily_unique_readers = g.readers,
+                       daily_sessions = g.sessions, daily_reading_minutes = g.minutes, updated_at = now()
+                FROM groups g
+                WHERE ba.id = g.keep_id
+                RETURNING g.keep_id, g.book_id, g.analytics_date
+            )
+            DELETE FROM book_analytics ba USING merged m
+            WHERE ba.book_id = m.book_id AND ba.analytics_date = m.analytics_date AND ba.id <> m.keep_id""";
+
+    private static final String ADD_BOOK_ANALYTICS_UNIQUE_KEY = "ALTER TABLE book_analytics ADD CONSTRAINT "
+            + BOOK_ANALYTICS_UNIQUE_KEY + " UNIQUE (book_id, analytics_date)";
+
+    // V4: the rollup reads one day of sessions at a time; built without blocking session writes
+    private static final String SESSION_START_INDEX = "idx_reading_sessions_start";
+
+    private static final String CREATE_SESSION_START_INDEX = "CREATE INDEX CONCURRENTLY IF NOT EXISTS "
+            + SESSION_START_INDEX + " ON reading_sessions (session_start, book_id)";
+
+    // A failed concurrent build leaves an invalid index behind that IF NOT EXISTS would accept
+    private static final String INDEX_VALID = """
+            SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE c.relname = ?""";
+
+    private static final String DROP_SESSION_START_INDEX = "DROP INDEX CONCURRENTLY IF EXISTS " + SESSION_START_INDEX;
+
+    // V5: analytics fact tables, partitions are created by AnalyticsFactStore
+    private static final String CREATE_FACT_STATE = """
+            CREATE TABLE IF NOT EXISTS analytics_fact_state (
+                id SMALLINT PRIMARY KEY,
+                complete_through DATE NOT NULL,
+                retained_from DATE NOT NULL
+            )""";
+
+    private static final String CREATE_BOOK_FACTS = """
+            CREATE TABLE IF NOT EXISTS analytics_book_day (
+                day DATE NOT NULL,
+                book_id BIGINT NOT NULL,
+                publisher_id BIGINT NOT NULL,
+                category_id BIGINT NOT NULL,
+                clicks BIGINT NOT NULL,
+                reading_minutes BIGINT NOT NULL,
+                sessions BIGINT NOT NULL,
+                unique_readers BIGINT NOT NULL,
+                PRIMARY KEY (day, book_id)
+            ) PARTITION BY RANGE (day)""";
+
+    // Publisher reports are answered from the index alone
+    private static final String CREATE_BOOK_FACTS_PUBLISHER_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_analytics_book_day_publisher ON analytics_book_day " +
+            "(publisher_id, day) INCLUDE (book_id, clicks, reading_minutes)";
+
+    private static final String CREATE_BOOK_FACTS_CATEGORY_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_analytics_book_day_category ON analytics_book_day " +
+            "(category_id, day) INCLUDE (book_id, clicks, reading_minutes)";
+
+    private static final String CREATE_READER_FACTS = """
+            CREATE TABLE IF NOT EXISTS analytics_reader_day (
+                day DATE NOT NULL,
+                user_id BIGINT NOT NULL,
+                reading_minutes BIGINT NOT NULL,
+                sessions BIGINT NOT NULL,
+                PRIMARY KEY (day, user_id)
+            ) PARTITION BY RANGE (day)""";
+
+    // V6: authorization invalidations shared by the streaming nodes, logged so a crash cannot lose one
+    private static final String CREATE_STREAMING_AUTHORIZATION_EPOCHS = """
+            CREATE TABLE IF NOT EXISTS streaming_authorization_epochs (
+                scope VARCHAR(8) NOT NULL,
+                target_id BIGINT NOT NULL,
+                epoch BIGINT NOT NULL,
+                updated_at TIMESTAMPTZ NOT NULL,
+                PRIMARY KEY (scope, target_id)
+            )""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Migration> migrations;
+
+    /**
+     * @param entityManagerFactory injected so Hibernate's schema update runs first
+     */
+    @Autowired
+    public SchemaMigrationRunner(JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.migrations = List.of(
+                Migration.sql(1, "streaming session store", CREATE_STREAMING_SESSIONS,
+                        CREATE_STREAMING_SESSIONS_EXPIRY_INDEX),
+                Migration.sql(2, "rate limit store", CREATE_RATE_LIMIT_WINDOWS,
+                        CREATE_RATE_LIMIT_WINDOWS_EXPIRY_INDEX, CREATE_RATE_LIMIT_DAILY_ACCESS,
+                        CREATE_RATE_LIMIT_DAILY_ACCESS_DATE_INDEX),
+                new Migration(3, "unique book_analytics book-day", true, this::addBookAnalyticsUniqueKey),
+                new Migration(4, "reading_sessions session_start index", false, this::createSessionStartIndex),
+                Migration.sql(5, "analytics fact tables", CREATE_FACT_STATE, CREATE_BOOK_FACTS,
+                        CREATE_BOOK_FACTS_PUBLISHER_INDEX, CREATE_BOOK_FACTS_CATEGORY_INDEX, CREATE_READER_FACTS),
+                Migration.sql(6, "streaming authorization epochs", CREATE_STREAMING_AUTHORIZATION_EPOCHS)
+        );
+    }
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute(CREATE_HISTORY);
+        if (pending().isEmpty()) {
+            return;
+        }
+
+        try (Connection lockConnection = dataSource.getConnection()) {
+            lock(lockConnection);
+            try {
+                // Another node may have applied some while this one waited
+                for (Migration migration : pending()) {
+                    apply(migration);
+                }
+            } finally {
+                unlock(lockConnection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Schema migration lock failed", e);
+        }
+    }
+
+    private List<Migration> pending() {
+        Set<Integer> applied = jdbcTemplate.queryForList(SELECT_APPLIED, Integer.class).stream()
+                .collect(Collectors.toSet());
+        return migrations.stream().filter(migration -> !applied.contains(migration.version())).toList();
+    }
+
+    private void apply(Migration migration) {
+        long started = System.nanoTime();
+        if (migration.transactional()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                migration.apply().accept(jdbcTemplate);
+                jdbcTemplate.update(INSERT_APPLIED, migration.version(), migration.description());
+            });
+        } else {
+            migration.apply().accept(jdbcTemplate);
+            jdbcTemplate.update(INSERT_APPLIED, migration.version(), migration.description());
+        }
+        log.info("Applied schema migration V{} ({}) in {} ms", migration.version(), migration.description(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Merge rows created twice for the same book and day by concurrent clicks, summing their
+     * counters into the oldest row, then add the key. The table lock keeps new duplicates out
+     * in between.
+     */
+    private void addBookAnalyticsUniqueKey(JdbcTemplate jdbc) {
+        if (Boolean.TRUE.equals(jdbc.queryForObject(BOOK_ANALYTICS_KEY_EXISTS, Boolean.class))) {
+            return;
+        }
+        jdbc.execute(LOCK_BOOK_ANALYTICS);
+        int removed = jdbc.update(MERGE_BOOK_ANALYTICS_DUPLICATES);
+        jdbc.execute(ADD_BOOK_ANALYTICS_UNIQUE_KEY);
+        log.info("Added unique key {} to book_analytics, merged away {} duplicate rows",
+                BOOK_ANALYTICS_UNIQUE_KEY, removed);
+    }
+
+    private void createSessionStartIndex(JdbcTemplate jdbc) {
+        List<Boolean> valid = jdbc.queryForList(INDEX_VALID, Boolean.class, SESSION_START_INDEX);
+        if (!valid.isEmpty() && !Boolean.TRUE.equals(valid.get(0))) {
+            log.warn("Dropping invalid index {} left by an interrupted build", SESSION_START_INDEX);
+            jdbc.execute(DROP_SESSION_START_INDEX);
+        }
+        jdbc.execute(CREATE_SESSION_START_INDEX);
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            boolean waiting = false;
+            while (true) {
+                try (ResultSet result = statement.executeQuery(TRY_LOCK)) {
+                    if (result.next() && result.getBoolean(1)) {
+                        return;
+                    }
+                }
+                if (!waiting) {
+                    log.info("Waiting for another node to finish schema migrations");
+                    waiting = true;
+                }
+                try {
+                    Thread.sleep(LOCK_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the schema migration lock", e);
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(UNLOCK);
+        }
+    }
+
+    /**
+     * @param transactional whether the statements and the history row run in one transaction
+     */
+    private record Migration(int version, String description, boolean transactional, Consumer<JdbcTemplate> apply) {
+
+        static Migration sql(int version, String description, String... statements) {
+            return new Migration(version, description, true, jdbc -> {
+                for (String statement : statements) {
+                    jdbc.execute(statement);
+                }
+            });
+        }
+    }
+}
@@ -1,58 +1,101 @@
 package me.remontada.readify.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import me.remontada.readify.model.Book;
 import me.remontada.readify.model.User;
+import me.remontada.readify.service.StreamingSessionStore.InvalidationScope;
+import me.remontada.readify.util.KeyEvictor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.Base64;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
- * In-memory storage for short lived streaming sessions used to authorise PDF range requests.
+ * Issues and validates short lived streaming sessions used to authorise PDF range requests.
  *
  * <p>The controller exposes a temporary token to the client which must be presented alongside a
  * watermark signature for every chunk request. This service keeps track of the issued tokens,
  * verifies that they belong to the expected user/book combination and prevents repeated read count
  * increments for the same viewing session.</p>
+ *
+ * <p>Sessions are kept in a {@link StreamingSessionStore}: in memory for a single node, or shared
+ * through the database so that any node can serve a session. A scheduled sweeper removes expired
+ * sessions oldest first in bounded batches, so opening a session never scans the whole table.</p>
+ *
+ * <p>Authorization snapshots are kept by this service per session token, apart from the session
+ * instances the store hands out, so they live as long as the session whether or not the store
+ * caches instances. Revoking access clears the snapshots on this node and is published through
+ * the store, which delivers it to the other nodes; while a shared store cannot tell whether it
+ * is receiving those invalidations, no snapshot is trusted.</p>
  */
 @Slf4j
 @Service
 public class StreamingSessionService {
 
+    private static final long DEFAULT_SESSION_TTL_SECONDS = 7200;
+    // Shared with the session stores, so they all agree on the session lifetime
+    static final String SESSION_TTL_SECONDS =
+            "${app.streaming.session-ttl-seconds:" + DEFAULT_SESSION_TTL_SECONDS + "}";
+
     private static final DateTimeFormatter WATERMARK_TIMESTAMP_FORMAT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneOffset.UTC);
 
     private final Duration sessionTtl;
-    private final byte[] hmacKey;
-    private final ConcurrentMap<String, StreamingSession> sessions = new ConcurrentHashMap<>();
+    private final WatermarkSigner signer;
+    private final int maxExpiriesPerSweep;
+    private final StreamingSessionStore sessionStore;
+    private final LongAdder expiredSessions = new LongAdder();
+    private final Timer sweepTimer;
+
+    // Snapshots by session token, held by this node only
+    private final ConcurrentMap<String, AuthorizationSnapshot> authorizations = new ConcurrentHashMap<>();
+    private final KeyEvictor<String, AuthorizationSnapshot> expiredAuthorizations =
+            new KeyEvictor<>(authorizations, Integer.MAX_VALUE);
+
+    /**
+     * Bumped on every authorization invalidation. A snapshot is only stored when no invalidation
+     * happened while its user/book data was being loaded, so a revoke can never be overwritten by
+     * a request that read the database just before it.
+     */
+    private final AtomicLong authorizationEpoch = new AtomicLong();
 
     public StreamingSessionService(
-            @Value("${app.streaming.session-ttl-seconds:7200}") long sessionTtlSeconds,
+            @Value(SESSION_TTL_SECONDS) long sessionTtlSeconds,
             @Value("${app.streaming.watermark-secret:}") String watermarkSecret,
-            @Value("${readify.jwt.secret:readify-default-secret}") String fallbackSecret) {
+            @Value("${readify.jwt.secret:readify-default-secret}") String fallbackSecret,
+            @Value("${app.streaming.session-sweep.max-per-run:10000}") int maxExpiriesPerSweep,
+            StreamingSessionStore sessionStore,
+            MeterRegistry meterRegistry) {
 
         if (sessionTtlSeconds <= 0) {
             log.warn("Invalid streaming session TTL supplied ({}). Falling back to 2 hours.", sessionTtlSeconds);
-            sessionTtlSeconds = 7200;
         }
 
-        this.sessionTtl = Duration.ofSeconds(sessionTtlSeconds);
+        this.sessionTtl = sessionTtl(sessionTtlSeconds);
 
         String secretToUse = watermarkSecret != null && !watermarkSecret.isBlank()
                 ? watermarkSecret
@@ -62,7 +105,22 @@ public class StreamingSessionService {
             throw new IllegalStateException("Watermark secret must not be empty");
         }
 
-        this.hmacKey = secretToUse.getBytes(StandardCharsets.UTF_8);
+        // Pool sized to the carrier threads; bursts beyond it create short-lived Macs instead of blocking
+        this.signer = new WatermarkSigner(secretToUse.getBytes(StandardCharsets.UTF_8),
+                Runtime.getRuntime().availableProcessors() * 2);
+        this.maxExpiriesPerSweep = Math.max(1, maxExpiriesPerSweep);
+        this.sessionStore = sessionStore;
+        sessionStore.onRemoteInvalidation(this::applyRemoteInvalidation);
+
+        Gauge.builder("readify.streaming.sessions.live", sessionStore, StreamingSessionStore::localSize)
+                .description("Streaming sessions currently held in memory on this node")
+                .register(meterRegistry);
+        FunctionCounter.builder("readify.streaming.sessions.expired", expiredSessions, LongAdder::sum)
+                .description("Streaming sessions removed after their TTL")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("readify.streaming.sessions.sweep")
+                .description("Duration of one expired-session sweep")
+                .register(meterRegistry);
     }
 
     /**
@@ -72,8 +130,6 @@ public class StreamingSessionService {
         Objects.requireNonNull(user, "User is required to open a streaming session");
         Objects.requireNonNull(book, "Book is required to open a streaming session");
 
-        cleanupExpiredSessions();
-
         Instant issuedAt = Instant.now();
         Instant expiresAt = issuedAt.plus(sessionTtl);
         String token = UUID.randomUUID().toString();
@@ -91,7 +147,7 @@ public class StreamingSessionService {
                 signature
         );
 
-        sessions.put(token, session);
+        sessionStore.save(session);
 
         return new StreamingSessionDescriptor(token, issuedAt, expiresAt, watermarkText, signature);
     }
@@ -118,12 +174,12 @@ public class StreamingSessionService {
             return Optional.empty();
         }
 
-        StreamingSession session = sessions.get(token);
+        StreamingSession session = sessionStore.find(token).orElse(null);
         Instant now = Instant.now();
 
         if (session != null) {
             if (now.isAfter(session.getExpiresAt())) {
-                sessions.remove(token);
+                removeExpired(session);
                 return Optional.empty();
             }
 
@@ -136,7 +192,7 @@ public class StreamingSessionService {
                 return Optional.empty();
             }
 
-            if (!session.getWatermarkSignature().equals(providedSignature)) {
+            if (!WatermarkSigner.matches(session.getWatermarkSignature(), providedSignature)) {
                 return Optional.empty();
             }
 
@@ -152,7 +208,7 @@ public class StreamingSessionService {
         }
 
         String expectedSignature = computeSignature(expectedUserId, expectedBookId, token, issuedAt);
-        if (!expectedSignature.equals(providedSignature)) {
+        if (!WatermarkSigner.matches(expectedSignature, providedSignature)) {
             return Optional.empty();
         }
 
@@ -170,8 +226,141 @@ public class StreamingSessionService {
                 providedSignature
         );
 
-        StreamingSession existing = sessions.putIfAbsent(token, rehydratedSession);
-        return Optional.ofNullable(existing != null ? existing : rehydratedSession);
+        return Optional.of(sessionStore.saveIfAbsent(rehydratedSession));
+    }
+
+    /**
+     * Current authorization epoch; capture it before loading the user and book whose state will be
+     * passed to {@link #recordAuthorization}.
+     */
+    public long currentAuthorizationEpoch() {
+        return authorizationEpoch.get();
+    }
+
+    /**
+     * Attach an authorization snapshot to the session after the full (database backed) access
+     * check has passed, so following chunk requests for the same session can be authorized from
+     * memory. Ignored when an invalidation happened since {@code epoch} was captured.
+     */
+    public void recordAuthorization(StreamingSession session, User user, Book book,
+                                    Path pdfPath, long fileSize, long epoch) {
+        AuthorizationSnapshot snapshot = new AuthorizationSnapshot(
+                user.getId(),
+                book.getId(),
+                session.getExpiresAt(),
+                user.getEmail(),
+                user.hasActiveSubscription(),
+                Boolean.TRUE.equals(book.getIsAvailable()),
+                Boolean.TRUE.equals(book.getIsPremium()),
+                book.getTitle(),
+                pdfPath,
+                fileSize
+        );
+
+        if (!snapshot.permitsStreaming() || authorizationEpoch.get() != epoch) {
+            return;
+        }
+
+        String token = session.getToken();
+        authorizations.put(token, snapshot);
+
+        // An invalidation may have raced with the put above
+        if (authorizationEpoch.get() != epoch) {
+            authorizations.remove(token, snapshot);
+        }
+    }
+
+    /**
+     * Fast path for chunk requests: return the session when the token and watermark signature are
+     * valid for the book, the caller is the session owner, and the session carries an authorization
+     * snapshot that still permits streaming. No user or book lookups are involved.
+     */
+    public Optional<AuthorizedSession> findAuthorizedSession(String token,
+                                                             Long bookId,
+                                                             String providedSignature,
+                                                             String principalEmail) {
+        if (token == null || token.isBlank() || providedSignature == null || principalEmail == null) {
+            return Optional.empty();
+        }
+
+        AuthorizationSnapshot snapshot = authorizations.get(token);
+        if (snapshot == null || !sessionStore.invalidationsCurrent()) {
+            return Optional.empty();
+        }
+
+        StreamingSession session = sessionStore.find(token).orElse(null);
+        if (session == null || Instant.now().isAfter(session.getExpiresAt())) {
+            return Optional.empty();
+        }
+
+        if (!snapshot.permitsStreaming()
+                || !Objects.equals(bookId, session.getBookId())
+                || !principalEmail.equalsIgnoreCase(snapshot.userEmail())
+                || !WatermarkSigner.matches(session.getWatermarkSignature(), providedSignature)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new AuthorizedSession(session, snapshot));
+    }
+
+    /**
+     * Drop authorization snapshots of every session owned by the user, on every node, e.g. after
+     * a subscription was revoked or the account was deactivated. The sessions stay valid but the
+     * next chunk request goes through the full access check again.
+     */
+    public void invalidateUserAuthorizations(Long userId) {
+        invalidateAuthorizations(InvalidationScope.USER, userId);
+    }
+
+    /**
+     * Drop authorization snapshots of every session for the book, on every node, e.g. after it
+     * was disabled, switched to premium or its PDF was replaced.
+     */
+    public void invalidateBookAuthorizations(Long bookId) {
+        invalidateAuthorizations(InvalidationScope.BOOK, bookId);
+    }
+
+    /**
+     * Clear matching snapshots now and, inside a transaction, once more after commit: a request
+     * that re-checks access before the commit still sees the old database state. Other nodes are
+     * told through the store when the transaction commits.
+     */
+    private void invalidateAuthorizations(InvalidationScope scope, Long id) {
+        authorizationEpoch.incrementAndGet();
+        int cleared = clearAuthorizations(scope, id);
+        log.debug("Invalidated {} streaming authorizations for {} {}", cleared, scope, id);
+        sessionStore.publishInvalidation(scope, id);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    authorizationEpoch.incrementAndGet();
+                    clearAuthorizations(scope, id);
+                }
+            });
+        }
+    }
+
+    private void applyRemoteInvalidation(InvalidationScope scope, Long id) {
+        authorizationEpoch.incrementAndGet();
+        int cleared = clearAuthorizations(scope, id);
+        log.debug("Invalidated {} streaming authorizations for {} {} on another node's request", cleared, scope, id);
+    }
+
+    private int clearAuthorizations(InvalidationScope scope, Long id) {
+        Predicate<AuthorizationSnapshot> filter = scope == InvalidationScope.USER
+                ? snapshot -> Objects.equals(id, snapshot.userId())
+                : snapshot -> Objects.equals(id, snapshot.bookId());
+        AtomicInteger cleared = new AtomicInteger();
+        authorizations.values().removeIf(snapshot -> {
+            boolean matches = filter.test(snapshot);
+            if (matches) {
+                cleared.incrementAndGet();
+            }
+            return matches;
+        });
+        return cleared.get();
     }
 
     /**
@@ -182,35 +371,60 @@ public class StreamingSessionService {
             return false;
         }
 
-        StreamingSession session = sessions.get(token);
-        if (session == null) {
-            return false;
+        return sessionStore.find(token)
+                .map(sessionStore::markReadCountRegistered)
+                .orElse(false);
+    }
+
+    /**
+     * Remove expired sessions, oldest first, stopping at the first session that is still valid or
+     * after {@code max-per-run} removals. The rest is picked up by the next run.
+     */
+    @Scheduled(fixedDelayString = "${app.streaming.session-sweep.interval-ms:5000}")
+    public void sweepExpiredSessions() {
+        long started = System.nanoTime();
+        int removed = 0;
+        try {
+            Instant now = Instant.now();
+            removed = sessionStore.removeExpired(now, maxExpiriesPerSweep);
+            expiredSessions.add(removed);
+            long nowMillis = now.toEpochMilli();
+            expiredAuthorizations.removeOlderThan(
+                    snapshot -> nowMillis - snapshot.expiresAt().toEpochMilli(), 0, maxExpiriesPerSweep);
+        } catch (RuntimeException e) {
+            log.warn("Expired streaming session sweep failed: {}", e.getMessage());
+        } finally {
+            sweepTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
         }
 
-        return session.getReadCountRegistered().compareAndSet(false, true);
+        if (removed > 0) {
+            log.debug("Removed {} expired streaming sessions, {} held locally", removed, sessionStore.localSize());
+        }
     }
 
-    private void cleanupExpiredSessions() {
-        Instant now = Instant.now();
-        sessions.entrySet().removeIf(entry -> now.isAfter(entry.getValue().getExpiresAt()));
+    public int getLiveSessionCount() {
+        return sessionStore.localSize();
     }
 
-    private String computeSignature(Long userId, Long bookId, String token, Instant issuedAt) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(hmacKey, "HmacSHA256"));
-            String payload = String.format("uid:%s|book:%s|token:%s|issued:%s",
-                    userId,
-                    bookId,
-                    token,
-                    issuedAt.toString());
-            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to compute streaming watermark signature", e);
+    private void removeExpired(StreamingSession session) {
+        authorizations.remove(session.getToken());
+        if (sessionStore.remove(session)) {
+            expiredSessions.increment();
         }
     }
 
+    /**
+     * Session lifetime for the configured {@link #SESSION_TTL_SECONDS}; a non-positive value falls
+     * back to the default.
+     */
+    static Duration sessionTtl(long sessionTtlSeconds) {
+        return Duration.ofSeconds(sessionTtlSeconds > 0 ? sessionTtlSeconds : DEFAULT_SESSION_TTL_SECONDS);
+    }
+
+    private String computeSignature(Long userId, Long bookId, String token, Instant issuedAt) {
+        return signer.sign(userId, bookId, token, issuedAt);
+    }
+
     private String buildWatermarkText(User user, Book book, Instant issuedAt) {
         String userDescriptor = String.format("%s (%s)", user.getFullName(), user.getEmail());
         String timestamp = WATERMARK_TIMESTAMP_FORMAT.format(issuedAt);
@@ -230,6 +444,33 @@ public class StreamingSessionService {
     ) {
     }
 
+    /**
+     * Everything a chunk request needs to be authorized without touching the database,
+     * captured when the session passed the full access check.
+     */
+    public record AuthorizationSnapshot(
+            Long userId,
+            Long bookId,
+            Instant expiresAt,
+            String userEmail,
+            boolean premiumEntitled,
+            boolean bookAvailable,
+            boolean bookPremium,
+            String bookTitle,
+            Path pdfPath,
+            long fileSize
+    ) {
+        public boolean permitsStreaming() {
+            return bookAvailable && (!bookPremium || premiumEntitled);
+        }
+    }
+
+    /**
+     * A session together with the snapshot that authorized it on the fast path.
+     */
+    public record AuthorizedSession(StreamingSession session, AuthorizationSnapshot snapshot) {
+    }
+
     /**
      * Internal representation of an issued session token.
      */
@@ -244,7 +485,7 @@ public class StreamingSessionService {
         private final String watermarkSignature;
         private final AtomicBoolean readCountRegistered = new AtomicBoolean(false);
 
-        private StreamingSession(String token,
+        StreamingSession(String token,
                                  Long userId,
                                  Long bookId,
                                  Instant issuedAt,
@@ -0,0 +1,88 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.service.StreamingSessionService.StreamingSession;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of issued streaming sessions, selected with {@code app.streaming.session-store}:
+ * - memory: sessions live in this JVM only (single node)
+ * - jdbc:   sessions are shared through Postgres, so any node behind the load balancer can serve
+ *           the chunk requests of a session and the read count is registered once per session
+ *
+ * Implementations hand out {@link StreamingSession} instances that may be cached locally.
+ * Authorization snapshots are node-local state kept by {@link StreamingSessionService}; a shared
+ * store also carries the invalidations that tell the other nodes to drop theirs.
+ */
+public interface StreamingSessionStore {
+
+    /**
+     * Session for the token, or empty when it is unknown. Expired sessions may still be returned;
+     * expiry is checked by the caller.
+     */
+    Optional<StreamingSession> find(String token);
+
+    /**
+     * Store a newly issued session. The token must be unique.
+     */
+    void save(StreamingSession session);
+
+    /**
+     * Store a session rebuilt from a signed token unless one is already stored.
+     *
+     * @return the stored session, either the existing one or {@code session}
+     */
+    StreamingSession saveIfAbsent(StreamingSession session);
+
+    /**
+     * Remove the session, if the stored one is still this instance's session.
+     *
+     * @return true when a session was removed
+     */
+    boolean remove(StreamingSession session);
+
+    /**
+     * Flag the session as counted towards the book's total reads.
+     *
+     * @return true only for the first call for the session, across all nodes sharing the store
+     */
+    boolean markReadCountRegistered(StreamingSession session);
+
+    /**
+     * Remove at most {@code limit} sessions that expired before {@code now}, oldest first.
+     *
+     * @return number of sessions removed
+     */
+    int removeExpired(Instant now, int limit);
+
+    /**
+     * Tell the other nodes that authorization snapshots for the user or book are no longer valid.
+     * Joins the caller's transaction, so the other nodes act on it once the change that caused it
+     * has committed. A single-node store has nobody to tell.
+     */
+    default void publishInvalidation(InvalidationScope scope, Long id) {
+    }
+
+    /**
+     * Register the callback for invalidations published by other nodes.
+     */
+    default void onRemoteInvalidation(BiConsumer<InvalidationScope, Long> listener) {
+    }
+
+    /**
+     * Whether invalidations from other nodes are currently being received. While they are not,
+     * snapshots held by this node may be stale and must not be used.
+     */
+    default boolean invalidationsCurrent() {
+        return true;
+    }
+
+    /**
+     * Number of session instances held by this node.
+     */
+    int localSize();
+
+    enum InvalidationScope { USER, BOOK }
+}
@@ -2,6 +2,7 @@ package me.remontada.readify.service;
 
 import me.remontada.readify.model.*;
 import me.remontada.readify.repository.SubscriptionRepository;
+import me.remontada.readify.security.PrincipalCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +37,8 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     private final SubscriptionRepository subscriptionRepository;
     private final PaymentService paymentService;
     private final EmailService emailService;
+    private final StreamingSessionService streamingSessionService;
+    private final PrincipalCache principalCache;
 
     // Pricing configuration from application.properties (in RSD)
     @Value("${readify.subscription.monthly-price:999}")
@@ -53,10 +56,14 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Autowired
     public SubscriptionServiceImpl(SubscriptionRepository subscriptionRepository,
                                    PaymentService paymentService,
-                                   EmailService emailService) {
+                                   EmailService emailService,
+                                   StreamingSessionService streamingSessionService,
+                                   PrincipalCache principalCache) {
         this.subscriptionRepository = subscriptionRepository;
         this.paymentService = paymentService;
         this.emailService = emailService;
+        this.streamingSessionService = streamingSessionService;
+        this.principalCache = principalCache;
     }
 
     /**
@@ -323,6 +330,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         if (!user.hasPermission(Permission.CAN_READ_PREMIUM_BOOKS)) {
             user.getPermissions().add(Permission.CAN_READ_PREMIUM_BOOKS);
             logger.info("Granted CAN_READ_PREMIUM_BOOKS permission to user: {}", user.getEmail());
+            principalCache.invalidate(user);
         }
     }
 
@@ -333,7 +341,10 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         if (user.hasPermission(Permission.CAN_READ_PREMIUM_BOOKS)) {
             user.getPermissions().remove(Permission.CAN_READ_PREMIUM_BOOKS);
             logger.info("Revoked CAN_READ_PREMIUM_BOOKS permission from user: {}", user.getEmail());
+            principalCache.invalidate(user);
         }
+        // Open reading sessions must re-check access on their next chunk request
+        streamingSessionService.invalidateUserAuthorizations(user.getId());
     }
 
     /**
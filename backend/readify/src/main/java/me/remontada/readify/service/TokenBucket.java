@@ -0,0 +1,108 @@
+package me.remontada.readify.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket whose whole state is one {@code long}, updated with compare-and-set.
+ *
+ * <p>State layout: the high 32 bits hold the available whole tokens, the low 32 bits the time of
+ * the last refill in milliseconds on the caller's clock (see {@link #clockMillis(long)}). The
+ * timestamp is compared with wrap-around arithmetic, so it is only ambiguous for buckets left
+ * untouched for more than 49 days, which the rate limiter evicts long before that.</p>
+ *
+ * <p>Refills add whole tokens and move the timestamp forward by the time those tokens took, so
+ * the remainder of a partially refilled token is kept for the next call instead of being lost.
+ * Nothing is allocated on {@link #tryConsume(long)}; contending threads retry until their CAS wins
+ * or the bucket is empty.</p>
+ */
+public final class TokenBucket {
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long TIMESTAMP_MASK = 0xFFFF_FFFFL;
+
+    private final int capacity;
+    private final long refillPerMinute;
+    // Time after which an empty bucket is full again; longer gaps skip the multiplication below
+    private final long fullRefillMillis;
+    private final AtomicLong state;
+
+    public TokenBucket(int refillPerMinute, int capacity, long nowMillis) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerMinute = Math.max(1, refillPerMinute);
+        this.fullRefillMillis = (this.capacity * MILLIS_PER_MINUTE + this.refillPerMinute - 1) / this.refillPerMinute;
+        this.state = new AtomicLong(pack(this.capacity, nowMillis));
+    }
+
+    /**
+     * Milliseconds on the clock buckets are stamped with, from a {@link System#nanoTime()} origin.
+     */
+    public static long clockMillis(long originNanos) {
+        return (System.nanoTime() - originNanos) / 1_000_000L;
+    }
+
+    /**
+     * Take one token if available.
+     *
+     * @param nowMillis current time from {@link #clockMillis(long)}
+     * @return false when the bucket is empty
+     */
+    public boolean tryConsume(long nowMillis) {
+        while (true) {
+            long current = state.get();
+            long refilled = refill(current, nowMillis);
+            int tokens = tokens(refilled);
+            if (tokens < 1) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(tokens - 1, timestamp(refilled)))) {
+                return true;
+            }
+        }
+    }
+
+    public int getAvailableTokens(long nowMillis) {
+        return tokens(refill(state.get(), nowMillis));
+    }
+
+    /**
+     * Milliseconds since the bucket was last refilled or consumed from.
+     */
+    public long idleMillis(long nowMillis) {
+        return (nowMillis - timestamp(state.get())) & TIMESTAMP_MASK;
+    }
+
+    private long refill(long current, long nowMillis) {
+        int tokens = tokens(current);
+        long last = timestamp(current);
+        long elapsed = (nowMillis - last) & TIMESTAMP_MASK;
+
+        if (tokens >= capacity) {
+            // Full: idle time must not accumulate into tokens above capacity
+            return pack(capacity, nowMillis);
+        }
+        if (elapsed >= fullRefillMillis) {
+            return pack(capacity, nowMillis);
+        }
+
+        long added = elapsed * refillPerMinute / MILLIS_PER_MINUTE;
+        if (added == 0) {
+            return current;
+        }
+        if (tokens + added >= capacity) {
+            return pack(capacity, nowMillis);
+        }
+        return pack((int) (tokens + added), last + added * MILLIS_PER_MINUTE / refillPerMinute);
+    }
+
+    private static long pack(int tokens, long timestampMillis) {
+        return ((long) tokens << 32) | (timestampMillis & TIMESTAMP_MASK);
+    }
+
+    private static int tokens(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static long timestamp(long state) {
+        return state & TIMESTAMP_MASK;
+    }
+}
@@ -3,6 +3,7 @@ package me.remontada.readify.service;
 import me.remontada.readify.model.User;
 import me.remontada.readify.model.Permission;
 import me.remontada.readify.repository.UserRepository;
+import me.remontada.readify.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -22,12 +23,17 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final StreamingSessionService streamingSessionService;
+    private final PrincipalCache principalCache;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, EmailService emailService) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, EmailService emailService,
+                           StreamingSessionService streamingSessionService, PrincipalCache principalCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
+        this.streamingSessionService = streamingSessionService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -310,6 +316,8 @@ public class UserServiceImpl implements UserService {
 
         User user = userOpt.get();
         user.setActive(false);
+        streamingSessionService.invalidateUserAuthorizations(id);
+        principalCache.invalidate(user);
         return save(user);
     }
 
@@ -322,6 +330,7 @@ public class UserServiceImpl implements UserService {
 
         User user = userOpt.get();
         user.setActive(true);
+        principalCache.invalidate(user);
         return save(user);
     }
 
@@ -332,6 +341,8 @@ public class UserServiceImpl implements UserService {
             throw new RuntimeException("User not found with id: " + id);
         }
 
+        streamingSessionService.invalidateUserAuthorizations(id);
+        principalCache.invalidate(userOpt.get());
         deleteById(id);
     }
 
@@ -1,19 +1,27 @@
 package me.remontada.readify.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
 @Component
@@ -26,38 +34,90 @@ public class JwtUtil {
     @Value("${readify.jwt.expiration}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-    }
+    @Value("${readify.jwt.claims-cache.max-entries:10000}")
+    private int claimsCacheMaxEntries;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Verified tokens until they expire, keyed by their SHA-256 digest so bearer strings are not kept
+    // on the heap; a cached token skips signature verification and parsing
+    private final ConcurrentMap<TokenDigest, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private KeyEvictor<TokenDigest, VerifiedToken> verifiedTokenEvictor;
 
-    private io.jsonwebtoken.JwtParser buildParser() {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
                 .build();
+        claimsCacheMaxEntries = Math.max(0, claimsCacheMaxEntries);
+        verifiedTokenEvictor = new KeyEvictor<>(verifiedTokens, claimsCacheMaxEntries);
+    }
+
+    /**
+     * Verify the token signature and expiration once and return its claims.
+     * Results are cached until the token expires, so repeated requests with the same bearer token
+     * are not parsed again.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, wrongly signed or expired
+     */
+    public VerifiedToken verify(String token) {
+        if (claimsCacheMaxEntries == 0) {
+            return VerifiedToken.of(extractAllClaims(token));
+        }
+
+        TokenDigest digest = TokenDigest.of(token);
+        VerifiedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (!cached.isExpired(Instant.now())) {
+                return cached;
+            }
+            verifiedTokens.remove(digest, cached);
+            throw new ExpiredJwtException(null, null, "JWT expired at " + cached.expiresAt());
+        }
+
+        VerifiedToken verified = VerifiedToken.of(extractAllClaims(token));
+        if (verified.expiresAt() != null) {
+            verifiedTokens.put(digest, verified);
+            // Over the cap, tokens closest to (or past) their expiry go first
+            long now = System.currentTimeMillis();
+            verifiedTokenEvictor.onInsert(entry -> now - entry.expiresAt().toEpochMilli());
+        }
+        return verified;
     }
 
     public String generateToken(String email) {
+        return generateToken(email, null);
+    }
+
+    /**
+     * Access token for a new session. The user id lets the authentication filter find the cached
+     * principal without a lookup by email.
+     */
+    public String generateToken(String email, Long userId) {
         String sessionId = UUID.randomUUID().toString();
         return Jwts.builder()
                 .setSubject(email)
                 .claim("sessionId", sessionId)
+                .claim("uid", userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public String extractSessionId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("sessionId", String.class);
+        return verify(token).sessionId();
     }
 
     public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).email();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        Instant expiresAt = verify(token).expiresAt();
+        return expiresAt != null ? Date.from(expiresAt) : null;
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -66,7 +126,7 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return buildParser()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -76,8 +136,8 @@ public class JwtUtil {
     }
 
     public Boolean validateToken(String token, String email) {
-        final String tokenEmail = extractEmail(token);
-        return (tokenEmail.equals(email) && !isTokenExpired(token));
+        final VerifiedToken verified = verify(token);
+        return (verified.email().equals(email) && !verified.isExpired(Instant.now()));
     }
 
 
@@ -97,13 +157,13 @@ public class JwtUtil {
                 .claim("type", "refresh")
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 1000L * 60 * 60 * 24 * 30)) // 30 dana
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean validateRefreshToken(String token) {
         try {
-            Claims claims = buildParser()
+            Claims claims = parser
                     .parseSignedClaims(token)
                     .getPayload();
 
@@ -121,7 +181,7 @@ public class JwtUtil {
 
     public String extractEmailFromRefreshToken(String token) {
         try {
-            Claims claims = buildParser()
+            Claims claims = parser
                     .parseSignedClaims(token)
                     .getPayload();
             return claims.getSubject();
@@ -130,4 +190,40 @@ public class JwtUtil {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Claims of a token whose signature has been verified. Immutable, safe to share between requests.
+     */
+    public record VerifiedToken(String email, Long userId, String sessionId, String type, Instant expiresAt) {
+
+        static VerifiedToken of(Claims claims) {
+            Date expiration = claims.getExpiration();
+            return new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get("uid", Long.class),
+                    claims.get("sessionId", String.class),
+                    claims.get("type", String.class),
+                    expiration != null ? expiration.toInstant() : null);
+        }
+
+        public boolean isExpired(Instant now) {
+            return expiresAt != null && !now.isBefore(expiresAt);
+        }
+    }
+
+    /**
+     * SHA-256 digest of a bearer token, used as the cache key instead of the token itself.
+     */
+    private record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String token) {
+            try {
+                ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                        .digest(token.getBytes(StandardCharsets.UTF_8)));
+                return new TokenDigest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package me.remontada.readify.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded eviction for a concurrent map used as a cache or as limiter state.
+ *
+ * <p>Sweeps resume where the previous one stopped and examine at most a given number of entries,
+ * so one maintenance tick does a fixed amount of work however large the map is. The map is also
+ * held under {@code maxKeys}: above it, entries are evicted by approximate LRU, i.e. the least
+ * recently used entry of a small sample taken at the sweep cursor.</p>
+ *
+ * <p>Ages are supplied by the caller per call, in whatever unit the entries are stamped with;
+ * a larger age means less recently used.</p>
+ */
+public final class KeyEvictor<K, V> {
+
+    private static final int SAMPLE_SIZE = 8;
+    // Evictions a request thread does when it finds the map over its cap
+    private static final int INLINE_EVICTIONS = 4;
+
+    private final ConcurrentMap<K, V> map;
+    private final int maxKeys;
+    // Not synchronized, so that request threads can skip eviction while maintenance is running
+    private final ReentrantLock lock = new ReentrantLock();
+    private Iterator<Map.Entry<K, V>> cursor;
+
+    public KeyEvictor(ConcurrentMap<K, V> map, int maxKeys) {
+        this.map = map;
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * Remove entries at least {@code maxAge} old, examining at most {@code budget} entries.
+     *
+     * @return number of entries removed
+     */
+    public int removeOlderThan(ToLongFunction<V> age, long maxAge, int budget) {
+        lock.lock();
+        try {
+            int removed = 0;
+            for (int examined = 0; examined < budget; examined++) {
+                Map.Entry<K, V> entry = advance();
+                if (entry == null) {
+                    break;
+                }
+                if (age.applyAsLong(entry.getValue()) >= maxAge && map.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evict least recently used entries while the map is over its cap, at most {@code budget}.
+     *
+     * @return number of entries evicted
+     */
+    public int evictOverCapacity(ToLongFunction<V> age, int budget) {
+        lock.lock();
+        try {
+            return evictLocked(age, budget);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called after a request added a key: if the map grew past its cap, evict a few entries right
+     * away instead of waiting for the next maintenance tick. Skipped while another thread evicts.
+     */
+    public void onInsert(ToLongFunction<V> age) {
+        if (map.size() > maxKeys && lock.tryLock()) {
+            try {
+                evictLocked(age, INLINE_EVICTIONS);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int evictLocked(ToLongFunction<V> age, int budget) {
+        int evicted = 0;
+        while (evicted < budget && map.size() > maxKeys) {
+            Map.Entry<K, V> oldest = null;
+            long oldestAge = Long.MIN_VALUE;
+
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                Map.Entry<K, V> entry = advance();
+                if (entry == null) {
+                    break;
+                }
+                long entryAge = age.applyAsLong(entry.getValue());
+                if (entryAge > oldestAge) {
+                    oldest = entry;
+                    oldestAge = entryAge;
+                }
+            }
+
+            if (oldest == null) {
+                break;
+            }
+            if (map.remove(oldest.getKey(), oldest.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Next entry at the cursor, wrapping around at the end of the map; null when it is empty.
+     */
+    private Map.Entry<K, V> advance() {
+        if (cursor == null || !cursor.hasNext()) {
+            cursor = map.entrySet().iterator();
+        }
+        return cursor.hasNext() ? cursor.next() : null;
+    }
+}
@@ -0,0 +1,155 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.service.AccessPatternWindow.Assessment;
+import me.remontada.readify.service.AccessPatternWindow.Limits;
+import me.remontada.readify.service.AccessPatternWindow.Signal;
+import me.remontada.readify.service.AccessPatternWindow.Verdict;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class AccessPatternWindowTests {
+
+	private static final long WINDOW_MILLIS = 60_000;
+	private static final long SLOT_MILLIS = WINDOW_MILLIS / AccessPatternWindow.SLOTS;
+	private static final long BLOCK = 4096;
+
+	// Only the request count within the window can trip: 10 requests, rates and bytes are out of reach
+	private static final Limits REQUEST_LIMITS =
+			new Limits(10_000, 10, Long.MAX_VALUE, 1.0, Long.MAX_VALUE, BLOCK, 600_000, 0.75);
+
+	@Test
+	void scoresRequestsWithinTheWindow() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		// Page jumping weighs 0.8: ten requests score 0.8, thirteen 1.04
+		Assessment assessment = jumps(window, 0, 10);
+		assertThat(assessment.verdict()).isEqualTo(Verdict.WARN);
+		assertThat(assessment.signal()).isEqualTo(Signal.RATE);
+		assertThat(assessment.score()).isCloseTo(0.8, within());
+
+		assessment = jumps(window, 0, 3);
+		assertThat(assessment.verdict()).isEqualTo(Verdict.BLOCK);
+	}
+
+	@Test
+	void oldestSlotStillCountsUntilTheRingComesRound() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+		jumps(window, 0, 12);
+
+		// Last slot of the window: the first slot is still inside it
+		Assessment assessment = jumps(window, WINDOW_MILLIS - SLOT_MILLIS, 1);
+
+		assertThat(assessment.shouldBlock()).isTrue();
+	}
+
+	@Test
+	void slotIsResetWhenTheRingComesRound() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+		jumps(window, 0, 12);
+
+		// Same ring position as the first slot, one window later
+		Assessment assessment = jumps(window, WINDOW_MILLIS, 1);
+
+		assertThat(assessment).isSameAs(Assessment.CLEAN);
+	}
+
+	@Test
+	void sequentialReadingWeighsMore() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		Assessment assessment = null;
+		for (int i = 0; i < 9; i++) {
+			assessment = window.record(0, i * BLOCK, (i + 1) * BLOCK - 1, 0, REQUEST_LIMITS);
+		}
+
+		// Nine requests at 1.2
+		assertThat(assessment.sequentialRatio()).isEqualTo(1.0);
+		assertThat(assessment.score()).isCloseTo(1.08, within());
+		assertThat(assessment.shouldBlock()).isTrue();
+	}
+
+	@Test
+	void reportsOncePerSlotUnlessItEscalates() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		assertThat(jumps(window, 0, 10).report()).isTrue();
+		assertThat(jumps(window, 0, 1).report()).isFalse();
+		// WARN to BLOCK
+		assertThat(jumps(window, 0, 2).report()).isTrue();
+		assertThat(jumps(window, 0, 1).report()).isFalse();
+		// Next slot
+		assertThat(jumps(window, SLOT_MILLIS, 1).report()).isTrue();
+	}
+
+	@Test
+	void multipartRequestCountsOnceAndCoversOnlyItsRegions() {
+		Limits limits = new Limits(10_000, 1_000, Long.MAX_VALUE, 1.0, 0, BLOCK, 600_000, 0.75);
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		window.record(0, new long[]{0, BLOCK - 1, 10 * BLOCK, 11 * BLOCK - 1}, 16 * BLOCK, limits);
+
+		AccessPatternWindow.Coverage coverage = window.coverage(0);
+		assertThat(coverage.blocks()).isEqualTo(16);
+		assertThat(coverage.servedBlocks()).isEqualTo(2);
+
+		// Continues after the last region of the multipart request
+		Assessment assessment = window.record(0, 11 * BLOCK, 12 * BLOCK - 1, 16 * BLOCK, limits);
+		assertThat(assessment).isSameAs(Assessment.CLEAN);
+		assertThat(window.coverage(0).servedBlocks()).isEqualTo(3);
+	}
+
+	@Test
+	void smallBooksAreNotCovered() {
+		Limits limits = new Limits(10_000, 1_000, Long.MAX_VALUE, 0.5, 100 * BLOCK, BLOCK, 600_000, 0.75);
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		Assessment assessment = window.record(0, 0, 16 * BLOCK - 1, 16 * BLOCK, limits);
+
+		assertThat(assessment).isSameAs(Assessment.CLEAN);
+		assertThat(window.coverage(0)).isNull();
+	}
+
+	@Test
+	void servingMostOfTheBookTripsCoverage() {
+		Limits limits = new Limits(10_000, 1_000, Long.MAX_VALUE, 0.5, 0, BLOCK, 600_000, 0.75);
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		Assessment assessment = window.record(0, 0, 7 * BLOCK - 1, 16 * BLOCK, limits);
+
+		// 7 of 16 blocks against a limit of half the book
+		assertThat(assessment.signal()).isEqualTo(Signal.COVERAGE);
+		assertThat(assessment.score()).isCloseTo(0.875, within());
+		assertThat(assessment.verdict()).isEqualTo(Verdict.WARN);
+
+		assessment = window.record(0, 7 * BLOCK, 9 * BLOCK - 1, 16 * BLOCK, limits);
+		assertThat(assessment.shouldBlock()).isTrue();
+	}
+
+	@Test
+	void rejectsUnpairedRanges() {
+		AccessPatternWindow window = new AccessPatternWindow(WINDOW_MILLIS, 0);
+
+		assertThatThrownBy(() -> window.record(0, new long[]{0, 10, 20}, 0, REQUEST_LIMITS))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * Record {@code count} non-adjacent ranges at {@code now}.
+	 */
+	private static Assessment jumps(AccessPatternWindow window, long now, int count) {
+		Assessment assessment = null;
+		for (int i = 0; i < count; i++) {
+			long start = (i % 2 == 0 ? 100 : 10) * BLOCK + i;
+			assessment = window.record(now, start, start + 99, 0, REQUEST_LIMITS);
+		}
+		return assessment;
+	}
+
+	private static Offset<Double> within() {
+		return offset(1e-9);
+	}
+}
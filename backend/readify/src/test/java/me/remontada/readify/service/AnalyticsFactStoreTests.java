@@ -0,0 +1,126 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.service.AnalyticsFactStore.FactState;
+import me.remontada.readify.service.AnalyticsFactStore.RangePlan;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyticsFactStoreTests {
+
+	private static final FactState STATE =
+			new FactState(LocalDate.of(2026, 3, 10), LocalDate.of(2025, 1, 1));
+
+	@Test
+	void splitsAtCompleteThrough() {
+		RangePlan plan = plan("2026-03-01", "2026-03-20", STATE);
+
+		assertThat(plan.factFrom()).isEqualTo("2026-03-01");
+		assertThat(plan.factTo()).isEqualTo("2026-03-10");
+		assertThat(plan.liveFrom()).isEqualTo("2026-03-11");
+		assertThat(plan.liveTo()).isEqualTo("2026-03-20");
+		assertEmpty(plan.oldFrom(), plan.oldTo());
+	}
+
+	@Test
+	void rangeEndingOnCompleteThroughIsAllFacts() {
+		RangePlan plan = plan("2026-02-01", "2026-03-10", STATE);
+
+		assertThat(plan.factFrom()).isEqualTo("2026-02-01");
+		assertThat(plan.factTo()).isEqualTo("2026-03-10");
+		assertEmpty(plan.liveFrom(), plan.liveTo());
+	}
+
+	@Test
+	void rangeAfterCompleteThroughIsAllLive() {
+		RangePlan plan = plan("2026-03-11", "2026-03-20", STATE);
+
+		assertEmpty(plan.factFrom(), plan.factTo());
+		assertThat(plan.liveFrom()).isEqualTo("2026-03-11");
+		assertThat(plan.liveTo()).isEqualTo("2026-03-20");
+	}
+
+	@Test
+	void daysBeforeRetentionAreReadFromTheLiveTables() {
+		RangePlan plan = plan("2024-12-01", "2025-01-31", STATE);
+
+		assertThat(plan.oldFrom()).isEqualTo("2024-12-01");
+		assertThat(plan.oldTo()).isEqualTo("2024-12-31");
+		assertThat(plan.factFrom()).isEqualTo("2025-01-01");
+		assertThat(plan.factTo()).isEqualTo("2025-01-31");
+		assertEmpty(plan.liveFrom(), plan.liveTo());
+	}
+
+	@Test
+	void daysOnBothSidesOfTheFacts() {
+		RangePlan plan = plan("2024-12-20", "2026-03-15", STATE);
+
+		assertThat(plan.oldTo()).isEqualTo("2024-12-31");
+		assertThat(plan.factFrom()).isEqualTo("2025-01-01");
+		assertThat(plan.factTo()).isEqualTo("2026-03-10");
+		assertThat(plan.liveFrom()).isEqualTo("2026-03-11");
+	}
+
+	@Test
+	void backfillNotStartedReadsEverythingLive() {
+		RangePlan plan = plan("2026-03-01", "2026-03-20", null);
+
+		assertThat(plan.oldFrom()).isEqualTo("2026-03-01");
+		assertThat(plan.oldTo()).isEqualTo("2026-03-20");
+		assertEmpty(plan.factFrom(), plan.factTo());
+		assertEmpty(plan.liveFrom(), plan.liveTo());
+	}
+
+	@Test
+	void backfillJustStartedHasNoFacts() {
+		// History starts on 2025-03-01, nothing backfilled yet
+		FactState started = new FactState(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 1));
+
+		RangePlan plan = plan("2025-02-15", "2025-04-10", started);
+
+		assertThat(plan.oldTo()).isEqualTo("2025-02-28");
+		assertEmpty(plan.factFrom(), plan.factTo());
+		assertThat(plan.liveFrom()).isEqualTo("2025-03-01");
+		assertThat(plan.liveTo()).isEqualTo("2025-04-10");
+	}
+
+	@Test
+	void everyDayIsReadExactlyOnce() {
+		LocalDate start = LocalDate.of(2024, 12, 1);
+		LocalDate end = LocalDate.of(2026, 4, 30);
+		FactState[] states = {
+				STATE,
+				new FactState(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 1)),
+				new FactState(LocalDate.of(2026, 4, 30), LocalDate.of(2024, 1, 1)),
+				null
+		};
+
+		for (FactState state : states) {
+			for (LocalDate from = start; !from.isAfter(end); from = from.plusDays(17)) {
+				for (LocalDate to = from; !to.isAfter(end); to = to.plusDays(23)) {
+					RangePlan plan = AnalyticsFactStore.plan(from, to, state);
+					for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+						int reads = (contains(plan.oldFrom(), plan.oldTo(), day) ? 1 : 0)
+								+ (contains(plan.factFrom(), plan.factTo(), day) ? 1 : 0)
+								+ (contains(plan.liveFrom(), plan.liveTo(), day) ? 1 : 0);
+						assertThat(reads).as("%s in %s..%s with %s", day, from, to, state).isEqualTo(1);
+					}
+				}
+			}
+		}
+	}
+
+	private static RangePlan plan(String from, String to, FactState state) {
+		return AnalyticsFactStore.plan(LocalDate.parse(from), LocalDate.parse(to), state);
+	}
+
+	private static boolean contains(LocalDate from, LocalDate to, LocalDate day) {
+		return !day.isBefore(from) && !day.isAfter(to);
+	}
+
+	private static void assertEmpty(LocalDate from, LocalDate to) {
+		assertThat(from).isAfter(to);
+	}
+}
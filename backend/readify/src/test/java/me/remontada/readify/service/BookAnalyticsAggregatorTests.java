@@ -0,0 +1,184 @@
+package me.remontada.readify.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookAnalyticsAggregatorTests {
+
+	private JdbcTemplate jdbcTemplate;
+	private BookAnalyticsAggregator aggregator;
+	// One entry per successful flush, each holding the upsert's rows
+	private final List<List<Row>> flushes = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+			List<Object[]> columns = new ArrayList<>();
+			Connection connection = mock(Connection.class);
+			when(connection.createArrayOf(anyString(), any(Object[].class))).thenAnswer(array -> {
+				columns.add(array.getArgument(1));
+				return mock(Array.class);
+			});
+			PreparedStatement statement = mock(PreparedStatement.class);
+			when(statement.getConnection()).thenReturn(connection);
+
+			invocation.<PreparedStatementSetter>getArgument(1).setValues(statement);
+
+			List<Row> rows = new ArrayList<>();
+			for (int i = 0; i < columns.get(0).length; i++) {
+				rows.add(new Row((Long) columns.get(0)[i], ((Date) columns.get(1)[i]).toLocalDate(),
+						(Long) columns.get(2)[i], (Long) columns.get(3)[i], (Long) columns.get(4)[i],
+						(Long) columns.get(5)[i]));
+			}
+			flushes.add(rows);
+			return rows.size();
+		});
+		aggregator = new BookAnalyticsAggregator(jdbcTemplate, null);
+	}
+
+	@Test
+	void flushWritesOneRowPerBookAndDay() {
+		LocalDate today = LocalDate.now();
+		aggregator.recordClick(1L);
+		aggregator.recordClick(1L);
+		aggregator.recordUniqueReader(1L);
+		aggregator.recordSession(2L);
+		aggregator.recordReadingMinutes(2L, today, 15);
+
+		assertThat(aggregator.flush()).isEqualTo(2);
+
+		assertThat(flushes).hasSize(1);
+		assertThat(flushes.get(0)).containsExactly(
+				new Row(1L, today, 2L, 1L, 0L, 0L),
+				new Row(2L, today, 0L, 0L, 1L, 15L));
+	}
+
+	@Test
+	void flushSendsRowsInLockOrder() {
+		LocalDate today = LocalDate.now();
+		LocalDate yesterday = today.minusDays(1);
+		aggregator.recordClick(9L);
+		aggregator.recordReadingMinutes(5L, yesterday, 3);
+		aggregator.recordClick(4L);
+
+		aggregator.flush();
+
+		assertThat(flushes.get(0)).extracting(Row::day, Row::bookId).containsExactly(
+				tuple(yesterday, 5L),
+				tuple(today, 4L),
+				tuple(today, 9L));
+	}
+
+	@Test
+	void drainedCountsAreNotWrittenTwice() {
+		aggregator.recordClick(1L);
+		aggregator.flush();
+
+		assertThat(aggregator.flush()).isZero();
+		assertThat(flushes).hasSize(1);
+	}
+
+	@Test
+	void nothingToFlushSkipsTheDatabase() {
+		assertThat(aggregator.flush()).isZero();
+		verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	void failedFlushKeepsCountsForTheNextOne() {
+		LocalDate today = LocalDate.now();
+		aggregator.recordClick(1L);
+		when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+				.thenThrow(new DataAccessResourceFailureException("down"))
+				.thenAnswer(invocation -> {
+					flushes.add(List.of());
+					return 1;
+				});
+
+		assertThat(aggregator.flush()).isZero();
+		assertThat(aggregator.getFlushedToday().clicks()).isZero();
+
+		// Counted while the database was down, merged with what was put back
+		aggregator.recordClick(1L);
+		assertThat(aggregator.flush()).isEqualTo(1);
+		assertThat(aggregator.getFlushedToday()).isEqualTo(
+				new BookAnalyticsAggregator.FlushedTotals(today, 2, 0, 0, 0));
+	}
+
+	@Test
+	void flushedTodayAddsUpTodaysRowsOnly() {
+		LocalDate today = LocalDate.now();
+		aggregator.recordClick(1L);
+		aggregator.recordClick(2L);
+		aggregator.recordReadingMinutes(1L, today, 10);
+		aggregator.recordReadingMinutes(1L, today.minusDays(1), 30);
+		aggregator.flush();
+
+		aggregator.recordSession(3L);
+		aggregator.flush();
+
+		assertThat(aggregator.getFlushedToday()).isEqualTo(
+				new BookAnalyticsAggregator.FlushedTotals(today, 2, 0, 1, 10));
+	}
+
+	@Test
+	void countsAddedToARetiredDayAreStillWritten() {
+		LocalDate oldDay = LocalDate.now().minusDays(5);
+		aggregator.recordReadingMinutes(1L, oldDay, 10);
+		aggregator.flush();
+		// Empty for a flush and old enough: the day is retired
+		assertThat(aggregator.flush()).isZero();
+
+		aggregator.recordReadingMinutes(1L, oldDay, 5);
+
+		assertThat(aggregator.flush()).isEqualTo(1);
+		assertThat(flushes.get(1)).containsExactly(new Row(1L, oldDay, 0L, 0L, 0L, 5L));
+	}
+
+	@Test
+	void concurrentClicksAreAllCounted() throws InterruptedException {
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			writers[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					aggregator.recordClick(1L);
+					if (i % 1_000 == 0) {
+						aggregator.flush();
+					}
+				}
+			});
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		aggregator.flush();
+
+		long written = flushes.stream().flatMap(List::stream).mapToLong(Row::clicks).sum();
+		assertThat(written).isEqualTo(40_000);
+	}
+
+	private record Row(Long bookId, LocalDate day, Long clicks, Long readers, Long sessions, Long minutes) {
+	}
+}
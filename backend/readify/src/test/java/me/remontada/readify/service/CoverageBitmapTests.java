@@ -0,0 +1,68 @@
+package me.remontada.readify.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoverageBitmapTests {
+
+	@Test
+	void marksBlocksAcrossWordBoundaries() {
+		CoverageBitmap bitmap = new CoverageBitmap(200, 1, 1_000, 0);
+
+		bitmap.mark(0, 60, 70);
+		assertThat(bitmap.servedBlocks(0)).isEqualTo(11);
+
+		// Two whole words
+		bitmap.mark(0, 0, 127);
+		assertThat(bitmap.servedBlocks(0)).isEqualTo(128);
+	}
+
+	@Test
+	void rangeMarksEveryBlockItTouches() {
+		CoverageBitmap bitmap = new CoverageBitmap(10 * 4096, 4096, 1_000, 0);
+
+		bitmap.mark(0, 4095, 4096);
+
+		assertThat(bitmap.servedBlocks(0)).isEqualTo(2);
+		assertThat(bitmap.coverage(0)).isEqualTo(0.2);
+	}
+
+	@Test
+	void offsetsPastTheEndCountAsTheLastBlock() {
+		CoverageBitmap bitmap = new CoverageBitmap(10 * 4096, 4096, 1_000, 0);
+
+		bitmap.mark(0, 9 * 4096, 50 * 4096);
+
+		assertThat(bitmap.servedBlocks(0)).isEqualTo(1);
+	}
+
+	@Test
+	void largeBooksUseLargerBlocks() {
+		CoverageBitmap bitmap = new CoverageBitmap(CoverageBitmap.MAX_BLOCKS * 10L, 1, 1_000, 0);
+
+		assertThat(bitmap.getBlocks()).isEqualTo(CoverageBitmap.MAX_BLOCKS);
+		assertThat(bitmap.getBlockSize()).isEqualTo(10);
+	}
+
+	@Test
+	void previousGenerationStillCounts() {
+		CoverageBitmap bitmap = new CoverageBitmap(100, 1, 1_000, 0);
+		bitmap.mark(0, 0, 9);
+
+		bitmap.mark(1_500, 50, 54);
+		assertThat(bitmap.servedBlocks(1_500)).isEqualTo(15);
+
+		// The first marks are two generations old now, the second are the previous generation
+		assertThat(bitmap.servedBlocks(2_000)).isEqualTo(5);
+	}
+
+	@Test
+	void idleForTwoGenerationsForgetsEverything() {
+		CoverageBitmap bitmap = new CoverageBitmap(100, 1, 1_000, 0);
+		bitmap.mark(0, 0, 99);
+
+		assertThat(bitmap.servedBlocks(1_999)).isEqualTo(100);
+		assertThat(bitmap.servedBlocks(2_000)).isZero();
+	}
+}
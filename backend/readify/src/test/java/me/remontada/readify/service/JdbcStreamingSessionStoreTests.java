@@ -0,0 +1,74 @@
+package me.remontada.readify.service;
+
+import me.remontada.readify.service.JdbcStreamingSessionStore.EpochKey;
+import me.remontada.readify.service.StreamingSessionStore.InvalidationScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcStreamingSessionStoreTests {
+
+	private static final EpochKey USER = new EpochKey(InvalidationScope.USER, 7L);
+	private static final EpochKey BOOK = new EpochKey(InvalidationScope.BOOK, 11L);
+
+	private JdbcStreamingSessionStore store;
+	private List<String> notified;
+
+	@BeforeEach
+	void setUp() {
+		store = new JdbcStreamingSessionStore(null, true, 100, 30, 10, 500, 1800);
+		notified = new ArrayList<>();
+		store.onRemoteInvalidation((scope, id) -> notified.add(scope + ":" + id));
+	}
+
+	@Test
+	void firstPollDoesNotNotify() {
+		store.applyEpochs(Map.of(USER, 1L, BOOK, 3L), false);
+
+		assertThat(notified).isEmpty();
+	}
+
+	@Test
+	void movedEpochNotifies() {
+		store.applyEpochs(Map.of(USER, 1L, BOOK, 3L), false);
+
+		store.applyEpochs(Map.of(USER, 2L, BOOK, 3L), true);
+
+		assertThat(notified).containsExactly("USER:7");
+	}
+
+	@Test
+	void newKeyNotifies() {
+		store.applyEpochs(Map.of(BOOK, 3L), false);
+
+		store.applyEpochs(Map.of(USER, 1L, BOOK, 3L), true);
+
+		assertThat(notified).containsExactly("USER:7");
+	}
+
+	@Test
+	void unchangedEpochsDoNotNotify() {
+		store.applyEpochs(Map.of(USER, 1L), false);
+
+		store.applyEpochs(Map.of(USER, 1L), true);
+
+		assertThat(notified).isEmpty();
+	}
+
+	@Test
+	void keyBumpedAgainAfterPruneNotifies() {
+		store.applyEpochs(Map.of(USER, 1L), false);
+		store.applyEpochs(Map.of(USER, 1L), true);
+
+		// Pruned, then re-inserted at epoch 1 by the next revocation
+		store.applyEpochs(Map.of(), true);
+		store.applyEpochs(Map.of(USER, 1L), true);
+
+		assertThat(notified).containsExactly("USER:7");
+	}
+}
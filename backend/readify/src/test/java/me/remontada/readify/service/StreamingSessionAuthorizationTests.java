@@ -0,0 +1,141 @@
+package me.remontada.readify.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.remontada.readify.model.Book;
+import me.remontada.readify.model.User;
+import me.remontada.readify.service.StreamingSessionService.StreamingSession;
+import me.remontada.readify.service.StreamingSessionService.StreamingSessionDescriptor;
+import me.remontada.readify.service.StreamingSessionStore.InvalidationScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingSessionAuthorizationTests {
+
+	private static final String EMAIL = "reader@readify.me";
+
+	private SharedStore store;
+	private StreamingSessionService service;
+	private User user;
+	private Book book;
+
+	@BeforeEach
+	void setUp() {
+		store = new SharedStore();
+		service = new StreamingSessionService(1800, "test-secret", null, 100, store, new SimpleMeterRegistry());
+
+		user = new User();
+		user.setId(7L);
+		user.setEmail(EMAIL);
+		user.setFirstName("Ana");
+
+		book = new Book();
+		book.setId(11L);
+		book.setTitle("Na Drini cuprija");
+		book.setIsAvailable(true);
+		book.setIsPremium(false);
+	}
+
+	@Test
+	void authorizesFromRecordedSnapshot() {
+		StreamingSessionDescriptor descriptor = authorize();
+
+		assertThat(find(descriptor)).isTrue();
+	}
+
+	@Test
+	void localUserInvalidationIsPublishedAndClearsSnapshot() {
+		StreamingSessionDescriptor descriptor = authorize();
+
+		service.invalidateUserAuthorizations(user.getId());
+
+		assertThat(find(descriptor)).isFalse();
+		assertThat(store.published).containsExactly(InvalidationScope.USER + ":" + user.getId());
+	}
+
+	@Test
+	void remoteBookInvalidationClearsSnapshot() {
+		StreamingSessionDescriptor descriptor = authorize();
+
+		store.listener.accept(InvalidationScope.BOOK, book.getId());
+
+		assertThat(find(descriptor)).isFalse();
+	}
+
+	@Test
+	void remoteInvalidationOfAnotherBookKeepsSnapshot() {
+		StreamingSessionDescriptor descriptor = authorize();
+
+		store.listener.accept(InvalidationScope.BOOK, book.getId() + 1);
+
+		assertThat(find(descriptor)).isTrue();
+	}
+
+	@Test
+	void snapshotIsNotTrustedWhileInvalidationsAreNotCurrent() {
+		StreamingSessionDescriptor descriptor = authorize();
+
+		store.current = false;
+
+		assertThat(find(descriptor)).isFalse();
+	}
+
+	@Test
+	void snapshotRecordedAfterInvalidationRaceIsDropped() {
+		StreamingSessionDescriptor descriptor = service.openSession(user, book);
+		long epoch = service.currentAuthorizationEpoch();
+		store.listener.accept(InvalidationScope.USER, user.getId());
+
+		service.recordAuthorization(session(descriptor), user, book, Path.of("book.pdf"), 1024, epoch);
+
+		assertThat(find(descriptor)).isFalse();
+	}
+
+	private StreamingSessionDescriptor authorize() {
+		StreamingSessionDescriptor descriptor = service.openSession(user, book);
+		service.recordAuthorization(session(descriptor), user, book, Path.of("book.pdf"), 1024,
+				service.currentAuthorizationEpoch());
+		return descriptor;
+	}
+
+	private StreamingSession session(StreamingSessionDescriptor descriptor) {
+		return store.find(descriptor.token()).orElseThrow();
+	}
+
+	private boolean find(StreamingSessionDescriptor descriptor) {
+		return service.findAuthorizedSession(descriptor.token(), book.getId(), descriptor.watermarkSignature(), EMAIL)
+				.isPresent();
+	}
+
+	/**
+	 * In-memory store standing in for a shared one: records what it publishes and hands out the
+	 * listener, so a test can deliver another node's invalidation.
+	 */
+	private static final class SharedStore extends InMemoryStreamingSessionStore {
+
+		private final List<String> published = new ArrayList<>();
+		private BiConsumer<InvalidationScope, Long> listener;
+		private boolean current = true;
+
+		@Override
+		public void publishInvalidation(InvalidationScope scope, Long id) {
+			published.add(scope + ":" + id);
+		}
+
+		@Override
+		public void onRemoteInvalidation(BiConsumer<InvalidationScope, Long> listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean invalidationsCurrent() {
+			return current;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package me.remontada.readify.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTests {
+
+	@Test
+	void startsFullAndEmptiesAtCapacity() {
+		TokenBucket bucket = new TokenBucket(10, 20, 0);
+
+		int granted = 0;
+		for (int i = 0; i < 25; i++) {
+			if (bucket.tryConsume(0)) {
+				granted++;
+			}
+		}
+
+		assertThat(granted).isEqualTo(20);
+		assertThat(bucket.getAvailableTokens(0)).isZero();
+	}
+
+	@Test
+	void refillsOneTokenPerInterval() {
+		// 10 per minute: one token every 6 s
+		TokenBucket bucket = drained(new TokenBucket(10, 20, 0), 0);
+
+		assertThat(bucket.tryConsume(5_999)).isFalse();
+		assertThat(bucket.tryConsume(6_000)).isTrue();
+		assertThat(bucket.tryConsume(6_000)).isFalse();
+	}
+
+	@Test
+	void keepsRemainderOfPartiallyRefilledToken() {
+		// One token per second
+		TokenBucket bucket = drained(new TokenBucket(60, 5, 0), 0);
+
+		// 1.5 s in: one whole token, the half second already elapsed counts towards the next
+		assertThat(bucket.tryConsume(1_500)).isTrue();
+		assertThat(bucket.tryConsume(1_999)).isFalse();
+		assertThat(bucket.tryConsume(2_000)).isTrue();
+	}
+
+	@Test
+	void idleTimeDoesNotAccumulateAboveCapacity() {
+		TokenBucket bucket = new TokenBucket(60, 5, 0);
+
+		assertThat(bucket.getAvailableTokens(3_600_000)).isEqualTo(5);
+
+		// Full for an hour, then drained: refill starts from the drain, not from creation
+		drained(bucket, 3_600_000);
+		assertThat(bucket.getAvailableTokens(3_600_999)).isZero();
+		assertThat(bucket.getAvailableTokens(3_601_000)).isEqualTo(1);
+	}
+
+	@Test
+	void refillsAcrossTimestampWrapAround() {
+		// One token per millisecond, stamped just below 2^32
+		long start = 0xFFFF_FFF0L;
+		TokenBucket bucket = drained(new TokenBucket(60_000, 5, start), start);
+
+		assertThat(bucket.getAvailableTokens(start + 3)).isEqualTo(3);
+		assertThat(bucket.getAvailableTokens(0x1_0000_0002L)).isEqualTo(5);
+		assertThat(bucket.idleMillis(0x1_0000_0002L)).isEqualTo(18);
+	}
+
+	@Test
+	void concurrentConsumersNeverOverdraw() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1, 100_000, 0);
+		AtomicInteger granted = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int t = 0; t < 8; t++) {
+			executor.submit(() -> {
+				for (int i = 0; i < 20_000; i++) {
+					if (bucket.tryConsume(0)) {
+						granted.incrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+		assertThat(granted.get()).isEqualTo(100_000);
+	}
+
+	private static TokenBucket drained(TokenBucket bucket, long now) {
+		while (bucket.tryConsume(now)) {
+			// empty it
+		}
+		return bucket;
+	}
+}
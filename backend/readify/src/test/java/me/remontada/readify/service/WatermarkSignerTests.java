@@ -0,0 +1,87 @@
+package me.remontada.readify.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WatermarkSignerTests {
+
+	private static final byte[] SECRET = "test-watermark-secret".getBytes(StandardCharsets.UTF_8);
+	private static final String TOKEN = "3f1c2b9e-8d4a-4c6f-9b1e-2a7d5c8e0f31";
+	private static final Instant ISSUED_AT = Instant.parse("2026-03-10T08:15:30.123456Z");
+
+	private final WatermarkSigner signer = new WatermarkSigner(SECRET, 4);
+
+	@Test
+	void matchesFormerSignatureForTypicalSession() throws Exception {
+		assertCompatible(7L, 11L, TOKEN, ISSUED_AT);
+	}
+
+	@Test
+	void matchesFormerSignatureForNullIds() throws Exception {
+		assertCompatible(null, null, TOKEN, ISSUED_AT);
+		assertCompatible(7L, null, TOKEN, ISSUED_AT);
+	}
+
+	@Test
+	void matchesFormerSignatureForNegativeAndExtremeIds() throws Exception {
+		assertCompatible(-1L, -42L, TOKEN, ISSUED_AT);
+		assertCompatible(Long.MIN_VALUE, Long.MAX_VALUE, TOKEN, ISSUED_AT);
+		assertCompatible(0L, 0L, TOKEN, ISSUED_AT);
+	}
+
+	@Test
+	void matchesFormerSignatureForMultiDigitIds() throws Exception {
+		long id = 1;
+		for (int digits = 1; digits <= 19; digits++) {
+			assertCompatible(id, id - 1, TOKEN, ISSUED_AT);
+			assertCompatible(id * 9, -id, TOKEN, ISSUED_AT);
+			id *= 10;
+		}
+	}
+
+	@Test
+	void matchesFormerSignatureForNonAsciiToken() throws Exception {
+		assertCompatible(7L, 11L, "\u010dita\u010d-\u0447\u0438\u0442\u0430\u043b\u0430\u0446-\ud83d\udcd6", ISSUED_AT);
+		assertCompatible(7L, 11L, null, ISSUED_AT);
+	}
+
+	@Test
+	void matchesFormerSignatureForPayloadLongerThanInitialBuffer() throws Exception {
+		String longToken = TOKEN.repeat(8);
+		assertCompatible(Long.MIN_VALUE, Long.MIN_VALUE, longToken, ISSUED_AT);
+		assertCompatible(7L, 11L, "\u0161" + longToken, ISSUED_AT);
+	}
+
+	@Test
+	void pooledSignersProduceTheSameSignature() {
+		String first = signer.sign(7L, 11L, TOKEN, ISSUED_AT);
+		signer.sign(Long.MIN_VALUE, 1L, TOKEN.repeat(8), ISSUED_AT);
+
+		assertThat(signer.sign(7L, 11L, TOKEN, ISSUED_AT)).isEqualTo(first);
+	}
+
+	private void assertCompatible(Long userId, Long bookId, String token, Instant issuedAt) throws Exception {
+		assertThat(signer.sign(userId, bookId, token, issuedAt))
+				.isEqualTo(formerSignature(userId, bookId, token, issuedAt));
+	}
+
+	// The implementation StreamingSessionService used before WatermarkSigner
+	private static String formerSignature(Long userId, Long bookId, String token, Instant issuedAt) throws Exception {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+		String payload = String.format("uid:%s|book:%s|token:%s|issued:%s",
+				userId,
+				bookId,
+				token,
+				issuedAt.toString());
+		byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+	}
+}
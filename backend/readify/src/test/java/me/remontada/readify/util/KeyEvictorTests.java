@@ -0,0 +1,94 @@
+package me.remontada.readify.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyEvictorTests {
+
+	private static final long NOW = 1_000;
+
+	// Values are last-use times, so the age of an entry is NOW minus its value
+	private final ToLongFunction<Long> age = lastUsed -> NOW - lastUsed;
+
+	@Test
+	void evictsLeastRecentlyUsedOverCapacity() {
+		ConcurrentMap<Integer, Long> map = new ConcurrentHashMap<>();
+		map.put(1, 900L);
+		map.put(2, 100L);
+		map.put(3, 800L);
+		map.put(4, 700L);
+		map.put(5, 200L);
+		map.put(6, 950L);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 4);
+
+		int evicted = evictor.evictOverCapacity(age, 10);
+
+		// Smaller than one sample, so the whole map is compared and the order is exact
+		assertThat(evicted).isEqualTo(2);
+		assertThat(map).containsOnlyKeys(1, 3, 4, 6);
+	}
+
+	@Test
+	void evictsNothingAtOrBelowCapacity() {
+		ConcurrentMap<Integer, Long> map = filled(4, 0L);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 4);
+
+		assertThat(evictor.evictOverCapacity(age, 10)).isZero();
+		assertThat(map).hasSize(4);
+	}
+
+	@Test
+	void evictionStopsAtBudget() {
+		ConcurrentMap<Integer, Long> map = filled(20, 0L);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 5);
+
+		assertThat(evictor.evictOverCapacity(age, 3)).isEqualTo(3);
+		assertThat(map).hasSize(17);
+	}
+
+	@Test
+	void insertEvictsOnlyAFewEntriesInline() {
+		ConcurrentMap<Integer, Long> map = filled(20, 0L);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 5);
+
+		evictor.onInsert(age);
+
+		// The rest is left to the maintenance job
+		assertThat(map).hasSize(16);
+	}
+
+	@Test
+	void sweepExaminesAtMostBudgetAndResumesAtCursor() {
+		ConcurrentMap<Integer, Long> map = filled(10, 0L);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 100);
+
+		assertThat(evictor.removeOlderThan(age, 500, 4)).isEqualTo(4);
+		assertThat(evictor.removeOlderThan(age, 500, 4)).isEqualTo(4);
+		assertThat(evictor.removeOlderThan(age, 500, 4)).isEqualTo(2);
+		assertThat(map).isEmpty();
+	}
+
+	@Test
+	void sweepKeepsRecentlyUsedEntries() {
+		ConcurrentMap<Integer, Long> map = filled(6, 0L);
+		map.put(2, NOW);
+		map.put(5, NOW - 100);
+		KeyEvictor<Integer, Long> evictor = new KeyEvictor<>(map, 100);
+
+		assertThat(evictor.removeOlderThan(age, 500, 100)).isEqualTo(4);
+		assertThat(map).containsOnlyKeys(2, 5);
+	}
+
+	private static ConcurrentMap<Integer, Long> filled(int entries, long lastUsed) {
+		ConcurrentMap<Integer, Long> map = new ConcurrentHashMap<>();
+		for (int key = 0; key < entries; key++) {
+			map.put(key, lastUsed);
+		}
+		return map;
+	}
+}
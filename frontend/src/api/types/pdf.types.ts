@@ -6,14 +6,19 @@
  */
 export interface PdfMetadata {
   totalSize: number;
-  initialChunk: string; // Base64-encoded
+  initialChunk?: string | null; // Base64-encoded, only with ?inlineChunk=true
   initialChunkSize: number;
+  initialChunkUrl?: string; // Raw header + footer bytes (application/octet-stream)
+  headerLength?: number;
+  footerOffset?: number;
   sessionToken: string;
   watermarkSignature: string;
   issuedAt: string;
   recommendedChunkSize: number;
   title: string;
   pdfVersion: string;
+  linearized?: boolean | null;
+  pageCount?: number | null;
 }
 
 /**
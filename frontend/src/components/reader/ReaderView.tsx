@@ -171,6 +171,7 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
     const [isFallbackLoading, setIsFallbackLoading] = useState<boolean>(false);
     const [isClient, setIsClient] = useState<boolean>(false);
     const [metadata, setMetadata] = useState<PdfMetadata | null>(null);
+    const [initialChunkData, setInitialChunkData] = useState<Uint8Array | null>(null);
     const [isMetadataLoading, setIsMetadataLoading] = useState<boolean>(false);
     const [metadataError, setMetadataError] = useState<string | null>(null);
     const [pdfjsLib, setPdfjsLib] = useState<PdfJsLib | null>(null);
@@ -268,6 +269,7 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
             metadataAbortControllerRef.current?.abort();
             metadataAbortControllerRef.current = null;
             setMetadata(null);
+            setInitialChunkData(null);
             setMetadataError(null);
             setIsMetadataLoading(false);
             return;
@@ -277,6 +279,7 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
             metadataAbortControllerRef.current?.abort();
             metadataAbortControllerRef.current = null;
             setMetadata(null);
+            setInitialChunkData(null);
             setMetadataError(null);
             setIsMetadataLoading(false);
             return;
@@ -292,6 +295,7 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
             try {
                 setIsMetadataLoading(true);
                 setMetadata(null);
+                setInitialChunkData(null);
                 setMetadataError(null);
                 setProgress(0);
                 setIsDocumentLoading(true);
@@ -306,6 +310,27 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
                 }
 
                 const nextMetadata = response.data;
+
+                // Initial chunk (header + footer) comes as raw bytes instead of Base64 in JSON
+                let nextInitialChunk: Uint8Array | null = null;
+                if (!nextMetadata.initialChunk && nextMetadata.initialChunkUrl) {
+                    const chunkResponse = await api.get<ArrayBuffer>(nextMetadata.initialChunkUrl, {
+                        responseType: "arraybuffer",
+                        signal: controller.signal,
+                        headers: {
+                            "X-Readify-Session": nextMetadata.sessionToken,
+                            "X-Readify-Watermark": nextMetadata.watermarkSignature,
+                            "X-Readify-Issued-At": nextMetadata.issuedAt,
+                        },
+                    });
+
+                    if (!isSubscribed) {
+                        return;
+                    }
+                    nextInitialChunk = new Uint8Array(chunkResponse.data);
+                }
+
+                setInitialChunkData(nextInitialChunk);
                 setMetadata(nextMetadata);
                 readerLog("metadata received", {
                     totalSize: nextMetadata.totalSize,
@@ -365,7 +390,8 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
             return null;
         }
 
-        const initialData = metadata.initialChunk ? decodeBase64ToUint8Array(metadata.initialChunk) : null;
+        const initialData = initialChunkData
+            ?? (metadata.initialChunk ? decodeBase64ToUint8Array(metadata.initialChunk) : null);
         const totalSize = Number(metadata.totalSize);
 
         class MetadataRangeTransport extends pdfjsLib.PDFDataRangeTransport {
@@ -535,7 +561,7 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
         });
         console.log("📚 PDF Cache: 3-page LRU cache with aggressive eviction enabled for book", bookId);
         return transport;
-    }, [pdfjsLib, metadata, secureStream, authorizedHeadersRecord, decodeBase64ToUint8Array, bookId]);
+    }, [pdfjsLib, metadata, initialChunkData, secureStream, authorizedHeadersRecord, decodeBase64ToUint8Array, bookId]);
 
     useEffect(() => {
         return () => {
@@ -719,6 +745,8 @@ const ReaderViewComponent: React.FC<ReaderViewProps> = ({
         if (chunkSize) {
             options.rangeChunkSize = chunkSize;
         }
+        // Only fetch the pages being read - prefetching the whole file looks like a download to the server
+        options.disableAutoFetch = true;
 
         return Object.keys(options).length ? options : undefined;
     }, [secureStream, authorizedHeadersRecord, metadata, pdfRangeTransport]);
@@ -51,8 +51,10 @@ export class SecurePdfRangeTransport implements PdfRangeTransport {
     // Set total length for PDF.js
     this.length = metadata.totalSize;
 
-    // Decode initial chunk (header + XRef)
-    this.initialData = this.base64ToUint8Array(metadata.initialChunk);
+    // Decode initial chunk (header + XRef), only present with ?inlineChunk=true
+    this.initialData = metadata.initialChunk
+      ? this.base64ToUint8Array(metadata.initialChunk)
+      : new Uint8Array();
     this.loadedBytes = this.initialData.length;
 
     console.log(`[PdfRangeTransport] Initialized for book ${bookId}`);